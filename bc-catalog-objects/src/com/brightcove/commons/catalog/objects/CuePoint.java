@@ -1,7 +1,12 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -46,6 +51,8 @@ public class CuePoint {
 	private CuePointTypeEnum type;
 	private String           metadata;
 	
+	private Map<String, Object> extras;
+	
 	/**
 	 * <p>
 	 *    Default Constructor.
@@ -80,50 +87,179 @@ public class CuePoint {
 		
 		JSONObject jsonObj = new JSONObject(json);
 		
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Given a JSON object from the Media API, attempts to construct a new
+	 *    Cue Point object and fill out all of the fields defined.  All other
+	 *    fields will be null.
+	 * </p>
+	 * 
+	 */
+	public CuePoint(JSONObject jsonObj) throws JSONException {
+		initAll();
+		
+		if(jsonObj == null){
+			throw new JSONException("[ERR] Cue Point can not be parsed from null JSON object.");
+		}
+		
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON string and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As CuePoint(String), but fields that are not recognized are handled
+	 *    according to the decode options.
+	 * </p>
+	 * 
+	 * @param json JSON string from the Media API
+	 * @param options Decode options (if null, behaves as CuePoint(String))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public CuePoint(String json, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(json == null){
+			throw new JSONException("[ERR] Cue Point can not be parsed from null JSON string.");
+		}
+		
+		JSONObject jsonObj = new JSONObject(json);
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As CuePoint(JSONObject), but fields that are not recognized are
+	 *    handled according to the decode options.
+	 * </p>
+	 * 
+	 * @param jsonObj JSON object from the Media API
+	 * @param options Decode options (if null, behaves as CuePoint(JSONObject))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public CuePoint(JSONObject jsonObj, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(jsonObj == null){
+			throw new JSONException("[ERR] Cue Point can not be parsed from null JSON object.");
+		}
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    JSON keys understood by finishConstruction(), looked up by name in a
+	 *    hash table instead of being compared against each key in turn.
+	 * </p>
+	 */
+	private enum JsonField {
+		FORCESTOP("forceStop"),
+		ID("id"),
+		METADATA("metadata"),
+		NAME("name"),
+		TIME("time"),
+		TYPE("type"),
+		TYPEENUM("typeEnum"),
+		VIDEOID("videoId");
+		
+		private static final Map<String, JsonField> lookup = new HashMap<String, JsonField>();
+		static {
+			for(JsonField field : JsonField.values()){
+				lookup.put(field.jsonName, field);
+			}
+		}
+		
+		private final String jsonName;
+		JsonField(String jsonName){
+			this.jsonName = jsonName;
+		}
+		
+		public static JsonField lookupByName(String name){
+			return lookup.get(name);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Private method to finish construction for other constructors
+	 * </p>
+	 * 
+	 * @param jsonObj
+	 * @param options Decode options (may be null)
+	 * @throws JSONException
+	 */
+	private void finishConstruction(JSONObject jsonObj, DecodeOptions options) throws JSONException {
 		String[] rootKeys = JSONObject.getNames(jsonObj);
 		
 		for(String rootKey : rootKeys){
 			Object rootValue = jsonObj.get(rootKey);
 			
+			JsonField field = JsonField.lookupByName(rootKey);
+			
 			if((rootValue == null) || ("null".equals(rootValue.toString()))){
 				// Don't bother setting the attribute, it should already be null
 			}
-			else if("forceStop".equals(rootKey)){
-				forceStop = jsonObj.getBoolean(rootKey);
-			}
-			else if("id".equals(rootKey)){
-				id = jsonObj.getLong(rootKey);
-			}
-			else if("metadata".equals(rootKey)){
-				metadata = rootValue.toString();
-			}
-			else if("name".equals(rootKey)){
-				name = rootValue.toString();
-			}
-			else if("time".equals(rootKey)){
-				time = jsonObj.getLong(rootKey);
-			}
-			else if("type".equals(rootKey)){
-				// Numeric representation of type
-				for(CuePointTypeEnum typeEnum : CuePointTypeEnum.values()){
-					if((""+typeEnum.getCode()).equals(rootValue.toString())){
-						type = typeEnum;
-					}
+			else if(field == null){
+				if(options == null){
+					throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
 				}
-			}
-			else if("typeEnum".equals(rootKey)){
-				// String representation of type
-				for(CuePointTypeEnum typeEnum : CuePointTypeEnum.values()){
-					if(typeEnum.getName().equals(rootValue.toString())){
-						type = typeEnum;
-					}
+				else{
+					extras = options.handleUnknownKey("CuePoint", rootKey, rootValue, extras);
 				}
 			}
-			else if("videoId".equals(rootKey)){
-				videoId = rootValue.toString();
-			}
 			else{
-				throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
+				switch(field){
+					case FORCESTOP:
+						forceStop = jsonObj.getBoolean(rootKey);
+						break;
+					case ID:
+						id = jsonObj.getLong(rootKey);
+						break;
+					case METADATA:
+						metadata = rootValue.toString();
+						break;
+					case NAME:
+						name = rootValue.toString();
+						break;
+					case TIME:
+						time = jsonObj.getLong(rootKey);
+						break;
+					case TYPE:
+						// Numeric representation of type
+						for(CuePointTypeEnum typeEnum : CuePointTypeEnum.values()){
+							if((""+typeEnum.getCode()).equals(rootValue.toString())){
+								type = typeEnum;
+							}
+						}
+						break;
+					case TYPEENUM:
+						// String representation of type
+						for(CuePointTypeEnum typeEnum : CuePointTypeEnum.values()){
+							if(typeEnum.getName().equals(rootValue.toString())){
+								type = typeEnum;
+							}
+						}
+						break;
+					case VIDEOID:
+						videoId = rootValue.toString();
+						break;
+				}
 			}
 		}
 	}
@@ -210,6 +346,8 @@ public class CuePoint {
 		forceStop = null;
 		type      = null;
 		metadata  = null;
+		
+		extras = null;
 	}
 	
 	/**
@@ -507,6 +645,23 @@ public class CuePoint {
 		this.metadata = metadata;
 	}
 	
+	/**
+	 * <p>
+	 *    Gets any fields from the Media API response that this Cue Point did
+	 *    not recognize.
+	 * </p>
+	 * 
+	 * <p>
+	 *    This is only filled in when the Cue Point was decoded with a
+	 *    DecodeOptions object whose unknown field mode is COLLECT.
+	 * </p>
+	 * 
+	 * @return Map of unknown field names to their raw JSON values, or null if there were none
+	 */
+	public Map<String, Object> getExtras(){
+		return extras;
+	}
+	
 	/**
 	 * <p>
 	 *    Converts the cue point into a JSON object suitable for use with the Media API
@@ -543,6 +698,57 @@ public class CuePoint {
 		return json;
 	}
 	
+	/**
+	 * <p>
+	 *    Writes the cue point as JSON (the same JSON as toJson()) directly to
+	 *    a writer, without building a JSON object first.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @throws JSONException If the cue point can not be written
+	 */
+	public void writeJson(Writer writer) throws JSONException {
+		writeJson(new JSONWriter(writer));
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the cue point as JSON (the same JSON as toJson()) to a JSON
+	 *    writer, e.g. as one value of an array that is being written.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the cue point to
+	 * @throws JSONException If the cue point can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter) throws JSONException {
+		jsonWriter.object();
+		
+		if(id != null){
+			jsonWriter.key("id").value(id);
+		}
+		if(name != null){
+			jsonWriter.key("name").value(name);
+		}
+		if(videoId != null){
+			jsonWriter.key("videoId").value(videoId);
+		}
+		if(time != null){
+			jsonWriter.key("time").value(time);
+		}
+		if(forceStop != null){
+			jsonWriter.key("forceStop").value(forceStop);
+		}
+		if(type != null){
+			jsonWriter.key("type").value(type.getCode());
+			jsonWriter.key("typeEnum").value(type.getName());
+		}
+		if(metadata != null){
+			jsonWriter.key("metadata").value(metadata);
+		}
+		
+		jsonWriter.endObject();
+	}
+	
 	/**
 	 * <p>
 	 *    Uses the W3C libraries to generate an XML representation of
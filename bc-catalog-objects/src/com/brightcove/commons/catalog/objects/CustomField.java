@@ -73,6 +73,40 @@ public class CustomField {
 		
 		JSONObject jsonObj = new JSONObject(json);
 		
+		finishConstruction(jsonObj);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Given a JSON object from the Media API, attempts to construct a new
+	 *    Custom Field object and fill out all of the fields defined.  All
+	 *    other fields will be null.
+	 * </p>
+	 * 
+	 */
+	public CustomField(JSONObject jsonObj) throws JSONException {
+		initAll();
+		
+		if(jsonObj == null){
+			throw new JSONException("[ERR] Custom Field can not be parsed from null JSON object.");
+		}
+		
+		finishConstruction(jsonObj);
+	}
+	
+	/**
+	 * <p>
+	 *    Private method to finish construction for other constructors
+	 * </p>
+	 * 
+	 * @param jsonObj
+	 * @throws JSONException
+	 */
+	private void finishConstruction(JSONObject jsonObj) throws JSONException {
 		String[] rootKeys = JSONObject.getNames(jsonObj);
 		
 		for(String rootKey : rootKeys){
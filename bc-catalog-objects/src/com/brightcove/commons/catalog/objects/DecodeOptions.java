@@ -0,0 +1,138 @@
+package com.brightcove.commons.catalog.objects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+
+import com.brightcove.commons.catalog.objects.enumerations.UnknownFieldModeEnum;
+
+/**
+ * <p>
+ *    Options controlling how Video, Playlist and Rendition objects are
+ *    decoded from Media API JSON.
+ * </p>
+ *
+ * <p>
+ *    The Media API adds new fields from time to time.  By default Video and
+ *    Playlist fail on any field they don't recognize, which makes a whole
+ *    page of results fail to decode.  Passing a DecodeOptions object with
+ *    a mode of IGNORE or COLLECT lets the page decode in a single pass,
+ *    while the unknown key counter can be used to notice that the Media API
+ *    has changed.
+ * </p>
+ *
+ * <p>
+ *    A single DecodeOptions object may be shared between threads (e.g.
+ *    when decoding several pages at once) - the counter is thread safe.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class DecodeOptions {
+	private UnknownFieldModeEnum unknownFieldMode;
+	private AtomicLong           unknownKeyCount;
+	
+	/**
+	 * <p>
+	 *    Default Constructor.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Unknown fields will cause decoding to fail.
+	 * </p>
+	 * 
+	 */
+	public DecodeOptions(){
+		this(UnknownFieldModeEnum.FAIL);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new set of decode options with the given handling for
+	 *    unknown fields.
+	 * </p>
+	 * 
+	 * @param unknownFieldMode How to handle fields that are not recognized
+	 */
+	public DecodeOptions(UnknownFieldModeEnum unknownFieldMode){
+		this.unknownFieldMode = unknownFieldMode;
+		this.unknownKeyCount  = new AtomicLong(0);
+	}
+	
+	/**
+	 * <p>
+	 *    Handles a key that the object being decoded does not recognize,
+	 *    according to the unknown field mode.
+	 * </p>
+	 * 
+	 * @param objectName Name of the type of object being decoded (used in the exception message)
+	 * @param key The unknown key
+	 * @param value The value of the unknown key
+	 * @param extras The current extras map for the object (may be null)
+	 * @return The extras map for the object (created if a value was collected and extras was null)
+	 * @throws JSONException If the unknown field mode is FAIL
+	 */
+	public Map<String, Object> handleUnknownKey(String objectName, String key, Object value, Map<String, Object> extras) throws JSONException {
+		unknownKeyCount.incrementAndGet();
+		
+		if(UnknownFieldModeEnum.COLLECT.equals(unknownFieldMode)){
+			if(extras == null){
+				extras = new HashMap<String, Object>();
+			}
+			extras.put(key, value);
+		}
+		else if(! UnknownFieldModeEnum.IGNORE.equals(unknownFieldMode)){
+			throw new JSONException("[ERR] Unknown root key '" + key + "'='" + value + "' on " + objectName + ".");
+		}
+		
+		return extras;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets how fields that are not recognized will be handled.
+	 * </p>
+	 * 
+	 * @return How fields that are not recognized will be handled
+	 */
+	public UnknownFieldModeEnum getUnknownFieldMode(){
+		return unknownFieldMode;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets how fields that are not recognized will be handled.
+	 * </p>
+	 * 
+	 * @param unknownFieldMode How fields that are not recognized will be handled
+	 */
+	public void setUnknownFieldMode(UnknownFieldModeEnum unknownFieldMode){
+		this.unknownFieldMode = unknownFieldMode;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the number of unknown keys seen by objects decoded with these
+	 *    options (in every mode, including FAIL).
+	 * </p>
+	 * 
+	 * @return Number of unknown keys seen
+	 */
+	public Long getUnknownKeyCount(){
+		return unknownKeyCount.get();
+	}
+	
+	/**
+	 * <p>
+	 *    Resets the unknown key counter to zero.
+	 * </p>
+	 * 
+	 * @return Number of unknown keys seen before the reset
+	 */
+	public Long resetUnknownKeyCount(){
+		return unknownKeyCount.getAndSet(0);
+	}
+}
@@ -1,5 +1,8 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -99,6 +102,36 @@ public class Image {
 		finishConstruction(jsonObj);
 	}
 		
+	/**
+	 * <p>
+	 *    JSON keys understood by finishConstruction(), looked up by name in a
+	 *    hash table instead of being compared against each key in turn.
+	 * </p>
+	 */
+	private enum JsonField {
+		ID("id"),
+		REFERENCEID("referenceId"),
+		TYPE("type"),
+		REMOTEURL("remoteUrl"),
+		DISPLAYNAME("displayName");
+		
+		private static final Map<String, JsonField> lookup = new HashMap<String, JsonField>();
+		static {
+			for(JsonField field : JsonField.values()){
+				lookup.put(field.jsonName, field);
+			}
+		}
+		
+		private final String jsonName;
+		JsonField(String jsonName){
+			this.jsonName = jsonName;
+		}
+		
+		public static JsonField lookupByName(String name){
+			return lookup.get(name);
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Private method to finish construction for other constructors
@@ -113,34 +146,40 @@ public class Image {
 		for(String rootKey : rootKeys){
 			Object rootValue = jsonObj.get(rootKey);
 			
+			JsonField field = JsonField.lookupByName(rootKey);
+			
 			if((rootValue == null) || ("null".equals(rootValue.toString()))){
 				// Don't bother setting the attribute, it should already be null
 			}
-			else if("id".equals(rootKey)){
-				id = (Long)rootValue;
-			}
-			else if("referenceId".equals(rootKey)){
-				referenceId = rootValue.toString();
-			}
-			else if("type".equals(rootKey)){
-				if("THUMBNAIL".equals(rootValue.toString())){
-					type = ImageTypeEnum.THUMBNAIL;
-				}
-				else if("VIDEO_STILL".equals(rootValue.toString())){
-					type = ImageTypeEnum.VIDEO_STILL;
-				}
-				else{
-					throw new JSONException("[ERR] Unknown image type '" + rootValue.toString() + "'.");
-				}
-			}
-			else if("remoteUrl".equals(rootKey)){
-				remoteUrl = rootValue.toString();
-			}
-			else if("displayName".equals(rootKey)){
-				displayName = rootValue.toString();
+			else if(field == null){
+				throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
 			}
 			else{
-				throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
+				switch(field){
+					case ID:
+						id = (Long)rootValue;
+						break;
+					case REFERENCEID:
+						referenceId = rootValue.toString();
+						break;
+					case TYPE:
+						if("THUMBNAIL".equals(rootValue.toString())){
+							type = ImageTypeEnum.THUMBNAIL;
+						}
+						else if("VIDEO_STILL".equals(rootValue.toString())){
+							type = ImageTypeEnum.VIDEO_STILL;
+						}
+						else{
+							throw new JSONException("[ERR] Unknown image type '" + rootValue.toString() + "'.");
+						}
+						break;
+					case REMOTEURL:
+						remoteUrl = rootValue.toString();
+						break;
+					case DISPLAYNAME:
+						displayName = rootValue.toString();
+						break;
+				}
 			}
 		}
 	}
@@ -1,11 +1,15 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import com.brightcove.commons.catalog.objects.enumerations.InclusionRuleEnum;
 import com.brightcove.commons.catalog.objects.enumerations.PlaylistTypeEnum;
@@ -48,6 +52,8 @@ public class Playlist {
 	
 	private PlaylistTypeEnum playlistType;
 	
+	private Map<String, Object> extras;
+	
 	/**
 	 * <p>
 	 *    Default Constructor.
@@ -84,7 +90,7 @@ public class Playlist {
 		
 		JSONObject jsonObj = new JSONObject(json);
 		
-		finishConstruction(jsonObj);
+		finishConstruction(jsonObj, null);
 	}
 	
 	/**
@@ -100,7 +106,89 @@ public class Playlist {
 	 * 
 	 */
 	public Playlist(JSONObject jsonObj) throws JSONException {
-		finishConstruction(jsonObj);
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON string and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Playlist(String), but fields that are not recognized are handled
+	 *    according to the decode options.
+	 * </p>
+	 * 
+	 * @param json JSON string from the Media API
+	 * @param options Decode options (if null, behaves as Playlist(String))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Playlist(String json, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(json == null){
+			throw new JSONException("[ERR] Playlist can not be parsed from null JSON string.");
+		}
+		
+		JSONObject jsonObj = new JSONObject(json);
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Playlist(JSONObject), but fields that are not recognized are
+	 *    handled according to the decode options.
+	 * </p>
+	 * 
+	 * @param jsonObj JSON object from the Media API
+	 * @param options Decode options (if null, behaves as Playlist(JSONObject))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Playlist(JSONObject jsonObj, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    JSON keys understood by finishConstruction(), looked up by name in a
+	 *    hash table instead of being compared against each key in turn.
+	 * </p>
+	 */
+	private enum JsonField {
+		NAME("name"),
+		ID("id"),
+		ACCOUNTID("accountId"),
+		REFERENCEID("referenceId"),
+		SHORTDESCRIPTION("shortDescription"),
+		THUMBNAILURL("thumbnailURL"),
+		VIDEOIDS("videoIds"),
+		VIDEOS("videos"),
+		PLAYLISTTYPE("playlistType"),
+		FILTERTAGS("filterTags"),
+		TAGINCLUSIONRULE("tagInclusionRule");
+		
+		private static final Map<String, JsonField> lookup = new HashMap<String, JsonField>();
+		static {
+			for(JsonField field : JsonField.values()){
+				lookup.put(field.jsonName, field);
+			}
+		}
+		
+		private final String jsonName;
+		JsonField(String jsonName){
+			this.jsonName = jsonName;
+		}
+		
+		public static JsonField lookupByName(String name){
+			return lookup.get(name);
+		}
 	}
 	
 	/**
@@ -109,102 +197,116 @@ public class Playlist {
 	 * </p>
 	 * 
 	 * @param jsonObj
+	 * @param options Decode options (may be null)
 	 * @throws JSONException
 	 */
-	private void finishConstruction(JSONObject jsonObj) throws JSONException {
+	private void finishConstruction(JSONObject jsonObj, DecodeOptions options) throws JSONException {
 		String[] rootKeys = JSONObject.getNames(jsonObj);
 		
 		for(String rootKey : rootKeys){
 			Object rootValue = jsonObj.get(rootKey);
 			
-			if((rootValue == null) || ("null".equals(rootValue.toString()))){
+			JsonField field = JsonField.lookupByName(rootKey);
+			
+			if((rootValue == null) || JSONObject.NULL.equals(rootValue) || "null".equals(rootValue)){
 				// Don't bother setting the attribute, it should already be null
 			}
-			else if("name".equals(rootKey)){
-				name = (String)rootValue;
-			}
-			else if("id".equals(rootKey)){
-				id = jsonObj.getLong(rootKey);
-			}
-			else if("accountId".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				accountId = rootLong;
-			}
-			else if("referenceId".equals(rootKey)){
-				referenceId = rootValue.toString();
-			}
-			else if("shortDescription".equals(rootKey)){
-				shortDescription = rootValue.toString();
-			}
-			else if("thumbnailURL".equals(rootKey)){
-				thumbnailUrl = rootValue.toString();
-			}
-			else if("videoIds".equals(rootKey)){
-				videoIds = new ArrayList<Long>();
-				
-				JSONArray idsArray = jsonObj.getJSONArray(rootKey);
-				for(int idIdx=0;idIdx<idsArray.length();idIdx++){
-					Long id = new Long((idsArray.get(idIdx)).toString());
-					videoIds.add(id);
-				}
-			}
-			else if("videos".equals(rootKey)){
-				videos = new ArrayList<Video>();
-				
-				JSONArray videoArray = jsonObj.getJSONArray(rootKey);
-				for(int videoIdx=0;videoIdx<videoArray.length();videoIdx++){
-					Video video = new Video(videoArray.getString(videoIdx).toString());
-					videos.add(video);
-				}
-			}
-			else if("playlistType".equals(rootKey)){
-				if(rootValue.toString().equals("OLDEST_TO_NEWEST")){
-					playlistType = PlaylistTypeEnum.OLDEST_TO_NEWEST;
-				}
-				else if(rootValue.toString().equals("NEWEST_TO_OLDEST")){
-					playlistType = PlaylistTypeEnum.NEWEST_TO_OLDEST;
-				}
-				else if(rootValue.toString().equals("ALPHABETICAL")){
-					playlistType = PlaylistTypeEnum.ALPHABETICAL;
-				}
-				else if(rootValue.toString().equals("PLAYSTOTAL")){
-					playlistType = PlaylistTypeEnum.PLAYS_TOTAL;
-				}
-				else if(rootValue.toString().equals("PLAYS_TOTAL")){
-					playlistType = PlaylistTypeEnum.PLAYS_TOTAL;
-				}
-				else if(rootValue.toString().equals("PLAYS_TRAILING_WEEK")){
-					playlistType = PlaylistTypeEnum.PLAYS_TRAILING_WEEK;
-				}
-				else if(rootValue.toString().equals("EXPLICIT")){
-					playlistType = PlaylistTypeEnum.EXPLICIT;
-				}
-				else{
-					throw new JSONException("[ERR] Media API specified invalid value for playlist type '" + rootValue + "'.  Acceptable values are 'OLDEST_TO_NEWEST', 'NEWEST_TO_OLDEST', 'ALPHABETICAL', 'PLAYSTOTAL', 'PLAYS_TRAILING_WEEK', 'EXPLICIT'.");
-				}
-			}
-			else if("filterTags".equals(rootKey)){
-				filterTags = new ArrayList<String>();
-				
-				JSONArray tagArray = jsonObj.getJSONArray(rootKey);
-				for(int tagIdx=0;tagIdx<tagArray.length();tagIdx++){
-					String tag = tagArray.get(tagIdx).toString();
-					filterTags.add(tag);
-				}
-			}
-			else if("tagInclusionRule".equals(rootKey)){
-				if(rootValue.toString().equals("AND")){
-					tagInclusionRule = InclusionRuleEnum.AND;
-				}
-				else if(rootValue.toString().equals("OR")){
-					tagInclusionRule = InclusionRuleEnum.OR;
-				}
-				else{
-					throw new JSONException("[ERR] Media API specified invalid value for playlist tag inclusion rule '" + rootValue + "'.  Acceptable values are 'AND', 'OR'.");
+			else if(field == null){
+				if(options == null){
+					throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
 				}
+				extras = options.handleUnknownKey("Playlist", rootKey, rootValue, extras);
 			}
 			else{
-				throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
+				switch(field){
+					case NAME:
+						name = (String)rootValue;
+						break;
+					case ID:
+						id = jsonObj.getLong(rootKey);
+						break;
+					case ACCOUNTID:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						accountId = rootLong;
+						break;
+					}
+					case REFERENCEID:
+						referenceId = rootValue.toString();
+						break;
+					case SHORTDESCRIPTION:
+						shortDescription = rootValue.toString();
+						break;
+					case THUMBNAILURL:
+						thumbnailUrl = rootValue.toString();
+						break;
+					case VIDEOIDS:{
+						videoIds = new ArrayList<Long>();
+						
+						JSONArray idsArray = jsonObj.getJSONArray(rootKey);
+						for(int idIdx=0;idIdx<idsArray.length();idIdx++){
+							Long id = new Long((idsArray.get(idIdx)).toString());
+							videoIds.add(id);
+						}
+						break;
+					}
+					case VIDEOS:{
+						videos = new ArrayList<Video>();
+						
+						JSONArray videoArray = jsonObj.getJSONArray(rootKey);
+						for(int videoIdx=0;videoIdx<videoArray.length();videoIdx++){
+							Video video = new Video(videoArray.getJSONObject(videoIdx), options);
+							videos.add(video);
+						}
+						break;
+					}
+					case PLAYLISTTYPE:
+						if(rootValue.toString().equals("OLDEST_TO_NEWEST")){
+							playlistType = PlaylistTypeEnum.OLDEST_TO_NEWEST;
+						}
+						else if(rootValue.toString().equals("NEWEST_TO_OLDEST")){
+							playlistType = PlaylistTypeEnum.NEWEST_TO_OLDEST;
+						}
+						else if(rootValue.toString().equals("ALPHABETICAL")){
+							playlistType = PlaylistTypeEnum.ALPHABETICAL;
+						}
+						else if(rootValue.toString().equals("PLAYSTOTAL")){
+							playlistType = PlaylistTypeEnum.PLAYS_TOTAL;
+						}
+						else if(rootValue.toString().equals("PLAYS_TOTAL")){
+							playlistType = PlaylistTypeEnum.PLAYS_TOTAL;
+						}
+						else if(rootValue.toString().equals("PLAYS_TRAILING_WEEK")){
+							playlistType = PlaylistTypeEnum.PLAYS_TRAILING_WEEK;
+						}
+						else if(rootValue.toString().equals("EXPLICIT")){
+							playlistType = PlaylistTypeEnum.EXPLICIT;
+						}
+						else{
+							throw new JSONException("[ERR] Media API specified invalid value for playlist type '" + rootValue + "'.  Acceptable values are 'OLDEST_TO_NEWEST', 'NEWEST_TO_OLDEST', 'ALPHABETICAL', 'PLAYSTOTAL', 'PLAYS_TRAILING_WEEK', 'EXPLICIT'.");
+						}
+						break;
+					case FILTERTAGS:{
+						filterTags = new ArrayList<String>();
+						
+						JSONArray tagArray = jsonObj.getJSONArray(rootKey);
+						for(int tagIdx=0;tagIdx<tagArray.length();tagIdx++){
+							String tag = tagArray.get(tagIdx).toString();
+							filterTags.add(tag);
+						}
+						break;
+					}
+					case TAGINCLUSIONRULE:
+						if(rootValue.toString().equals("AND")){
+							tagInclusionRule = InclusionRuleEnum.AND;
+						}
+						else if(rootValue.toString().equals("OR")){
+							tagInclusionRule = InclusionRuleEnum.OR;
+						}
+						else{
+							throw new JSONException("[ERR] Media API specified invalid value for playlist tag inclusion rule '" + rootValue + "'.  Acceptable values are 'AND', 'OR'.");
+						}
+						break;
+				}
 			}
 		}
 		
@@ -229,6 +331,8 @@ public class Playlist {
 		filterTags         = null;
 		playlistType       = null;
 		tagInclusionRule   = null;
+		
+		extras = null;
 	}
 	
 	/**
@@ -705,6 +809,23 @@ public class Playlist {
 		this.filterTags = filterTags;
 	}
 	
+	/**
+	 * <p>
+	 *    Gets any fields from the Media API response that this Playlist did
+	 *    not recognize.
+	 * </p>
+	 * 
+	 * <p>
+	 *    This is only filled in when the Playlist was decoded with a
+	 *    DecodeOptions object whose unknown field mode is COLLECT.
+	 * </p>
+	 * 
+	 * @return Map of unknown field names to their raw JSON values, or null if there were none
+	 */
+	public Map<String, Object> getExtras(){
+		return extras;
+	}
+	
 	/**
 	 * <p>
 	 *    Sets the thumbnail URL for this Playlist.
@@ -808,6 +929,80 @@ public class Playlist {
 		return json;
 	}
 	
+	/**
+	 * <p>
+	 *    Writes the playlist as JSON (the same JSON as toJson()) directly to
+	 *    a writer, without building a JSON object first.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @throws JSONException If the playlist can not be written
+	 */
+	public void writeJson(Writer writer) throws JSONException {
+		writeJson(new JSONWriter(writer));
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the playlist as JSON (the same JSON as toJson()) to a JSON
+	 *    writer, e.g. as one value of an array that is being written.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the playlist to
+	 * @throws JSONException If the playlist can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter) throws JSONException {
+		jsonWriter.object();
+		
+		if(name != null){
+			jsonWriter.key("name").value(name);
+		}
+		if(id != null){
+			jsonWriter.key("id").value(id);
+		}
+		if(referenceId != null){
+			jsonWriter.key("referenceId").value(referenceId);
+		}
+		if(accountId != null){
+			jsonWriter.key("accountId").value(accountId);
+		}
+		if(shortDescription != null){
+			jsonWriter.key("shortDescription").value(shortDescription);
+		}
+		if(thumbnailUrl != null){
+			jsonWriter.key("thumbnailURL").value(thumbnailUrl);
+		}
+		if(videoIds != null){
+			jsonWriter.key("videoIds").array();
+			for(Long videoId : videoIds){
+				jsonWriter.value(videoId);
+			}
+			jsonWriter.endArray();
+		}
+		if(videos != null){
+			jsonWriter.key("videos").array();
+			for(Video video : videos){
+				video.writeJson(jsonWriter);
+			}
+			jsonWriter.endArray();
+		}
+		if(filterTags != null){
+			jsonWriter.key("filterTags").array();
+			for(String tag : filterTags){
+				jsonWriter.value(tag);
+			}
+			jsonWriter.endArray();
+		}
+		if(tagInclusionRule != null){
+			jsonWriter.key("tagInclusionRule").value(tagInclusionRule);
+		}
+		if(playlistType != null){
+			jsonWriter.key("playlistType").value(playlistType);
+		}
+		
+		jsonWriter.endObject();
+	}
+	
 	/**
 	 * <p>
 	 *    Uses the json.org libraries to generate an XML representation of
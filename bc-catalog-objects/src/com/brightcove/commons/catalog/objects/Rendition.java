@@ -1,9 +1,13 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -58,6 +62,8 @@ public class Rendition {
 	
 	private VideoCodecEnum videoCodec;
 	
+	private Map<String, Object> extras;
+	
 	/**
 	 * <p>
 	 *    Default Constructor.
@@ -93,72 +99,209 @@ public class Rendition {
 		
 		JSONObject jsonObj = new JSONObject(json);
 		
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Given a JSON object from the Media API, attempts to construct a new
+	 *    Rendition object and fill out all of the fields defined.  All other
+	 *    fields will be null.
+	 * </p>
+	 * 
+	 */
+	public Rendition(JSONObject jsonObj) throws JSONException {
+		initAll();
+		
+		if(jsonObj == null){
+			throw new JSONException("[ERR] Rendition can not be parsed from null JSON object.");
+		}
+		
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON string and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Rendition(String), but fields that are not recognized are handled
+	 *    according to the decode options.
+	 * </p>
+	 * 
+	 * @param json JSON string from the Media API
+	 * @param options Decode options (if null, behaves as Rendition(String))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Rendition(String json, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(json == null){
+			throw new JSONException("[ERR] Rendition can not be parsed from null JSON string.");
+		}
+		
+		JSONObject jsonObj = new JSONObject(json);
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Rendition(JSONObject), but fields that are not recognized are
+	 *    handled according to the decode options.
+	 * </p>
+	 * 
+	 * @param jsonObj JSON object from the Media API
+	 * @param options Decode options (if null, behaves as Rendition(JSONObject))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Rendition(JSONObject jsonObj, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(jsonObj == null){
+			throw new JSONException("[ERR] Rendition can not be parsed from null JSON object.");
+		}
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    JSON keys understood by finishConstruction(), looked up by name in a
+	 *    hash table instead of being compared against each key in turn.
+	 * </p>
+	 */
+	private enum JsonField {
+		ENCODINGRATE("encodingRate"),
+		REFERENCEID("referenceId"),
+		URL("url"),
+		CONTROLLERTYPE("controllerType"),
+		SIZE("size"),
+		ID("id"),
+		UPLOADTIMESTAMPMILLIS("uploadTimestampMillis"),
+		FRAMEWIDTH("frameWidth"),
+		REMOTEURL("remoteUrl"),
+		REMOTESTREAMNAME("remoteStreamName"),
+		DISPLAYNAME("displayName"),
+		VIDEOCODEC("videoCodec"),
+		VIDEODURATION("videoDuration"),
+		FRAMEHEIGHT("frameHeight"),
+		AUDIOONLY("audioOnly"),
+		VIDEOCONTAINER("videoContainer");
+		
+		private static final Map<String, JsonField> lookup = new HashMap<String, JsonField>();
+		static {
+			for(JsonField field : JsonField.values()){
+				lookup.put(field.jsonName, field);
+			}
+		}
+		
+		private final String jsonName;
+		JsonField(String jsonName){
+			this.jsonName = jsonName;
+		}
+		
+		public static JsonField lookupByName(String name){
+			return lookup.get(name);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Private method to finish construction for other constructors
+	 * </p>
+	 * 
+	 * @param jsonObj
+	 * @param options Decode options (may be null)
+	 * @throws JSONException
+	 */
+	private void finishConstruction(JSONObject jsonObj, DecodeOptions options) throws JSONException {
 		String[] rootKeys = JSONObject.getNames(jsonObj);
 		
 		for(String rootKey : rootKeys){
 			Object rootValue = jsonObj.get(rootKey);
 			
+			JsonField field = JsonField.lookupByName(rootKey);
+			
 			if((rootValue == null) || ("null".equals(rootValue.toString()))){
 				// Don't bother setting the attribute, it should already be null
 			}
-			else if("encodingRate".equals(rootKey)){
-				encodingRate = jsonObj.getInt(rootKey);
-			}
-			else if("referenceId".equals(rootKey)){
-				referenceId = rootValue.toString();
-			}
-			else if("url".equals(rootKey)){
-				url = rootValue.toString();
-			}
-			else if("controllerType".equals(rootKey)){
-				controllerType = ControllerTypeEnum.lookupByName(rootValue.toString());
-				if(controllerType == null){
-					throw new JSONException("[ERR] Media API specified invalid value for controller type '" + rootValue + "'.");
+			else if(field == null){
+				if(options == null){
+					// Disabling exception throw for now - unknown keys will simply junk up the log instead of failing the program
+					// throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
+					Logger.getLogger(this.getClass().getCanonicalName()).warning("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
 				}
-			}
-			else if("size".equals(rootKey)){
-				size = jsonObj.getLong(rootKey);
-			}
-			else if("id".equals(rootKey)){
-				id = jsonObj.getLong(rootKey);
-			}
-			else if("uploadTimestampMillis".equals(rootKey)){
-				uploadTimestampMillis = jsonObj.getLong(rootKey);
-			}
-			else if("frameWidth".equals(rootKey)){
-				frameWidth = jsonObj.getInt(rootKey);
-			}
-			else if("remoteUrl".equals(rootKey)){
-				remoteUrl = rootValue.toString();
-			}
-			else if("remoteStreamName".equals(rootKey)){
-				remoteStreamName = rootValue.toString();
-			}
-			else if("displayName".equals(rootKey)){
-				displayName = rootValue.toString();
-			}
-			else if("videoCodec".equals(rootKey)){
-				videoCodec = VideoCodecEnum.lookupByName(rootValue.toString());
-				if(videoCodec == null){
-					throw new JSONException("[ERR] Media API specified invalid value for video codec '" + rootValue + "'.");
+				else{
+					extras = options.handleUnknownKey("Rendition", rootKey, rootValue, extras);
 				}
 			}
-			else if("videoDuration".equals(rootKey)){
-				videoDuration = jsonObj.getLong(rootKey);
-			}
-			else if("frameHeight".equals(rootKey)){
-				frameHeight = jsonObj.getInt(rootKey);
-			}
-			else if("audioOnly".equals(rootKey)){
-				audioOnly = jsonObj.getBoolean(rootKey);
-			}
-			else if("videoContainer".equals(rootKey)){
-				videoContainer = rootValue.toString();
-			}
 			else{
-				// Disabling exception throw for now - unknown keys will simply junk up the log instead of failing the program
-				// throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
-				Logger.getLogger(this.getClass().getCanonicalName()).warning("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
+				switch(field){
+					case ENCODINGRATE:
+						encodingRate = jsonObj.getInt(rootKey);
+						break;
+					case REFERENCEID:
+						referenceId = rootValue.toString();
+						break;
+					case URL:
+						url = rootValue.toString();
+						break;
+					case CONTROLLERTYPE:
+						controllerType = ControllerTypeEnum.lookupByName(rootValue.toString());
+						if(controllerType == null){
+							throw new JSONException("[ERR] Media API specified invalid value for controller type '" + rootValue + "'.");
+						}
+						break;
+					case SIZE:
+						size = jsonObj.getLong(rootKey);
+						break;
+					case ID:
+						id = jsonObj.getLong(rootKey);
+						break;
+					case UPLOADTIMESTAMPMILLIS:
+						uploadTimestampMillis = jsonObj.getLong(rootKey);
+						break;
+					case FRAMEWIDTH:
+						frameWidth = jsonObj.getInt(rootKey);
+						break;
+					case REMOTEURL:
+						remoteUrl = rootValue.toString();
+						break;
+					case REMOTESTREAMNAME:
+						remoteStreamName = rootValue.toString();
+						break;
+					case DISPLAYNAME:
+						displayName = rootValue.toString();
+						break;
+					case VIDEOCODEC:
+						videoCodec = VideoCodecEnum.lookupByName(rootValue.toString());
+						if(videoCodec == null){
+							throw new JSONException("[ERR] Media API specified invalid value for video codec '" + rootValue + "'.");
+						}
+						break;
+					case VIDEODURATION:
+						videoDuration = jsonObj.getLong(rootKey);
+						break;
+					case FRAMEHEIGHT:
+						frameHeight = jsonObj.getInt(rootKey);
+						break;
+					case AUDIOONLY:
+						audioOnly = jsonObj.getBoolean(rootKey);
+						break;
+					case VIDEOCONTAINER:
+						videoContainer = rootValue.toString();
+						break;
+				}
 			}
 		}
 	}
@@ -288,6 +431,8 @@ public class Rendition {
 		videoContainer        = null;
 		
 		videoCodec = null;
+		
+		extras = null;
 	}
 	
 	/**
@@ -942,6 +1087,23 @@ public class Rendition {
 		this.videoContainer = videoContainer;
 	}
 	
+	/**
+	 * <p>
+	 *    Gets any fields from the Media API response that this Rendition did
+	 *    not recognize.
+	 * </p>
+	 * 
+	 * <p>
+	 *    This is only filled in when the Rendition was decoded with a
+	 *    DecodeOptions object whose unknown field mode is COLLECT.
+	 * </p>
+	 * 
+	 * @return Map of unknown field names to their raw JSON values, or null if there were none
+	 */
+	public Map<String, Object> getExtras(){
+		return extras;
+	}
+	
 	/**
 	 * <p>
 	 *    Converts the rendition into a JSON object suitable for use with the Media API
@@ -1004,6 +1166,83 @@ public class Rendition {
 		return json;
 	}
 	
+	/**
+	 * <p>
+	 *    Writes the rendition as JSON (the same JSON as toJson()) directly to
+	 *    a writer, without building a JSON object first.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @throws JSONException If the rendition can not be written
+	 */
+	public void writeJson(Writer writer) throws JSONException {
+		writeJson(new JSONWriter(writer));
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the rendition as JSON (the same JSON as toJson()) to a JSON
+	 *    writer, e.g. as one value of an array that is being written.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the rendition to
+	 * @throws JSONException If the rendition can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter) throws JSONException {
+		jsonWriter.object();
+		
+		if(url != null){
+			jsonWriter.key("url").value(url);
+		}
+		if(controllerType != null){
+			jsonWriter.key("controllerType").value("" + controllerType);
+		}
+		if(encodingRate != null){
+			jsonWriter.key("encodingRate").value(encodingRate);
+		}
+		if(displayName != null){
+			jsonWriter.key("displayName").value(displayName);
+		}
+		if(frameHeight != null){
+			jsonWriter.key("frameHeight").value(frameHeight);
+		}
+		if(frameWidth != null){
+			jsonWriter.key("frameWidth").value(frameWidth);
+		}
+		if(size != null){
+			jsonWriter.key("size").value(size);
+		}
+		if(remoteUrl != null){
+			jsonWriter.key("remoteUrl").value(remoteUrl);
+		}
+		if(remoteStreamName != null){
+			jsonWriter.key("remoteStreamName").value(remoteStreamName);
+		}
+		if(videoDuration != null){
+			jsonWriter.key("videoDuration").value(videoDuration);
+		}
+		if(id != null){
+			jsonWriter.key("id").value(id);
+		}
+		if(videoCodec != null){
+			jsonWriter.key("videoCodec").value(videoCodec);
+		}
+		if(audioOnly != null){
+			jsonWriter.key("audioOnly").value(audioOnly);
+		}
+		if(referenceId != null){
+			jsonWriter.key("referenceId").value(referenceId);
+		}
+		if(uploadTimestampMillis != null){
+			jsonWriter.key("uploadTimestampMillis").value(uploadTimestampMillis);
+		}
+		if(videoContainer != null){
+			jsonWriter.key("videoContainer").value(videoContainer);
+		}
+		
+		jsonWriter.endObject();
+	}
+	
 	/**
 	 * <p>
 	 *    Uses the W3C libraries to generate an XML representation of
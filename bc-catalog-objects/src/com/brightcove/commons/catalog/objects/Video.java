@@ -1,13 +1,18 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -75,12 +80,14 @@ public class Video {
 	
 	private EconomicsEnum economics;
 	
-	private List<GeoFilterCodeEnum> geoFilteredCountries;
+	private EnumSet<GeoFilterCodeEnum> geoFilteredCountries;
 	
 	private List<CuePoint> cuePoints;
 	
 	private List<CustomField> customFields;
 	
+	private Map<String, Object> extras;
+	
 	/**
 	 * <p>
 	 *    Default Constructor.
@@ -117,7 +124,7 @@ public class Video {
 		
 		JSONObject jsonObj = new JSONObject(json);
 		
-		finishConstruction(jsonObj);
+		finishConstruction(jsonObj, null);
 	}
 	
 	/**
@@ -133,7 +140,53 @@ public class Video {
 	 * 
 	 */
 	public Video(JSONObject jsonObj) throws JSONException {
-		finishConstruction(jsonObj);
+		finishConstruction(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON string and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Video(String), but fields that are not recognized are handled
+	 *    according to the decode options.
+	 * </p>
+	 * 
+	 * @param json JSON string from the Media API
+	 * @param options Decode options (if null, behaves as Video(String))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Video(String json, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		if(json == null){
+			throw new JSONException("[ERR] Video can not be parsed from null JSON string.");
+		}
+		
+		JSONObject jsonObj = new JSONObject(json);
+		
+		finishConstruction(jsonObj, options);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor using JSON object and decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As Video(JSONObject), but fields that are not recognized are
+	 *    handled according to the decode options.
+	 * </p>
+	 * 
+	 * @param jsonObj JSON object from the Media API
+	 * @param options Decode options (if null, behaves as Video(JSONObject))
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Video(JSONObject jsonObj, DecodeOptions options) throws JSONException {
+		initAll();
+		
+		finishConstruction(jsonObj, options);
 	}
 	
 	/**
@@ -353,7 +406,7 @@ public class Video {
 					}
 				}
 				else if(nodeName.equals("geoFilteredCountries")){
-					geoFilteredCountries = new ArrayList<GeoFilterCodeEnum>();
+					geoFilteredCountries = EnumSet.noneOf(GeoFilterCodeEnum.class);
 					
 					Element geoFilterElement = W3CXMLUtils.getFirstElementChild(child);
 					while(geoFilterElement != null){
@@ -401,226 +454,308 @@ public class Video {
 		}
 	}
 	
+	/**
+	 * <p>
+	 *    JSON keys understood by finishConstruction(), looked up by name in a
+	 *    hash table instead of being compared against each key in turn.
+	 * </p>
+	 */
+	private enum JsonField {
+		NAME("name"),
+		ID("id"),
+		CREATIONDATE("creationDate"),
+		ACCOUNTID("accountId"),
+		STARTDATE("startDate"),
+		ENDDATE("endDate"),
+		FLVFULLLENGTH("FLVFullLength"),
+		ITEMSTATE("itemState"),
+		GEOFILTEREXCLUDE("geoFilterExclude"),
+		EXCLUDELISTEDCOUNTRIES("excludeListedCountries"),
+		PLAYSTOTAL("playsTotal"),
+		GEOFILTERED("geoFiltered"),
+		GEORESTRICTED("geoRestricted"),
+		VERSION("version"),
+		PLAYSTRAILINGWEEK("playsTrailingWeek"),
+		LENGTH("length"),
+		THUMBNAILURL("thumbnailURL"),
+		TAGS("tags"),
+		VIDEOSTILLURL("videoStillURL"),
+		REFERENCEID("referenceId"),
+		FLVURL("FLVURL"),
+		VIDEOFULLLENGTH("videoFullLength"),
+		SHORTDESCRIPTION("shortDescription"),
+		LASTMODIFIEDDATE("lastModifiedDate"),
+		RELEASEDATE("releaseDate"),
+		ADKEYS("adKeys"),
+		GEOFILTEREDCOUNTRIES("geoFilteredCountries"),
+		ALLOWEDCOUNTRIES("allowedCountries"),
+		ECONOMICS("economics"),
+		PUBLISHEDDATE("publishedDate"),
+		LONGDESCRIPTION("longDescription"),
+		LINKTEXT("linkText"),
+		LINKURL("linkURL"),
+		RENDITIONS("renditions"),
+		IOSRENDITIONS("IOSRenditions"),
+		CUEPOINTS("cuePoints"),
+		CUSTOMFIELDS("customFields");
+		
+		private static final Map<String, JsonField> lookup = new HashMap<String, JsonField>();
+		static {
+			for(JsonField field : JsonField.values()){
+				lookup.put(field.jsonName, field);
+			}
+		}
+		
+		private final String jsonName;
+		JsonField(String jsonName){
+			this.jsonName = jsonName;
+		}
+		
+		public static JsonField lookupByName(String name){
+			return lookup.get(name);
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Private method to finish construction for other constructors
 	 * </p>
 	 * 
 	 * @param jsonObj
+	 * @param options Decode options (may be null)
 	 * @throws JSONException
 	 */
-	private void finishConstruction(JSONObject jsonObj) throws JSONException {
+	private void finishConstruction(JSONObject jsonObj, DecodeOptions options) throws JSONException {
 		String[] rootKeys = JSONObject.getNames(jsonObj);
 		
 		for(String rootKey : rootKeys){
 			Object rootValue = jsonObj.get(rootKey);
 			
-			if((rootValue == null) || ("null".equals(rootValue.toString()))){
+			JsonField field = JsonField.lookupByName(rootKey);
+			
+			if((rootValue == null) || JSONObject.NULL.equals(rootValue) || "null".equals(rootValue)){
 				// Don't bother setting the attribute, it should already be null
 			}
-			else if("name".equals(rootKey)){
-				name = (String)rootValue;
-			}
-			else if("id".equals(rootKey)){
-				if(rootValue instanceof Integer){
-					// Some JVMs seem to be returning this as an integer instead of a long...
-					id = new Long((Integer)rootValue);
-				}
-				else{
-					id = (Long)rootValue;
-				}
-			}
-			else if("creationDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				creationDate = new Date(rootLong);
-			}
-			else if("accountId".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				accountId = rootLong;
-			}
-			else if("startDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				startDate = new Date(rootLong);
-			}
-			else if("endDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				endDate = new Date(rootLong);
-			}
-			else if("FLVFullLength".equals(rootKey)){
-				videoFullLength = new Rendition(((JSONObject)rootValue).toString());
-			}
-			else if("itemState".equals(rootKey)){
-				if(rootValue.toString().equals("ACTIVE")){
-					itemState = ItemStateEnum.ACTIVE;
-				}
-				else if(rootValue.toString().equals("DELETED")){
-					itemState = ItemStateEnum.DELETED;
-				}
-				else if(rootValue.toString().equals("INACTIVE")){
-					itemState = ItemStateEnum.INACTIVE;
-				}
-				else{
-					throw new JSONException("[ERR] Media API specified invalid value for item state '" + rootValue + "'.  Acceptable values are 'ACTIVE', 'DELETED' and 'INACTIVE'.");
-				}
-			}
-			else if("geoFilterExclude".equals(rootKey)){
-				geoFilteredExclude = jsonObj.getBoolean(rootKey);
-			}
-			else if("excludeListedCountries".equals(rootKey)){
-				geoFilteredExclude = jsonObj.getBoolean(rootKey);
-			}
-			else if("playsTotal".equals(rootKey)){
-				playsTotal = jsonObj.getInt(rootKey);
-			}
-			else if("geoFiltered".equals(rootKey)){
-				geoFiltered = jsonObj.getBoolean(rootKey);
-			}
-			else if("geoRestricted".equals(rootKey)){
-				geoFiltered = jsonObj.getBoolean(rootKey);
-			}
-			else if("version".equals(rootKey)){
-				// Not currently handled...
-				// Usually looks like: 'version'='5'
-			}
-			else if("playsTrailingWeek".equals(rootKey)){
-				playsTrailingWeek = jsonObj.getInt(rootKey);
-			}
-			else if("length".equals(rootKey)){
-				length = jsonObj.getLong(rootKey);
-			}
-			else if("thumbnailURL".equals(rootKey)){
-				thumbnailUrl = rootValue.toString();
-			}
-			else if("tags".equals(rootKey)){
-				tags = new ArrayList<String>();
-				
-				JSONArray tagArray = jsonObj.getJSONArray(rootKey);
-				for(int tagIdx=0;tagIdx<tagArray.length();tagIdx++){
-					String tag = tagArray.get(tagIdx).toString();
-					tags.add(tag);
+			else if(field == null){
+				if(options == null){
+					throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
 				}
+				extras = options.handleUnknownKey("Video", rootKey, rootValue, extras);
 			}
-			else if("videoStillURL".equals(rootKey)){
-				videoStillUrl = rootValue.toString();
-			}
-			else if("referenceId".equals(rootKey)){
-				referenceId = rootValue.toString();
-			}
-			else if("FLVURL".equals(rootKey)){
-				flvUrl = rootValue.toString();
-			}
-			else if("videoFullLength".equals(rootKey)){
-				videoFullLength = new Rendition(((JSONObject)rootValue).toString());
-			}
-			else if("shortDescription".equals(rootKey)){
-				shortDescription = rootValue.toString();
-			}
-			else if("lastModifiedDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				lastModifiedDate = new Date(rootLong);
-			}
-			else if("releaseDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				releaseDate = new Date(rootLong);
-			}
-			else if("adKeys".equals(rootKey)){
-				adKeys = rootValue.toString();
-			}
-			else if("geoFilteredCountries".equals(rootKey)){
-				geoFilteredCountries = new ArrayList<GeoFilterCodeEnum>();
-				
-				JSONArray countryArray = jsonObj.getJSONArray(rootKey);
-				for(int countryIdx=0;countryIdx<countryArray.length();countryIdx++){
-					String country = countryArray.get(countryIdx).toString();
-					
-					for(GeoFilterCodeEnum gfce : GeoFilterCodeEnum.values()){
-						if(gfce.getCode().equals(country)){
-							geoFilteredCountries.add(gfce);
+			else{
+				switch(field){
+					case NAME:
+						name = (String)rootValue;
+						break;
+					case ID:
+						if(rootValue instanceof Integer){
+							// Some JVMs seem to be returning this as an integer instead of a long...
+							id = new Long((Integer)rootValue);
 						}
+						else{
+							id = (Long)rootValue;
+						}
+						break;
+					case CREATIONDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						creationDate = new Date(rootLong);
+						break;
 					}
-				}
-			}
-			else if("allowedCountries".equals(rootKey)){
-				geoFilteredCountries = new ArrayList<GeoFilterCodeEnum>();
-				
-				JSONArray countryArray = jsonObj.getJSONArray(rootKey);
-				for(int countryIdx=0;countryIdx<countryArray.length();countryIdx++){
-					String country = countryArray.get(countryIdx).toString();
-					
-					for(GeoFilterCodeEnum gfce : GeoFilterCodeEnum.values()){
-						if(gfce.getCode().equals(country)){
-							geoFilteredCountries.add(gfce);
+					case ACCOUNTID:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						accountId = rootLong;
+						break;
+					}
+					case STARTDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						startDate = new Date(rootLong);
+						break;
+					}
+					case ENDDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						endDate = new Date(rootLong);
+						break;
+					}
+					case FLVFULLLENGTH:
+						videoFullLength = new Rendition((JSONObject)rootValue, options);
+						break;
+					case ITEMSTATE:
+						if(rootValue.toString().equals("ACTIVE")){
+							itemState = ItemStateEnum.ACTIVE;
 						}
+						else if(rootValue.toString().equals("DELETED")){
+							itemState = ItemStateEnum.DELETED;
+						}
+						else if(rootValue.toString().equals("INACTIVE")){
+							itemState = ItemStateEnum.INACTIVE;
+						}
+						else{
+							throw new JSONException("[ERR] Media API specified invalid value for item state '" + rootValue + "'.  Acceptable values are 'ACTIVE', 'DELETED' and 'INACTIVE'.");
+						}
+						break;
+					case GEOFILTEREXCLUDE:
+						geoFilteredExclude = jsonObj.getBoolean(rootKey);
+						break;
+					case EXCLUDELISTEDCOUNTRIES:
+						geoFilteredExclude = jsonObj.getBoolean(rootKey);
+						break;
+					case PLAYSTOTAL:
+						playsTotal = jsonObj.getInt(rootKey);
+						break;
+					case GEOFILTERED:
+						geoFiltered = jsonObj.getBoolean(rootKey);
+						break;
+					case GEORESTRICTED:
+						geoFiltered = jsonObj.getBoolean(rootKey);
+						break;
+					case VERSION:
+						// Not currently handled...
+						// Usually looks like: 'version'='5'
+						break;
+					case PLAYSTRAILINGWEEK:
+						playsTrailingWeek = jsonObj.getInt(rootKey);
+						break;
+					case LENGTH:
+						length = jsonObj.getLong(rootKey);
+						break;
+					case THUMBNAILURL:
+						thumbnailUrl = rootValue.toString();
+						break;
+					case TAGS:{
+						tags = new ArrayList<String>();
+						
+						JSONArray tagArray = jsonObj.getJSONArray(rootKey);
+						for(int tagIdx=0;tagIdx<tagArray.length();tagIdx++){
+							String tag = tagArray.get(tagIdx).toString();
+							tags.add(tag);
+						}
+						break;
 					}
-				}
-			}
-			else if("economics".equals(rootKey)){
-				for(EconomicsEnum ee : EconomicsEnum.values()){
-					if(ee.toString().equals(rootValue.toString())){
-						economics = ee;
+					case VIDEOSTILLURL:
+						videoStillUrl = rootValue.toString();
+						break;
+					case REFERENCEID:
+						referenceId = rootValue.toString();
+						break;
+					case FLVURL:
+						flvUrl = rootValue.toString();
+						break;
+					case VIDEOFULLLENGTH:
+						videoFullLength = new Rendition((JSONObject)rootValue, options);
+						break;
+					case SHORTDESCRIPTION:
+						shortDescription = rootValue.toString();
+						break;
+					case LASTMODIFIEDDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						lastModifiedDate = new Date(rootLong);
+						break;
 					}
-				}
-			}
-			else if("publishedDate".equals(rootKey)){
-				Long rootLong = jsonObj.getLong(rootKey);
-				publishedDate = new Date(rootLong);
-			}
-			else if("longDescription".equals(rootKey)){
-				longDescription = rootValue.toString();
-			}
-			else if("linkText".equals(rootKey)){
-				this.linkText = rootValue.toString();
-			}
-			else if("linkURL".equals(rootKey)){
-				this.linkUrl = rootValue.toString();
-			}
-			else if("renditions".equals(rootKey)){
-				renditions = new ArrayList<Rendition>();
-				
-				JSONArray rendArray = jsonObj.getJSONArray(rootKey);
-				for(int rendIdx=0;rendIdx<rendArray.length();rendIdx++){
-					String    rend      = rendArray.get(rendIdx).toString();
-					Rendition rendition = new Rendition(rend);
-					renditions.add(rendition);
-				}
-			}
-			else if("IOSRenditions".equals(rootKey)){
-				iosRenditions = new ArrayList<iosRendition>();
-				
-				JSONArray rendArray = jsonObj.getJSONArray(rootKey);
-				for(int rendIdx=0;rendIdx<rendArray.length();rendIdx++){
-					String    rend      = rendArray.get(rendIdx).toString();
-					iosRendition iosRendition = new iosRendition(rend);
-					iosRenditions.add(iosRendition);
-				}
-			}
-			else if("cuePoints".equals(rootKey)){
-				cuePoints = new ArrayList<CuePoint>();
-				
-				JSONArray cueArray = jsonObj.getJSONArray(rootKey);
-				for(int cueIdx=0;cueIdx<cueArray.length();cueIdx++){
-					String   cue      = cueArray.get(cueIdx).toString();
-					CuePoint cuePoint = new CuePoint(cue);
-					cuePoints.add(cuePoint);
-				}
-			}
-			else if("customFields".equals(rootKey)){
-				customFields = new ArrayList<CustomField>();
-				
-				JSONObject customObj  = jsonObj.getJSONObject(rootKey);
-				String[]   customKeys = JSONObject.getNames(customObj);
-				if(customKeys != null) {
-					for(String customKey : customKeys){
-						String customValue = customObj.getString(customKey);
+					case RELEASEDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						releaseDate = new Date(rootLong);
+						break;
+					}
+					case ADKEYS:
+						adKeys = rootValue.toString();
+						break;
+					case GEOFILTEREDCOUNTRIES:{
+						geoFilteredCountries = EnumSet.noneOf(GeoFilterCodeEnum.class);
+						
+						JSONArray countryArray = jsonObj.getJSONArray(rootKey);
+						for(int countryIdx=0;countryIdx<countryArray.length();countryIdx++){
+							String            country = countryArray.get(countryIdx).toString();
+							GeoFilterCodeEnum gfce    = GeoFilterCodeEnum.lookupByCode(country);
+							if(gfce != null){
+								geoFilteredCountries.add(gfce);
+							}
+						}
+						break;
+					}
+					case ALLOWEDCOUNTRIES:{
+						geoFilteredCountries = EnumSet.noneOf(GeoFilterCodeEnum.class);
+						
+						JSONArray countryArray = jsonObj.getJSONArray(rootKey);
+						for(int countryIdx=0;countryIdx<countryArray.length();countryIdx++){
+							String            country = countryArray.get(countryIdx).toString();
+							GeoFilterCodeEnum gfce    = GeoFilterCodeEnum.lookupByCode(country);
+							if(gfce != null){
+								geoFilteredCountries.add(gfce);
+							}
+						}
+						break;
+					}
+					case ECONOMICS:
+						for(EconomicsEnum ee : EconomicsEnum.values()){
+							if(ee.toString().equals(rootValue.toString())){
+								economics = ee;
+							}
+						}
+						break;
+					case PUBLISHEDDATE:{
+						Long rootLong = jsonObj.getLong(rootKey);
+						publishedDate = new Date(rootLong);
+						break;
+					}
+					case LONGDESCRIPTION:
+						longDescription = rootValue.toString();
+						break;
+					case LINKTEXT:
+						this.linkText = rootValue.toString();
+						break;
+					case LINKURL:
+						this.linkUrl = rootValue.toString();
+						break;
+					case RENDITIONS:{
+						renditions = new ArrayList<Rendition>();
+						
+						JSONArray rendArray = jsonObj.getJSONArray(rootKey);
+						for(int rendIdx=0;rendIdx<rendArray.length();rendIdx++){
+							JSONObject rend      = rendArray.getJSONObject(rendIdx);
+							Rendition  rendition = new Rendition(rend, options);
+							renditions.add(rendition);
+						}
+						break;
+					}
+					case IOSRENDITIONS:{
+						iosRenditions = new ArrayList<iosRendition>();
+						
+						JSONArray rendArray = jsonObj.getJSONArray(rootKey);
+						for(int rendIdx=0;rendIdx<rendArray.length();rendIdx++){
+							JSONObject   rend         = rendArray.getJSONObject(rendIdx);
+							iosRendition iosRendition = new iosRendition(rend, options);
+							iosRenditions.add(iosRendition);
+						}
+						break;
+					}
+					case CUEPOINTS:{
+						cuePoints = new ArrayList<CuePoint>();
 						
-						CustomField customField = new CustomField(customKey, customValue);
-						customFields.add(customField);
+						JSONArray cueArray = jsonObj.getJSONArray(rootKey);
+						for(int cueIdx=0;cueIdx<cueArray.length();cueIdx++){
+							JSONObject cue      = cueArray.getJSONObject(cueIdx);
+							CuePoint   cuePoint = new CuePoint(cue, options);
+							cuePoints.add(cuePoint);
+						}
+						break;
+					}
+					case CUSTOMFIELDS:{
+						customFields = new ArrayList<CustomField>();
+						
+						JSONObject customObj  = jsonObj.getJSONObject(rootKey);
+						String[]   customKeys = JSONObject.getNames(customObj);
+						if(customKeys != null) {
+							for(String customKey : customKeys){
+								String customValue = customObj.getString(customKey);
+								
+								CustomField customField = new CustomField(customKey, customValue);
+								customFields.add(customField);
+							}
+						}
+						break;
 					}
 				}
 			}
-			else{
-				throw new JSONException("[ERR] Unknown root key '" + rootKey + "'='" + rootValue + "'.");
-			}
 		}
 	}
 	
@@ -669,6 +804,8 @@ public class Video {
 		cuePoints = null;
 		
 		customFields = null;
+		
+		extras = null;
 	}
 	
 	/**
@@ -1745,6 +1882,23 @@ public class Video {
 		this.customFields = customFields;
 	}
 	
+	/**
+	 * <p>
+	 *    Gets any fields from the Media API response that this Video did
+	 *    not recognize.
+	 * </p>
+	 * 
+	 * <p>
+	 *    This is only filled in when the Video was decoded with a
+	 *    DecodeOptions object whose unknown field mode is COLLECT.
+	 * </p>
+	 * 
+	 * @return Map of unknown field names to their raw JSON values, or null if there were none
+	 */
+	public Map<String, Object> getExtras(){
+		return extras;
+	}
+	
 	/**
 	 * <p>
 	 *    Gets the economics for this Video.
@@ -1900,10 +2054,19 @@ public class Video {
 	 *    </code>
 	 * </p>
 	 * 
+	 * <p>
+	 *    The countries are held internally as an EnumSet, so this returns a
+	 *    copy - changes to the list will not affect the Video.  Use
+	 *    setGeoFilteredCountries() or getGeoFilteredCountrySet() instead.
+	 * </p>
+	 * 
 	 * @return The geo-filtered countries for this Video
 	 */
 	public List<GeoFilterCodeEnum> getGeoFilteredCountries(){
-		return geoFilteredCountries;
+		if(geoFilteredCountries == null){
+			return null;
+		}
+		return new ArrayList<GeoFilterCodeEnum>(geoFilteredCountries);
 	}
 	
 	/**
@@ -1926,6 +2089,39 @@ public class Video {
 	 * @param geoFilteredCountries The geo-filtered countries for this Video
 	 */
 	public void setGeoFilteredCountries(List<GeoFilterCodeEnum> geoFilteredCountries){
+		if(geoFilteredCountries == null){
+			this.geoFilteredCountries = null;
+		}
+		else{
+			this.geoFilteredCountries = EnumSet.noneOf(GeoFilterCodeEnum.class);
+			this.geoFilteredCountries.addAll(geoFilteredCountries);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the geo-filtered countries for this Video as a set.
+	 * </p>
+	 * 
+	 * <p>
+	 *    This is the set used internally, so changes to it will affect the
+	 *    Video.
+	 * </p>
+	 * 
+	 * @return The geo-filtered countries for this Video
+	 */
+	public EnumSet<GeoFilterCodeEnum> getGeoFilteredCountrySet(){
+		return geoFilteredCountries;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the geo-filtered countries for this Video as a set.
+	 * </p>
+	 * 
+	 * @param geoFilteredCountries The geo-filtered countries for this Video
+	 */
+	public void setGeoFilteredCountrySet(EnumSet<GeoFilterCodeEnum> geoFilteredCountries){
 		this.geoFilteredCountries = geoFilteredCountries;
 	}
 	
@@ -1977,6 +2173,34 @@ public class Video {
 		this.geoFilteredExclude = geoFilteredExclude;
 	}
 	
+	/**
+	 * <p>
+	 *    Determines whether this Video may be played in the given country,
+	 *    based on the geo filtered state, geo filtered exclude state and
+	 *    geo-filtered countries.
+	 * </p>
+	 * 
+	 * <p>
+	 *    If the Video is not geo filtered it is playable everywhere.  If it
+	 *    is, it is playable in the listed countries only, or everywhere but
+	 *    the listed countries if geo filtered exclude is true.
+	 * </p>
+	 * 
+	 * @param country Country the Video would be played in
+	 * @return True if the Video may be played in the country
+	 */
+	public Boolean isPlayableIn(GeoFilterCodeEnum country){
+		if((geoFiltered == null) || (! geoFiltered)){
+			return true;
+		}
+		
+		Boolean listed = (geoFilteredCountries != null) && (country != null) && geoFilteredCountries.contains(country);
+		if((geoFilteredExclude != null) && geoFilteredExclude){
+			return ! listed;
+		}
+		return listed;
+	}
+	
 	/**
 	 * <p>
 	 *    Gets the cue points for this Video.
@@ -2277,6 +2501,11 @@ public class Video {
 			
 			json.put("renditions", jsonRenditions);
 		}
+		else if(includeNullFields.contains(VideoFieldEnum.RENDITIONS)){
+			JSONArray jsonArray = new JSONArray();
+			json.put("renditions", jsonArray);
+		}
+		
 		if(iosRenditions != null){
 			JSONArray jsonRenditions = new JSONArray();
 			for(iosRendition iosRendition : iosRenditions){
@@ -2286,10 +2515,6 @@ public class Video {
 			
 			json.put("IOSRenditions", jsonRenditions);
 		}
-		else if(includeNullFields.contains(VideoFieldEnum.RENDITIONS)){
-			JSONArray jsonArray = new JSONArray();
-			json.put("renditions", jsonArray);
-		}
 		else if(includeNullFields.contains(VideoFieldEnum.IOSRENDITIONS)){
 			JSONArray jsonArray = new JSONArray();
 			json.put("IOSRenditions", jsonArray);
@@ -2365,6 +2590,268 @@ public class Video {
 		return json;
 	}
 	
+	/**
+	 * <p>
+	 *    Writes the video as JSON (the same JSON as toJson()) directly to a
+	 *    writer, without building a JSON object first.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Null values will not be included in the JSON written.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @throws JSONException If the video can not be written
+	 */
+	public void writeJson(Writer writer) throws JSONException {
+		writeJson(new JSONWriter(writer), null);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the video as JSON (the same JSON as toJson(includeNullFields))
+	 *    directly to a writer, without building a JSON object first.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @param includeNullFields Set of fields to include in the JSON written, even if they are null values
+	 * @throws JSONException If the video can not be written
+	 */
+	public void writeJson(Writer writer, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		writeJson(new JSONWriter(writer), includeNullFields);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the video as JSON (the same JSON as toJson()) to a JSON
+	 *    writer, e.g. as one value of an array that is being written.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the video to
+	 * @throws JSONException If the video can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter) throws JSONException {
+		writeJson(jsonWriter, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the video as JSON (the same JSON as toJson(includeNullFields))
+	 *    to a JSON writer, e.g. as one value of an array that is being
+	 *    written.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As with toJson(), simple fields that are null are left out even if
+	 *    they are in includeNullFields - only dates, ad keys and the list
+	 *    fields are written as null / empty.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the video to
+	 * @param includeNullFields Set of fields to include in the JSON written, even if they are null values
+	 * @throws JSONException If the video can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		if(includeNullFields == null){
+			includeNullFields = VideoFieldEnum.CreateEmptyEnumSet();
+		}
+		
+		jsonWriter.object();
+		
+		if(name != null){
+			jsonWriter.key("name").value(name);
+		}
+		
+		if(id != null){
+			jsonWriter.key("id").value(id);
+		}
+		
+		if(referenceId != null){
+			jsonWriter.key("referenceId").value(referenceId);
+		}
+		
+		if(accountId != null){
+			jsonWriter.key("accountId").value(accountId);
+		}
+		
+		if(shortDescription != null){
+			jsonWriter.key("shortDescription").value(shortDescription);
+		}
+		
+		if(longDescription != null){
+			jsonWriter.key("longDescription").value(longDescription);
+		}
+		
+		if(flvUrl != null){
+			jsonWriter.key("FLVURL").value(flvUrl);
+		}
+		
+		writeJsonDate(jsonWriter, "creationDate", creationDate, includeNullFields.contains(VideoFieldEnum.CREATIONDATE));
+		writeJsonDate(jsonWriter, "publishedDate", publishedDate, includeNullFields.contains(VideoFieldEnum.PUBLISHEDDATE));
+		writeJsonDate(jsonWriter, "lastModifiedDate", lastModifiedDate, includeNullFields.contains(VideoFieldEnum.LASTMODIFIEDDATE));
+		writeJsonDate(jsonWriter, "releaseDate", releaseDate, includeNullFields.contains(VideoFieldEnum.RELEASEDATE));
+		
+		if(adKeys != null){
+			jsonWriter.key("adKeys").value(adKeys);
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.ADKEYS)){
+			jsonWriter.key("adKeys").value(JSONObject.NULL);
+		}
+		
+		writeJsonDate(jsonWriter, "startDate", startDate, includeNullFields.contains(VideoFieldEnum.STARTDATE));
+		writeJsonDate(jsonWriter, "endDate", endDate, includeNullFields.contains(VideoFieldEnum.ENDDATE));
+		
+		if(linkUrl != null){
+			jsonWriter.key("linkURL").value(linkUrl);
+		}
+		
+		if(linkText != null){
+			jsonWriter.key("linkText").value(linkText);
+		}
+		
+		if(videoStillUrl != null){
+			jsonWriter.key("videoStillURL").value(videoStillUrl);
+		}
+		
+		if(thumbnailUrl != null){
+			jsonWriter.key("thumbnailURL").value(thumbnailUrl);
+		}
+		
+		if(length != null){
+			jsonWriter.key("length").value(length);
+		}
+		
+		if(geoFiltered != null){
+			// Change to Media API (circa 3.2.x maybe?) "geoFiltered" is
+			// now "geoRestricted"
+			jsonWriter.key("geoRestricted").value(geoFiltered);
+		}
+		
+		if(geoFilteredExclude != null){
+			jsonWriter.key("geoFilterExclude").value(geoFilteredExclude);
+		}
+		
+		if(playsTotal != null){
+			jsonWriter.key("playsTotal").value(playsTotal);
+		}
+		
+		if(playsTrailingWeek != null){
+			jsonWriter.key("playsTrailingWeek").value(playsTrailingWeek);
+		}
+		
+		if(renditions != null){
+			jsonWriter.key("renditions").array();
+			for(Rendition rendition : renditions){
+				rendition.writeJson(jsonWriter);
+			}
+			jsonWriter.endArray();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.RENDITIONS)){
+			jsonWriter.key("renditions").array().endArray();
+		}
+		
+		if(iosRenditions != null){
+			jsonWriter.key("IOSRenditions").array();
+			for(iosRendition iosRendition : iosRenditions){
+				iosRendition.writeJson(jsonWriter);
+			}
+			jsonWriter.endArray();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.IOSRENDITIONS)){
+			jsonWriter.key("IOSRenditions").array().endArray();
+		}
+		
+		if(videoFullLength != null){
+			jsonWriter.key("videoFullLength");
+			videoFullLength.writeJson(jsonWriter);
+		}
+		
+		if(itemState != null){
+			jsonWriter.key("itemState").value(itemState);
+		}
+		
+		if(tags != null){
+			jsonWriter.key("tags").array();
+			for(String tag : tags){
+				jsonWriter.value(tag);
+			}
+			jsonWriter.endArray();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.TAGS)){
+			jsonWriter.key("tags").array().endArray();
+		}
+		
+		if(economics != null){
+			jsonWriter.key("economics").value(economics);
+		}
+		
+		if(geoFilteredCountries != null){
+			jsonWriter.key("geoFilteredCountries").array();
+			for(GeoFilterCodeEnum country : geoFilteredCountries){
+				jsonWriter.value(country.getCode());
+			}
+			jsonWriter.endArray();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.GEOFILTEREDCOUNTRIES)){
+			jsonWriter.key("geoFilteredCountries").array().endArray();
+		}
+		
+		if(cuePoints != null){
+			jsonWriter.key("cuePoints").array();
+			for(CuePoint cuePoint : cuePoints){
+				cuePoint.writeJson(jsonWriter);
+			}
+			jsonWriter.endArray();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.CUEPOINTS)){
+			jsonWriter.key("cuePoints").array().endArray();
+		}
+		
+		if(customFields != null){
+			// As with toJson(), a later field with the same name replaces an
+			// earlier one (JSONWriter would otherwise reject the duplicate key)
+			Map<String, String> customValues = new LinkedHashMap<String, String>();
+			for(CustomField customField : customFields){
+				if(customField.getName() != null){
+					customValues.put(customField.getName(), customField.getValue());
+				}
+			}
+			
+			jsonWriter.key("customFields").object();
+			for(Map.Entry<String, String> customValue : customValues.entrySet()){
+				if(customValue.getValue() != null){
+					jsonWriter.key(customValue.getKey()).value(customValue.getValue());
+				}
+			}
+			jsonWriter.endObject();
+		}
+		else if(includeNullFields.contains(VideoFieldEnum.CUSTOMFIELDS)){
+			jsonWriter.key("customFields").array().endArray();
+		}
+		
+		jsonWriter.endObject();
+	}
+	
+	/**
+	 * <p>
+	 *    Writes one date field of the video as milliseconds since the epoch.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the date to
+	 * @param key Key to write the date under
+	 * @param date Date to write (may be null)
+	 * @param includeNull If true, a null date is written as null instead of being left out
+	 * @throws JSONException If the date can not be written
+	 */
+	private void writeJsonDate(JSONWriter jsonWriter, String key, Date date, Boolean includeNull) throws JSONException {
+		if(date != null){
+			jsonWriter.key(key).value(date.getTime());
+		}
+		else if(includeNull){
+			jsonWriter.key(key).value(JSONObject.NULL);
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Uses the W3C libraries to generate an XML representation of
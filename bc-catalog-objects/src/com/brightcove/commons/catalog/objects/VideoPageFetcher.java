@@ -0,0 +1,421 @@
+package com.brightcove.commons.catalog.objects;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
+import org.json.JSONKeyCache;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.brightcove.commons.http.HttpClientFactory;
+import com.brightcove.commons.http.HttpUtils;
+
+/**
+ * <p>
+ *    Fetches every page of a Media API video read call concurrently and
+ *    merges the pages into a single Videos object.
+ * </p>
+ *
+ * <p>
+ *    The first page is fetched on the calling thread (with get_item_count
+ *    turned on) so that its total count can be used to work out how many
+ *    more pages there are.  The remaining pages are then fetched by a pool
+ *    of fetch threads, and each response body is handed to a separate pool
+ *    of decode threads to be turned into Videos.  Finally the pages are
+ *    added, in page order, to the Videos from the first page.
+ * </p>
+ *
+ * <p>
+ *    At most maxPendingPages response bodies are held at any one time
+ *    (fetched but not yet decoded) - once that many are waiting, the fetch
+ *    threads block until the decode threads catch up.
+ * </p>
+ *
+ * <p>
+ *    The client factory is called once per page, so it should hand out a
+ *    shared, pooled client such as the one from PooledHttpClientFactory.
+ *    DefaultHttpClientFactory creates a new client (and connection
+ *    manager) for every call, none of which are ever shut down.
+ * </p>
+ *
+ * <p>
+ *    Typical usage:
+ *    <pre>
+ *    BcHttpParams params = new BcHttpParams();
+ *    params.addIntegerParam(PooledHttpClientFactory.PARAM_MAX_CONNECTIONS_PER_ROUTE, 8);
+ *
+ *    PooledHttpClientFactory factory = new PooledHttpClientFactory(params);
+ *    try{
+ *        VideoPageFetcher fetcher = new VideoPageFetcher(factory);
+ *        fetcher.setFetchThreads(8);
+ *        Videos videos = fetcher.fetchAll("http://api.brightcove.com/services/library?command=search_videos&amp;token=...");
+ *    }
+ *    finally{
+ *        factory.shutdown();
+ *    }
+ *    </pre>
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class VideoPageFetcher {
+	public static final Integer MAX_PAGE_SIZE = 100;
+	
+	private HttpClientFactory clientFactory;
+	private DecodeOptions     decodeOptions;
+	private Integer           pageSize;
+	private Integer           fetchThreads;
+	private Integer           decodeThreads;
+	private Integer           maxPendingPages;
+	
+	/**
+	 * <p>
+	 *    Creates a new fetcher that gets its HTTP clients from the given
+	 *    factory.
+	 * </p>
+	 * 
+	 * <p>
+	 *    By default pages of 100 videos are fetched by 4 threads, decoded
+	 *    by one thread per available processor, and at most 8 undecoded
+	 *    pages are held at once.
+	 * </p>
+	 * 
+	 * @param clientFactory Factory to get HTTP clients from (called once per page, so it should return a shared, pooled client)
+	 */
+	public VideoPageFetcher(HttpClientFactory clientFactory){
+		Integer processors = Runtime.getRuntime().availableProcessors();
+		
+		this.clientFactory   = clientFactory;
+		this.decodeOptions   = null;
+		this.pageSize        = MAX_PAGE_SIZE;
+		this.fetchThreads    = 4;
+		this.decodeThreads   = processors;
+		this.maxPendingPages = 8;
+	}
+	
+	/**
+	 * <p>
+	 *    Fetches every page of a Media API read call.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The page_size, page_number and get_item_count parameters are added
+	 *    to the URL for each page, so they should not already be on it.  If
+	 *    the first page does not report a total count, only the first page
+	 *    is returned.
+	 * </p>
+	 * 
+	 * @param readUrl Media API read URL (including command and token)
+	 * @return All of the videos, in the order the Media API returned them
+	 * @throws IOException If a page could not be fetched
+	 * @throws JSONException If a page could not be decoded
+	 * @throws InterruptedException If the calling thread was interrupted while waiting for the pages
+	 */
+	public Videos fetchAll(String readUrl) throws IOException, JSONException, InterruptedException {
+		Videos  videos     = decodePage(fetchPage(readUrl, 0));
+		Integer totalCount = videos.getTotalCount();
+		
+		if((totalCount == null) || (totalCount <= pageSize)){
+			return videos;
+		}
+		
+		Integer pageCount = (totalCount + pageSize - 1) / pageSize;
+		
+		ExecutorService fetchPool  = Executors.newFixedThreadPool(Math.min(fetchThreads, pageCount - 1));
+		ExecutorService decodePool = Executors.newFixedThreadPool(decodeThreads);
+		Semaphore       pending    = new Semaphore(maxPendingPages);
+		try{
+			List<Future<Future<Videos>>> pages = new ArrayList<Future<Future<Videos>>>();
+			for(int pageNumber=1;pageNumber<pageCount;pageNumber++){
+				pages.add(fetchPool.submit(new FetchTask(readUrl, pageNumber, decodePool, pending)));
+			}
+			
+			for(Future<Future<Videos>> page : pages){
+				videos.addAll(page.get().get());
+			}
+		}
+		catch(ExecutionException ee){
+			throw unwrap(ee);
+		}
+		finally{
+			fetchPool.shutdownNow();
+			decodePool.shutdownNow();
+		}
+		
+		return videos;
+	}
+	
+	/**
+	 * <p>
+	 *    Fetches a single page of a Media API read call.
+	 * </p>
+	 * 
+	 * @param readUrl Media API read URL (including command and token)
+	 * @param pageNumber Page to fetch (starting at 0)
+	 * @return Body of the response
+	 * @throws IOException If the page could not be fetched
+	 */
+	private String fetchPage(String readUrl, Integer pageNumber) throws IOException {
+		String separator = (readUrl.indexOf('?') < 0) ? "?" : "&";
+		String pageUrl   = readUrl + separator + "page_size=" + pageSize + "&page_number=" + pageNumber + "&get_item_count=true";
+		
+		HttpClient   client   = clientFactory.getHttpClient();
+		HttpResponse response = client.execute(new HttpGet(pageUrl));
+		HttpEntity   entity   = response.getEntity();
+		try{
+			Integer statusCode = response.getStatusLine().getStatusCode();
+			if(statusCode != 200){
+				throw new IOException("[ERR] Media API returned status " + statusCode + " for page " + pageNumber + ".");
+			}
+			
+			String body = HttpUtils.parseHttpEntity(entity);
+			if(body == null){
+				throw new IOException("[ERR] Media API returned no content for page " + pageNumber + ".");
+			}
+			return body;
+		}
+		finally{
+			// Releases the connection back to the client's connection manager
+			if(entity != null){
+				EntityUtils.consume(entity);
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Decodes a single page of a Media API read call.
+	 * </p>
+	 * 
+	 * @param body Body of the response
+	 * @return Videos on the page
+	 * @throws JSONException If the page could not be decoded
+	 */
+	private Videos decodePage(String body) throws JSONException {
+		JSONTokener tokener = new JSONTokener(body);
+		tokener.setKeyCache(new JSONKeyCache());
+		
+		return new Videos(new JSONObject(tokener), decodeOptions);
+	}
+	
+	/**
+	 * <p>
+	 *    Turns the failure of a fetch or decode task back into the exception
+	 *    the task threw.
+	 * </p>
+	 * 
+	 * @param ee Exception thrown by Future.get()
+	 * @return IOException to throw (if the task did not fail with a JSONException or runtime exception)
+	 * @throws JSONException If the task failed to decode a page
+	 */
+	private IOException unwrap(ExecutionException ee) throws JSONException {
+		Throwable cause = ee.getCause();
+		if(cause instanceof ExecutionException){
+			cause = cause.getCause();
+		}
+		
+		if(cause instanceof IOException){
+			return (IOException)cause;
+		}
+		if(cause instanceof JSONException){
+			throw (JSONException)cause;
+		}
+		if(cause instanceof RuntimeException){
+			throw (RuntimeException)cause;
+		}
+		if(cause instanceof Error){
+			throw (Error)cause;
+		}
+		
+		IOException ioe = new IOException("[ERR] Failed to fetch page: " + cause);
+		ioe.initCause(cause);
+		return ioe;
+	}
+	
+	/**
+	 * <p>
+	 *    Fetches one page and queues its body for decoding.
+	 * </p>
+	 */
+	private class FetchTask implements Callable<Future<Videos>> {
+		private String          readUrl;
+		private Integer         pageNumber;
+		private ExecutorService decodePool;
+		private Semaphore       pending;
+		
+		public FetchTask(String readUrl, Integer pageNumber, ExecutorService decodePool, Semaphore pending){
+			this.readUrl    = readUrl;
+			this.pageNumber = pageNumber;
+			this.decodePool = decodePool;
+			this.pending    = pending;
+		}
+		
+		public Future<Videos> call() throws IOException, InterruptedException {
+			// Wait for room before fetching, so undecoded bodies can't pile up
+			pending.acquire();
+			
+			final String body;
+			try{
+				body = fetchPage(readUrl, pageNumber);
+			}
+			catch(IOException ioe){
+				pending.release();
+				throw ioe;
+			}
+			catch(RuntimeException re){
+				pending.release();
+				throw re;
+			}
+			
+			return decodePool.submit(new Callable<Videos>(){
+				public Videos call() throws JSONException {
+					try{
+						return decodePage(body);
+					}
+					finally{
+						pending.release();
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the options used to decode each page.
+	 * </p>
+	 * 
+	 * @return Options used to decode each page (may be null)
+	 */
+	public DecodeOptions getDecodeOptions(){
+		return decodeOptions;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the options used to decode each page.  The same options
+	 *    object is shared by every decode thread.
+	 * </p>
+	 * 
+	 * @param decodeOptions Options used to decode each page (may be null)
+	 */
+	public void setDecodeOptions(DecodeOptions decodeOptions){
+		this.decodeOptions = decodeOptions;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the number of videos requested per page.
+	 * </p>
+	 * 
+	 * @return Number of videos requested per page
+	 */
+	public Integer getPageSize(){
+		return pageSize;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of videos requested per page (1 to 100).
+	 * </p>
+	 * 
+	 * @param pageSize Number of videos requested per page
+	 */
+	public void setPageSize(Integer pageSize){
+		if((pageSize == null) || (pageSize < 1) || (pageSize > MAX_PAGE_SIZE)){
+			throw new IllegalArgumentException("[ERR] Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+		}
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the number of pages fetched at once.
+	 * </p>
+	 * 
+	 * @return Number of pages fetched at once
+	 */
+	public Integer getFetchThreads(){
+		return fetchThreads;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of pages fetched at once.
+	 * </p>
+	 * 
+	 * @param fetchThreads Number of pages fetched at once
+	 */
+	public void setFetchThreads(Integer fetchThreads){
+		if((fetchThreads == null) || (fetchThreads < 1)){
+			throw new IllegalArgumentException("[ERR] Fetch threads must be at least 1.");
+		}
+		this.fetchThreads = fetchThreads;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the number of pages decoded at once.
+	 * </p>
+	 * 
+	 * @return Number of pages decoded at once
+	 */
+	public Integer getDecodeThreads(){
+		return decodeThreads;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of pages decoded at once.
+	 * </p>
+	 * 
+	 * @param decodeThreads Number of pages decoded at once
+	 */
+	public void setDecodeThreads(Integer decodeThreads){
+		if((decodeThreads == null) || (decodeThreads < 1)){
+			throw new IllegalArgumentException("[ERR] Decode threads must be at least 1.");
+		}
+		this.decodeThreads = decodeThreads;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the maximum number of fetched pages waiting to be decoded.
+	 * </p>
+	 * 
+	 * @return Maximum number of fetched pages waiting to be decoded
+	 */
+	public Integer getMaxPendingPages(){
+		return maxPendingPages;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the maximum number of fetched pages waiting to be decoded.
+	 *    Once this many pages are waiting, fetching pauses until the decode
+	 *    threads catch up.
+	 * </p>
+	 * 
+	 * @param maxPendingPages Maximum number of fetched pages waiting to be decoded
+	 */
+	public void setMaxPendingPages(Integer maxPendingPages){
+		if((maxPendingPages == null) || (maxPendingPages < 1)){
+			throw new IllegalArgumentException("[ERR] Max pending pages must be at least 1.");
+		}
+		this.maxPendingPages = maxPendingPages;
+	}
+}
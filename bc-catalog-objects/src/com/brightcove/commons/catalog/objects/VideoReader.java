@@ -0,0 +1,399 @@
+package com.brightcove.commons.catalog.objects;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.json.JSONException;
+import org.json.JSONKeyCache;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * <p>
+ *    Reads the videos out of a Media API video list response one at a time.
+ * </p>
+ * 
+ * <p>
+ *    Unlike Videos(JSONObject), this never builds the full JSON tree for the
+ *    response.  Only the JSON for the video currently being read is held in
+ *    memory, so very large responses (or files containing them) can be
+ *    processed with memory bounded by a single video.
+ * </p>
+ * 
+ * <p>
+ *    Typical usage:
+ *    <pre>
+ *    VideoReader reader = new VideoReader(inputStream);
+ *    Video video = reader.readVideo();
+ *    while(video != null){
+ *        ...
+ *        video = reader.readVideo();
+ *    }
+ *    </pre>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class VideoReader {
+	private JSONTokener   tokener;
+	private DecodeOptions options;
+	private Boolean       started;
+	private Boolean       inItems;
+	private Boolean       finished;
+	private Integer       totalCount;
+	private Integer       pageNumber;
+	private Integer       pageSize;
+	
+	/**
+	 * <p>
+	 *    Callback interface used by readAll().
+	 * </p>
+	 */
+	public interface VideoHandler {
+		/**
+		 * <p>
+		 *    Called once for each video read from the response.
+		 * </p>
+		 * 
+		 * @param video The video just read
+		 */
+		public void handleVideo(Video video);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a JSON tokener positioned at the start of
+	 *    a Media API response.
+	 * </p>
+	 * 
+	 * @param tokener Tokener to read the response from
+	 */
+	public VideoReader(JSONTokener tokener) {
+		this(tokener, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a JSON tokener positioned at the start of
+	 *    a Media API response, decoding each video with the given decode
+	 *    options.
+	 * </p>
+	 * 
+	 * @param tokener Tokener to read the response from
+	 * @param options Decode options passed to each Video (may be null)
+	 */
+	public VideoReader(JSONTokener tokener, DecodeOptions options) {
+		this.tokener    = tokener;
+		this.options    = options;
+		this.started    = false;
+		this.inItems    = false;
+		this.finished   = false;
+		this.totalCount = -1;
+		this.pageNumber = -1;
+		this.pageSize   = -1;
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a Media API response.
+	 * </p>
+	 * 
+	 * @param reader Reader to read the response from
+	 */
+	public VideoReader(Reader reader) {
+		this(reader, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a Media API response, decoding each video
+	 *    with the given decode options.
+	 * </p>
+	 * 
+	 * @param reader Reader to read the response from
+	 * @param options Decode options passed to each Video (may be null)
+	 */
+	public VideoReader(Reader reader, DecodeOptions options) {
+		this(withKeyCache(new JSONTokener(reader)), options);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a Media API response.
+	 * </p>
+	 * 
+	 * @param inputStream Stream to read the response from
+	 * @throws JSONException If the stream can not be read
+	 */
+	public VideoReader(InputStream inputStream) throws JSONException {
+		this(inputStream, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a Media API response, decoding each video
+	 *    with the given decode options.
+	 * </p>
+	 * 
+	 * @param inputStream Stream to read the response from
+	 * @param options Decode options passed to each Video (may be null)
+	 * @throws JSONException If the stream can not be read
+	 */
+	public VideoReader(InputStream inputStream, DecodeOptions options) throws JSONException {
+		this(withKeyCache(new JSONTokener(inputStream)), options);
+	}
+	
+	/**
+	 * <p>
+	 *    Gives a tokener created by this reader a key cache, so the keys
+	 *    repeated in every video share one String instance each.
+	 * </p>
+	 * 
+	 * @param tokener Tokener to give a key cache to
+	 * @return The tokener
+	 */
+	private static JSONTokener withKeyCache(JSONTokener tokener) {
+		tokener.setKeyCache(new JSONKeyCache());
+		return tokener;
+	}
+	
+	/**
+	 * <p>
+	 *    Reads the next video from the response.
+	 * </p>
+	 * 
+	 * @return The next video, or null if there are no more videos
+	 * @throws JSONException If the response could not be parsed
+	 */
+	public Video readVideo() throws JSONException {
+		if(! started){
+			if(tokener.nextClean() != '{'){
+				throw tokener.syntaxError("A JSONObject text must begin with '{'");
+			}
+			started = true;
+		}
+		
+		Video video = null;
+		while((video == null) && (! finished)){
+			if(inItems){
+				video = readItem();
+			}
+			else{
+				readMember();
+			}
+		}
+		
+		return video;
+	}
+	
+	/**
+	 * <p>
+	 *    Reads all remaining videos from the response, passing each to the
+	 *    handler as soon as it has been read.
+	 * </p>
+	 * 
+	 * @param handler Handler to pass each video to
+	 * @return Number of videos read
+	 * @throws JSONException If the response could not be parsed
+	 */
+	public Integer readAll(VideoHandler handler) throws JSONException {
+		Integer count = 0;
+		
+		Video video = readVideo();
+		while(video != null){
+			handler.handleVideo(video);
+			count++;
+			
+			video = readVideo();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * <p>
+	 *    Reads one video (or an elided / null entry) out of the items array.
+	 * </p>
+	 * 
+	 * @return The video read, or null if the entry was null
+	 * @throws JSONException If the response could not be parsed
+	 */
+	private Video readItem() throws JSONException {
+		Video video = null;
+		
+		char c = tokener.nextClean();
+		tokener.back();
+		if(c != ','){
+			Object item = tokener.nextValue();
+			if(item instanceof JSONObject){
+				video = new Video((JSONObject)item, options);
+			}
+			else if(! JSONObject.NULL.equals(item)){
+				throw new JSONException("[ERR] Expected a video in items array, found '" + item + "'.");
+			}
+			// Protect against item being null (Media API can do this for some reason...?)
+		}
+		
+		switch(tokener.nextClean()){
+			case ';':
+			case ',':
+				if(tokener.nextClean() == ']'){
+					inItems = false;
+					endMember();
+				}
+				else{
+					tokener.back();
+				}
+				break;
+			case ']':
+				inItems = false;
+				endMember();
+				break;
+			default:
+				throw tokener.syntaxError("Expected a ',' or ']'");
+		}
+		
+		return video;
+	}
+	
+	/**
+	 * <p>
+	 *    Reads one member of the top level response object.  If the member
+	 *    is the items array, only the opening bracket is consumed.
+	 * </p>
+	 * 
+	 * @throws JSONException If the response could not be parsed
+	 */
+	private void readMember() throws JSONException {
+		char c = tokener.nextClean();
+		switch(c){
+			case 0:
+				throw tokener.syntaxError("A JSONObject text must end with '}'");
+			case '}':
+				finished = true;
+				return;
+			default:
+				tokener.back();
+		}
+		
+		String key = tokener.nextValue().toString();
+		
+		// The key is followed by ':'. We will also tolerate '=' or '=>'.
+		c = tokener.nextClean();
+		if(c == '='){
+			if(tokener.next() != '>'){
+				tokener.back();
+			}
+		}
+		else if(c != ':'){
+			throw tokener.syntaxError("Expected a ':' after a key");
+		}
+		
+		if("items".equals(key)){
+			if(tokener.nextClean() == '['){
+				if(tokener.nextClean() == ']'){
+					endMember();
+				}
+				else{
+					tokener.back();
+					inItems = true;
+				}
+				return;
+			}
+			tokener.back();
+		}
+		
+		Object value = tokener.nextValue();
+		if(value instanceof Number){
+			if("total_count".equals(key)){
+				totalCount = ((Number)value).intValue();
+			}
+			else if("page_number".equals(key)){
+				pageNumber = ((Number)value).intValue();
+			}
+			else if("page_size".equals(key)){
+				pageSize = ((Number)value).intValue();
+			}
+		}
+		
+		endMember();
+	}
+	
+	/**
+	 * <p>
+	 *    Consumes the separator following a member of the top level
+	 *    response object.
+	 * </p>
+	 * 
+	 * @throws JSONException If the response could not be parsed
+	 */
+	private void endMember() throws JSONException {
+		switch(tokener.nextClean()){
+			case ';':
+			case ',':
+				if(tokener.nextClean() == '}'){
+					finished = true;
+				}
+				else{
+					tokener.back();
+				}
+				break;
+			case '}':
+				finished = true;
+				break;
+			default:
+				throw tokener.syntaxError("Expected a ',' or '}'");
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the total count as specified by the Brightcove Media API.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The Media API normally sends the total count after the items array,
+	 *    so this will usually only be available once all videos have been
+	 *    read.
+	 * </p>
+	 * 
+	 * @return Total count of all videos, or -1 if it has not been read (yet)
+	 */
+	public Integer getTotalCount(){
+		return totalCount;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the page number as specified by the Brightcove Media API.
+	 * </p>
+	 * 
+	 * @return Page number of this response, or -1 if it has not been read (yet)
+	 */
+	public Integer getPageNumber(){
+		return pageNumber;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the page size as specified by the Brightcove Media API.
+	 * </p>
+	 * 
+	 * @return Page size of this response, or -1 if it has not been read (yet)
+	 */
+	public Integer getPageSize(){
+		return pageSize;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns true once the end of the response has been reached.
+	 * </p>
+	 * 
+	 * @return True if the whole response has been read
+	 */
+	public Boolean isFinished(){
+		return finished;
+	}
+}
@@ -0,0 +1,264 @@
+package com.brightcove.commons.catalog.objects;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * <p>
+ *    Reads the videos out of an XML document (generated by Videos.toXml()
+ *    or VideoXmlWriter) one at a time.
+ * </p>
+ *
+ * <p>
+ *    Unlike Videos(Document), the whole document is never loaded into a
+ *    DOM.  The file is read with a StAX stream reader, and only the
+ *    elements for the video currently being read are turned into a (small)
+ *    DOM so that they can be handed to Video(Element).  Memory use is
+ *    therefore bounded by a single video, no matter how large the file is.
+ * </p>
+ *
+ * <p>
+ *    Typical usage:
+ *    <pre>
+ *    VideoXmlReader reader = new VideoXmlReader(inputStream);
+ *    Video video = reader.readVideo();
+ *    while(video != null){
+ *        ...
+ *        video = reader.readVideo();
+ *    }
+ *    reader.close();
+ *    </pre>
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class VideoXmlReader {
+	private XMLStreamReader xmlReader;
+	private DocumentBuilder builder;
+	private Integer         depth;
+	private Boolean         finished;
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over an XML document.
+	 * </p>
+	 * 
+	 * @param inputStream Stream to read the XML document from
+	 * @throws XMLStreamException If the stream can not be read
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlReader(InputStream inputStream) throws XMLStreamException, ParserConfigurationException {
+		this(createInputFactory().createXMLStreamReader(inputStream));
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over an XML document.
+	 * </p>
+	 * 
+	 * @param reader Reader to read the XML document from
+	 * @throws XMLStreamException If the reader can not be read
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlReader(Reader reader) throws XMLStreamException, ParserConfigurationException {
+		this(createInputFactory().createXMLStreamReader(reader));
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new reader over a StAX stream reader positioned at (or
+	 *    before) the root element of the document.
+	 * </p>
+	 * 
+	 * @param xmlReader StAX stream reader to read the document from
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlReader(XMLStreamReader xmlReader) throws ParserConfigurationException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		this.xmlReader = xmlReader;
+		this.builder   = factory.newDocumentBuilder();
+		this.depth     = 0;
+		this.finished  = false;
+		
+		if(xmlReader.getEventType() == XMLStreamConstants.START_ELEMENT){
+			// Already on the root element, so the loop won't see its start
+			this.depth = 1;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Reads the next video from the document.
+	 * </p>
+	 * 
+	 * <p>
+	 *    As with Videos(Document), only "Video" elements directly under the
+	 *    root element are read, anything else is skipped.
+	 * </p>
+	 * 
+	 * @return The next video, or null if there are no more videos
+	 * @throws XMLStreamException If the document could not be parsed
+	 */
+	public Video readVideo() throws XMLStreamException {
+		while((! finished) && xmlReader.hasNext()){
+			int event = xmlReader.next();
+			
+			if(event == XMLStreamConstants.START_ELEMENT){
+				depth++;
+				if((depth == 2) && "Video".equals(xmlReader.getLocalName())){
+					Document doc          = builder.newDocument();
+					Element  videoElement = readElement(doc);
+					doc.appendChild(videoElement);
+					
+					// readElement() consumed the matching end element
+					depth--;
+					
+					return new Video(videoElement);
+				}
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT){
+				depth--;
+				if(depth == 0){
+					finished = true;
+				}
+			}
+		}
+		
+		finished = true;
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *    Reads all remaining videos from the document, passing each to the
+	 *    handler as soon as it has been read.
+	 * </p>
+	 * 
+	 * @param handler Handler to pass each video to
+	 * @return Number of videos read
+	 * @throws XMLStreamException If the document could not be parsed
+	 */
+	public Integer readAll(VideoReader.VideoHandler handler) throws XMLStreamException {
+		Integer count = 0;
+		
+		Video video = readVideo();
+		while(video != null){
+			handler.handleVideo(video);
+			count++;
+			
+			video = readVideo();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * <p>
+	 *    Closes the underlying StAX stream reader.  This does not close the
+	 *    stream or reader the document is being read from.
+	 * </p>
+	 * 
+	 * @throws XMLStreamException If the StAX stream reader could not be closed
+	 */
+	public void close() throws XMLStreamException {
+		finished = true;
+		xmlReader.close();
+	}
+	
+	/**
+	 * <p>
+	 *    Returns true once the end of the document has been reached.
+	 * </p>
+	 * 
+	 * @return True if the whole document has been read
+	 */
+	public Boolean isFinished(){
+		return finished;
+	}
+	
+	/**
+	 * <p>
+	 *    Copies the element the StAX reader is positioned on (and everything
+	 *    under it) into a DOM element.  On return the StAX reader is
+	 *    positioned on the matching end element.
+	 * </p>
+	 * 
+	 * @param doc Document to create the DOM nodes in
+	 * @return DOM element equivalent to the current element
+	 * @throws XMLStreamException If the document could not be parsed
+	 */
+	private Element readElement(Document doc) throws XMLStreamException {
+		Element element = doc.createElement(xmlReader.getLocalName());
+		for(int attrIdx=0;attrIdx<xmlReader.getAttributeCount();attrIdx++){
+			element.setAttribute(xmlReader.getAttributeLocalName(attrIdx), xmlReader.getAttributeValue(attrIdx));
+		}
+		
+		Node current = element;
+		while(current != null){
+			int event = xmlReader.next();
+			
+			switch(event){
+				case XMLStreamConstants.START_ELEMENT:
+					Element child = doc.createElement(xmlReader.getLocalName());
+					for(int attrIdx=0;attrIdx<xmlReader.getAttributeCount();attrIdx++){
+						child.setAttribute(xmlReader.getAttributeLocalName(attrIdx), xmlReader.getAttributeValue(attrIdx));
+					}
+					current.appendChild(child);
+					current = child;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					current = (current == element) ? null : current.getParentNode();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					// StAX may split text into several events - keep it as one
+					// text node, since Video(Element) only reads the first child
+					Node last = current.getLastChild();
+					if((last != null) && (last.getNodeType() == Node.TEXT_NODE)){
+						((Text)last).appendData(xmlReader.getText());
+					}
+					else{
+						current.appendChild(doc.createTextNode(xmlReader.getText()));
+					}
+					break;
+				default:
+					// Comments, processing instructions etc. are not used by Video(Element)
+					break;
+			}
+		}
+		
+		return element;
+	}
+	
+	/**
+	 * <p>
+	 *    Creates the StAX input factory used by the stream and reader
+	 *    constructors.
+	 * </p>
+	 * 
+	 * @return StAX input factory
+	 */
+	private static XMLInputFactory createInputFactory(){
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		return factory;
+	}
+}
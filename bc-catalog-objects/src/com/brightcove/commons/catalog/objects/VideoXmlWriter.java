@@ -0,0 +1,325 @@
+package com.brightcove.commons.catalog.objects;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * <p>
+ *    Writes a &lt;Videos&gt; XML document one video at a time.
+ * </p>
+ *
+ * <p>
+ *    Videos.toXml() builds a DOM holding every video before anything can be
+ *    written out.  This writer instead streams each video to the output as
+ *    soon as it is given, using a StAX stream writer, so memory use does
+ *    not grow with the number of videos written.
+ * </p>
+ *
+ * <p>
+ *    The elements and text written are exactly those Videos.toXml() would
+ *    produce for the same videos (each video is rendered by
+ *    Video.appendXml() into a small scratch document, which is written out
+ *    and then discarded), so the output can be read by Videos(Document) or
+ *    VideoXmlReader.  If indenting is turned on, elements are indented by
+ *    four spaces as XalanUtils.prettyPrintWithTrAX() does.
+ * </p>
+ *
+ * <p>
+ *    Typical usage:
+ *    <pre>
+ *    VideoXmlWriter writer = new VideoXmlWriter(outputStream, true);
+ *    for(Video video : ...){
+ *        writer.writeVideo(video);
+ *    }
+ *    writer.close();
+ *    </pre>
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class VideoXmlWriter {
+	private static final String ROOT_ELEMENT = "Videos";
+	private static final String INDENT       = "    ";
+	
+	private XMLStreamWriter xmlWriter;
+	private Document        scratchDoc;
+	private Element         scratchRoot;
+	private Boolean         indent;
+	private Boolean         started;
+	private Boolean         closed;
+	
+	/**
+	 * <p>
+	 *    Creates a new writer that writes a UTF-8 encoded, unindented
+	 *    document to a stream.
+	 * </p>
+	 * 
+	 * @param outputStream Stream to write the XML document to
+	 * @throws XMLStreamException If the document can not be started
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlWriter(OutputStream outputStream) throws XMLStreamException, ParserConfigurationException {
+		this(XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8"), false);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new writer that writes a UTF-8 encoded document to a
+	 *    stream.
+	 * </p>
+	 * 
+	 * @param outputStream Stream to write the XML document to
+	 * @param indent If true, the document will be indented
+	 * @throws XMLStreamException If the document can not be started
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlWriter(OutputStream outputStream, Boolean indent) throws XMLStreamException, ParserConfigurationException {
+		this(XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8"), indent);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new writer that writes an unindented document to a
+	 *    writer.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The XML declaration will still claim UTF-8 encoding, so the writer
+	 *    should encode in UTF-8 if the output is going to a file.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the XML document to
+	 * @throws XMLStreamException If the document can not be started
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlWriter(Writer writer) throws XMLStreamException, ParserConfigurationException {
+		this(XMLOutputFactory.newInstance().createXMLStreamWriter(writer), false);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new writer that writes a document to a writer.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The XML declaration will still claim UTF-8 encoding, so the writer
+	 *    should encode in UTF-8 if the output is going to a file.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the XML document to
+	 * @param indent If true, the document will be indented
+	 * @throws XMLStreamException If the document can not be started
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlWriter(Writer writer, Boolean indent) throws XMLStreamException, ParserConfigurationException {
+		this(XMLOutputFactory.newInstance().createXMLStreamWriter(writer), indent);
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new writer over a StAX stream writer.
+	 * </p>
+	 * 
+	 * @param xmlWriter StAX stream writer to write the document to
+	 * @param indent If true, the document will be indented
+	 * @throws XMLStreamException If the document can not be started
+	 * @throws ParserConfigurationException If a DOM builder can not be created for the videos
+	 */
+	public VideoXmlWriter(XMLStreamWriter xmlWriter, Boolean indent) throws XMLStreamException, ParserConfigurationException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		
+		this.xmlWriter   = xmlWriter;
+		this.scratchDoc  = builder.newDocument();
+		this.scratchRoot = scratchDoc.createElement(ROOT_ELEMENT);
+		this.indent      = indent;
+		this.started     = false;
+		this.closed      = false;
+		
+		scratchDoc.appendChild(scratchRoot);
+		
+		xmlWriter.writeStartDocument("UTF-8", "1.0");
+	}
+	
+	/**
+	 * <p>
+	 *    Writes a video to the document.
+	 * </p>
+	 * 
+	 * @param video Video to write
+	 * @throws XMLStreamException If the video could not be written
+	 */
+	public void writeVideo(Video video) throws XMLStreamException {
+		if(closed){
+			throw new XMLStreamException("[ERR] Can not write a video after the writer has been closed.");
+		}
+		
+		if(! started){
+			writeNewline(0);
+			xmlWriter.writeStartElement(ROOT_ELEMENT);
+			started = true;
+		}
+		
+		Element videoElement = video.appendXml(scratchRoot);
+		try{
+			writeElement(videoElement, 1);
+		}
+		finally{
+			scratchRoot.removeChild(videoElement);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Writes all of the given videos to the document.
+	 * </p>
+	 * 
+	 * @param videos Videos to write
+	 * @throws XMLStreamException If a video could not be written
+	 */
+	public void writeVideos(Iterable<Video> videos) throws XMLStreamException {
+		for(Video video : videos){
+			writeVideo(video);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Flushes everything written so far to the underlying stream or
+	 *    writer.
+	 * </p>
+	 * 
+	 * @throws XMLStreamException If the document could not be flushed
+	 */
+	public void flush() throws XMLStreamException {
+		xmlWriter.flush();
+	}
+	
+	/**
+	 * <p>
+	 *    Ends the document and flushes it.  This does not close the stream
+	 *    or writer the document is being written to.
+	 * </p>
+	 * 
+	 * @throws XMLStreamException If the document could not be ended
+	 */
+	public void close() throws XMLStreamException {
+		if(closed){
+			return;
+		}
+		closed = true;
+		
+		if(started){
+			writeNewline(0);
+			xmlWriter.writeEndElement();
+		}
+		else{
+			// No videos - same as Videos.toXml() on an empty list
+			writeNewline(0);
+			xmlWriter.writeEmptyElement(ROOT_ELEMENT);
+		}
+		xmlWriter.writeEndDocument();
+		
+		xmlWriter.flush();
+		xmlWriter.close();
+	}
+	
+	/**
+	 * <p>
+	 *    Writes a DOM element (and everything under it) to the StAX writer.
+	 * </p>
+	 * 
+	 * @param element Element to write
+	 * @param level How deep the element is in the document (used for indenting)
+	 * @throws XMLStreamException If the element could not be written
+	 */
+	private void writeElement(Element element, Integer level) throws XMLStreamException {
+		writeNewline(level);
+		
+		Node child = element.getFirstChild();
+		if(child == null){
+			xmlWriter.writeEmptyElement(element.getNodeName());
+			writeAttributes(element);
+			return;
+		}
+		
+		xmlWriter.writeStartElement(element.getNodeName());
+		writeAttributes(element);
+		
+		Boolean hasElementChildren = false;
+		while(child != null){
+			switch(child.getNodeType()){
+				case Node.ELEMENT_NODE:
+					writeElement((Element)child, level + 1);
+					hasElementChildren = true;
+					break;
+				case Node.TEXT_NODE:
+					xmlWriter.writeCharacters(child.getNodeValue());
+					break;
+				case Node.CDATA_SECTION_NODE:
+					xmlWriter.writeCData(child.getNodeValue());
+					break;
+				default:
+					break;
+			}
+			child = child.getNextSibling();
+		}
+		
+		if(hasElementChildren){
+			writeNewline(level);
+		}
+		xmlWriter.writeEndElement();
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the attributes of a DOM element to the StAX writer.
+	 * </p>
+	 * 
+	 * @param element Element whose attributes should be written
+	 * @throws XMLStreamException If the attributes could not be written
+	 */
+	private void writeAttributes(Element element) throws XMLStreamException {
+		NamedNodeMap attributes = element.getAttributes();
+		for(int attrIdx=0;attrIdx<attributes.getLength();attrIdx++){
+			Attr attribute = (Attr)attributes.item(attrIdx);
+			xmlWriter.writeAttribute(attribute.getName(), attribute.getValue());
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    If indenting, starts a new line indented to the given level.
+	 * </p>
+	 * 
+	 * @param level Indent level
+	 * @throws XMLStreamException If the new line could not be written
+	 */
+	private void writeNewline(Integer level) throws XMLStreamException {
+		if(! indent){
+			return;
+		}
+		
+		StringBuilder sb = new StringBuilder("\n");
+		for(int levelIdx=0;levelIdx<level;levelIdx++){
+			sb.append(INDENT);
+		}
+		xmlWriter.writeCharacters(sb.toString());
+	}
+}
@@ -1,19 +1,28 @@
 package com.brightcove.commons.catalog.objects;
 
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONLineReader;
+import org.json.JSONLineWriter;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import com.brightcove.commons.catalog.objects.enumerations.VideoFieldEnum;
 import com.brightcove.commons.xml.W3CXMLUtils;
 
 /**
@@ -120,12 +129,26 @@ public class Videos extends ArrayList<Video> {
 	 * @throws JSONException If JSON could not be properly parsed
 	 */
 	public Videos(JSONObject jsonObj) throws JSONException {
+		this(jsonObj, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Create an array from the JSON response from Brightcove Media API,
+	 *    decoding each video with the given decode options.
+	 * </p>
+	 * 
+	 * @param jsonObj JSON response from Brightcove Media API
+	 * @param options Decode options passed to each Video (may be null)
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Videos(JSONObject jsonObj, DecodeOptions options) throws JSONException {
 		JSONArray jsonItems = jsonObj.getJSONArray("items");
 		for(int itemIdx=0;itemIdx<jsonItems.length();itemIdx++){
 			// Protect against item being null (Media API can do this for some reason...?)
 			if(jsonItems.get(itemIdx) != JSONObject.NULL) {
 				JSONObject jsonItem = (JSONObject)jsonItems.get(itemIdx);
-				Video video = new Video(jsonItem);
+				Video video = new Video(jsonItem, options);
 				add(video);
 			}
 		}
@@ -139,6 +162,87 @@ public class Videos extends ArrayList<Video> {
 		}
 	}
 	
+	/**
+	 * <p>
+	 *    Create an array by streaming the JSON response from Brightcove Media
+	 *    API through a VideoReader.
+	 * </p>
+	 * <p>
+	 *    The JSON tree for the full response is never built, only the videos
+	 *    themselves are held in memory.
+	 * </p>
+	 * 
+	 * @param tokener Tokener positioned at the start of the JSON response from Brightcove Media API
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Videos(JSONTokener tokener) throws JSONException {
+		this(tokener, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Create an array by streaming the JSON response from Brightcove Media
+	 *    API through a VideoReader, decoding each video with the given
+	 *    decode options.
+	 * </p>
+	 * 
+	 * @param tokener Tokener positioned at the start of the JSON response from Brightcove Media API
+	 * @param options Decode options passed to each Video (may be null)
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Videos(JSONTokener tokener, DecodeOptions options) throws JSONException {
+		VideoReader reader = new VideoReader(tokener, options);
+		
+		Video video = reader.readVideo();
+		while(video != null){
+			add(video);
+			video = reader.readVideo();
+		}
+		
+		totalCount = reader.getTotalCount();
+	}
+	
+	/**
+	 * <p>
+	 *    Create an array from JSON Lines text (one video per line), such as
+	 *    the output of writeJsonLines().
+	 * </p>
+	 * 
+	 * <p>
+	 *    The total count is set to the number of videos read.
+	 * </p>
+	 * 
+	 * @param lines Reader positioned at the first line to read
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Videos(JSONLineReader lines) throws JSONException {
+		this(lines, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Create an array from JSON Lines text (one video per line), decoding
+	 *    each video with the given decode options.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The total count is set to the number of videos read.
+	 * </p>
+	 * 
+	 * @param lines Reader positioned at the first line to read
+	 * @param options Decode options passed to each Video (may be null)
+	 * @throws JSONException If JSON could not be properly parsed
+	 */
+	public Videos(JSONLineReader lines, DecodeOptions options) throws JSONException {
+		JSONObject jsonItem = lines.next();
+		while(jsonItem != null){
+			add(new Video(jsonItem, options));
+			jsonItem = lines.next();
+		}
+		
+		totalCount = size();
+	}
+	
 	/**
 	 * <p>
 	 *    Returns the total count as specified by the Brightcove Media API.
@@ -155,6 +259,133 @@ public class Videos extends ArrayList<Video> {
 		return this.totalCount;
 	}
 	
+	/**
+	 * <p>
+	 *    Writes the videos as a Media API style JSON response (an "items"
+	 *    array followed by "total_count") directly to a writer.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Each video is written straight to the output, so no JSON object is
+	 *    built for the list or any of the videos in it.  The output can be
+	 *    read back with Videos(JSONObject) or a VideoReader.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJson(Writer writer) throws JSONException {
+		writeJson(writer, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the videos as a Media API style JSON response (an "items"
+	 *    array followed by "total_count") directly to a writer.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON to
+	 * @param includeNullFields Set of fields to include in the JSON for each video, even if they are null values
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJson(Writer writer, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		// Every key written is already unique (custom fields are merged by
+		// name), so the writer does not need to remember them
+		writeJson(new JSONWriter(writer, false), includeNullFields);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the videos as a Media API style JSON response (an "items"
+	 *    array followed by "total_count") to a JSON writer.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the videos to
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter) throws JSONException {
+		writeJson(jsonWriter, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the videos as a Media API style JSON response (an "items"
+	 *    array followed by "total_count") to a JSON writer.
+	 * </p>
+	 * 
+	 * @param jsonWriter JSON writer to write the videos to
+	 * @param includeNullFields Set of fields to include in the JSON for each video, even if they are null values
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJson(JSONWriter jsonWriter, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		jsonWriter.object();
+		
+		jsonWriter.key("items").array();
+		for(Video video : this){
+			video.writeJson(jsonWriter, includeNullFields);
+		}
+		jsonWriter.endArray();
+		
+		if(totalCount != null){
+			jsonWriter.key("total_count").value(totalCount);
+		}
+		
+		jsonWriter.endObject();
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the videos as JSON Lines text: each video on its own line,
+	 *    as written by Video.writeJson().  The total count is not written.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Unlike writeJson(), the output can be read back one video at a
+	 *    time (and, for a file, split between threads) with a
+	 *    JSONLineReader.  The writer is flushed, but not closed.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON Lines to
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJsonLines(Writer writer) throws JSONException {
+		writeJsonLines(writer, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the videos as JSON Lines text: each video on its own line,
+	 *    as written by Video.writeJson(includeNullFields).  The writer is
+	 *    flushed, but not closed.
+	 * </p>
+	 * 
+	 * @param writer Writer to write the JSON Lines to
+	 * @param includeNullFields Set of fields to include in the JSON for each video, even if they are null values
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJsonLines(Writer writer, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		JSONLineWriter lines = new JSONLineWriter(writer);
+		writeJsonLines(lines, includeNullFields);
+		lines.flush();
+	}
+	
+	/**
+	 * <p>
+	 *    Appends the videos to JSON Lines output, one video per line, e.g.
+	 *    to export several pages of videos to the same file.
+	 * </p>
+	 * 
+	 * @param lines JSON Lines writer to write the videos to
+	 * @param includeNullFields Set of fields to include in the JSON for each video, even if they are null values
+	 * @throws JSONException If the videos can not be written
+	 */
+	public void writeJsonLines(JSONLineWriter lines, EnumSet<VideoFieldEnum> includeNullFields) throws JSONException {
+		for(Video video : this){
+			// Keys written by Video.writeJson() are already unique
+			video.writeJson(lines.line(false), includeNullFields);
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Uses the W3C libraries to generate an XML representation of
@@ -181,4 +412,21 @@ public class Videos extends ArrayList<Video> {
 		// return org.json.XML.toString(jsonVideos);
 		return doc;
 	}
+	
+	/**
+	 * <p>
+	 *    Writes the same XML as toXml() directly to a stream, one video at a
+	 *    time, without building a DOM for the whole list.
+	 * </p>
+	 * 
+	 * @param outputStream Stream to write the UTF-8 encoded XML to
+	 * @param indent If true, the XML will be indented
+	 * @throws XMLStreamException If there is an error writing the XML
+	 * @throws ParserConfigurationException If there is an error generating the XML
+	 */
+	public void writeXml(OutputStream outputStream, Boolean indent) throws XMLStreamException, ParserConfigurationException {
+		VideoXmlWriter writer = new VideoXmlWriter(outputStream, indent);
+		writer.writeVideos(this);
+		writer.close();
+	}
 }
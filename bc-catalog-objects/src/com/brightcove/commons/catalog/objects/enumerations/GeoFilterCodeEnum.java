@@ -1,6 +1,7 @@
 package com.brightcove.commons.catalog.objects.enumerations;
 
-import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * <p>The geography name/code pair to be used in filtering videos.</p>
@@ -292,6 +293,16 @@ public enum GeoFilterCodeEnum {
 	ZM("ZAMBIA", "zm"),
 	ZW("ZIMBABWE", "zw");	
 	
+	// Upper cased name / code -> enum, built once so lookups don't scan every value
+	private static final Map<String, GeoFilterCodeEnum> nameLookup = new HashMap<String, GeoFilterCodeEnum>();
+	private static final Map<String, GeoFilterCodeEnum> codeLookup = new HashMap<String, GeoFilterCodeEnum>();
+	static {
+		for(GeoFilterCodeEnum code : GeoFilterCodeEnum.values()){
+			nameLookup.put(code.name.toUpperCase(), code);
+			codeLookup.put(code.code.toUpperCase(), code);
+		}
+	}
+	
 	private final String name;
 	private final String code;
 	GeoFilterCodeEnum(String name, String code){
@@ -311,13 +322,7 @@ public enum GeoFilterCodeEnum {
 			return null;
 		}
 		
-		String upperName = name.toUpperCase();
-		for(GeoFilterCodeEnum code : EnumSet.allOf(GeoFilterCodeEnum.class)){
-			if(code.name.toUpperCase().equals(upperName)){
-				return code;
-			}
-		}
-		return null;
+		return nameLookup.get(name.toUpperCase());
 	}
 	
 	public static GeoFilterCodeEnum lookupByCode(String code){
@@ -325,12 +330,6 @@ public enum GeoFilterCodeEnum {
 			return null;
 		}
 		
-		String upperCode = code.toUpperCase();
-		for(GeoFilterCodeEnum lookup : EnumSet.allOf(GeoFilterCodeEnum.class)){
-			if(lookup.code.toUpperCase().equals(upperCode)){
-				return lookup;
-			}
-		}
-		return null;
+		return codeLookup.get(code.toUpperCase());
 	}
 }
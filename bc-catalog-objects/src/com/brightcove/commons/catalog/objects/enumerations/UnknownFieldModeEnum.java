@@ -0,0 +1,39 @@
+package com.brightcove.commons.catalog.objects.enumerations;
+
+import java.util.EnumSet;
+
+/**
+ * <p>How catalog objects should treat fields in a Media API response that
+ *    they do not recognize.</p>
+ *
+ * <ul>
+ *    <li>IGNORE - Skip the field and carry on decoding.</li>
+ *    <li>COLLECT - Keep the raw value in the object's extras map and carry
+ *        on decoding.</li>
+ *    <li>FAIL - Throw a JSONException (the historical behavior for Video
+ *        and Playlist).</li>
+ * </ul>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public enum UnknownFieldModeEnum {
+	IGNORE,
+	COLLECT,
+	FAIL;
+	
+	public static UnknownFieldModeEnum lookupByName(String name){
+		if(name == null){
+			return null;
+		}
+		
+		String upperName = name.toUpperCase();
+		for(UnknownFieldModeEnum mode : EnumSet.allOf(UnknownFieldModeEnum.class)){
+			if(mode.toString().toUpperCase().equals(upperName)){
+				return mode;
+			}
+		}
+		
+		return null;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -13,6 +14,8 @@ import org.xml.sax.SAXException;
 
 import com.brightcove.commons.ftp.DownloadMapping;
 import com.brightcove.commons.ftp.FTPDownloaderThread;
+import com.brightcove.commons.ftp.FTPTransferJournal;
+import com.brightcove.commons.ftp.FTPTransferResult;
 import com.brightcove.commons.system.commandLine.CommandLineProgram;
 import com.brightcove.commons.xml.XalanUtils;
 
@@ -69,6 +72,8 @@ public class FTPDownloader extends CommandLineProgram {
 		ftpd.allowNormalArgument("remote-file",          "--remote-file <string>",        "--remote-file:          File to download from remote server",                         false);
 		ftpd.allowNormalArgument("local-directory",      "--local-directory <string>",    "--local-directory:      Local directory to download to",                              false);
 		ftpd.allowNormalArgument("local-file",           "--local-file <string>",         "--local-file:           Local file to download to (ignores --local-directory)",       false);
+		ftpd.allowNormalArgument("segments",             "--segments <integer>",          "--segments:             Split each file into this many parallel ranged downloads",   false);
+		ftpd.allowNormalArgument("journal-file",         "--journal-file <path>",         "--journal-file:         Local file recording partial downloads, so retries resume",  false);
 		
 		ftpd.setMaxNakedArguments(0);
 		ftpd.setMinNakedArguments(0);
@@ -109,6 +114,17 @@ public class FTPDownloader extends CommandLineProgram {
 		if(ftpd.getNormalArgument("debug") != null){
 			ftpd.getFtpDownloaderThread().setDebug(Boolean.parseBoolean(ftpd.getNormalArgument("debug")));
 		}
+		if(ftpd.getNormalArgument("segments") != null){
+			ftpd.getFtpDownloaderThread().setSegments(Integer.parseInt(ftpd.getNormalArgument("segments")));
+		}
+		if(ftpd.getNormalArgument("journal-file") != null){
+			try {
+				ftpd.getFtpDownloaderThread().setJournal(new FTPTransferJournal(new File(ftpd.getNormalArgument("journal-file"))));
+			}
+			catch (IOException e) {
+				ftpd.usage(e);
+			}
+		}
 		
 		ftpd.calculateDownloadMappings(
 			ftpd.getNormalArgument("remote-directory"),
@@ -236,16 +252,23 @@ public class FTPDownloader extends CommandLineProgram {
 		Boolean removeSource    = getBooleanSetting(configDoc, "FTP_DOWNLOAD_REMOVE_SOURCE");
 		Boolean passiveTransfer = getBooleanSetting(configDoc, "FTP_DOWNLOAD_USE_PASSIVE_TRANSFER");
 		Boolean debug           = getBooleanSetting(configDoc, "FTP_DOWNLOAD_DEBUG");
+		Integer segments        = getIntegerSetting(configDoc, "FTP_DOWNLOAD_SEGMENTS");
+		String  journalFile     = getStringSetting(configDoc, "FTP_DOWNLOAD_JOURNAL_FILE");
 		
 		if(skipTransfer    == null){ skipTransfer    = false; }
 		if(removeSource    == null){ removeSource    = false; }
 		if(passiveTransfer == null){ passiveTransfer = false; }
 		if(debug           == null){ debug           = false; }
+		if(segments        == null){ segments        = 1;     }
 		
 		getFtpDownloaderThread().setSkipTransfer(skipTransfer);
 		getFtpDownloaderThread().setRemoveSource(removeSource);
 		getFtpDownloaderThread().setPassiveTransfer(passiveTransfer);
 		getFtpDownloaderThread().setDebug(debug);
+		getFtpDownloaderThread().setSegments(segments);
+		if(journalFile != null){
+			getFtpDownloaderThread().setJournal(new FTPTransferJournal(new File(journalFile)));
+		}
 		
 		getFtpDownloaderThread().setDownloadMappings(new ArrayList<DownloadMapping>());
 		
@@ -384,6 +407,30 @@ public class FTPDownloader extends CommandLineProgram {
 		);
 	}
 	
+	private FTPDownloaderThread copyFtpDownloaderThread(FTPDownloaderThread original){
+		// Files finished before the last attempt stopped aren't tried again -
+		// with removeSource set, their source is already gone
+		List<DownloadMapping> remaining = new ArrayList<DownloadMapping>(original.getDownloadMappings());
+		remaining.removeAll(original.getCompletedMappings());
+		
+		FTPDownloaderThread copy = new FTPDownloaderThread(
+			original.getServerName(),
+			original.getServerPort(),
+			original.getUsername(),
+			original.getPassword(),
+			original.getSkipTransfer(),
+			original.getRemoveSource(),
+			original.getPassiveTransfer(),
+			remaining,
+			original.getDebug()
+		);
+		copy.setSegments(original.getSegments());
+		copy.setJournal(original.getJournal());
+		copy.setSessionPool(original.getSessionPool());
+		
+		return copy;
+	}
+	
 	/**
 	 * <p>
 	 *    Performs the download.  Actual download is done by a background
@@ -393,6 +440,11 @@ public class FTPDownloader extends CommandLineProgram {
 	 * @throws Exception If thread is interrupted (mainly if download times out)
 	 */
 	public void doDownload() throws Exception {
+		if(ftpdt.getState() != Thread.State.NEW){
+			// A thread can only be run once - retries need a fresh one
+			ftpdt = copyFtpDownloaderThread(ftpdt);
+		}
+		
 		this.getLogger().info("Starting new thread '" + ftpdt + "'.");
 		ftpdt.start();
 		
@@ -415,6 +467,7 @@ public class FTPDownloader extends CommandLineProgram {
 						this.getLogger().severe("Waited " + timeDiff + " for download to complete without success.  Terminating.");
 						
 						ftpdt.interrupt();
+						ftpdt.join(waitInterval);
 						throw new InterruptedException("Stopped download after " + timeDiff + " milliseconds.  Download most likely was partially but not fully complete.");
 					}
 					
@@ -431,6 +484,17 @@ public class FTPDownloader extends CommandLineProgram {
 		
 		this.getLogger().info("Thread completed.  Checking for exceptions.");
 		
+		if(ftpdt.getDownloadResults() != null){
+			for(FTPTransferResult result : ftpdt.getDownloadResults()){
+				if(result.getSuccess()){
+					this.getLogger().info("Downloaded " + result + ".");
+				}
+				else{
+					this.getLogger().severe("Download failed " + result + ".");
+				}
+			}
+		}
+		
 		if(ftpdt.getException() != null){
 			this.getLogger().severe("Thread threw exception '" + ftpdt.getException() + "'.");
 			throw ftpdt.getException();
@@ -7,8 +7,8 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -51,6 +51,7 @@ public class FTPManifest extends CommandLineProgram {
 	 *    Accepted command line arguments:<ul>
 	 *        <li>--config-file:     Path to config file with FTP options</li>
 	 *        <li>--timeout-retries: Number of times to retry a timed out request</li>
+	 *        <li>--parallel-connections: Number of concurrent connections to list directories over</li>
 	 *    </ul>
 	 * </p>
 	 * 
@@ -61,6 +62,7 @@ public class FTPManifest extends CommandLineProgram {
 		
 		ftpm.allowNormalArgument("config-file",     "--config-file <path>",        "--config-file:     Path to configuration file",                        true);
 		ftpm.allowNormalArgument("timeout-retries", "--timeout-retries <integer>", "--timeout-retries: Number of times to retry a listing that times out", false);
+		ftpm.allowNormalArgument("parallel-connections", "--parallel-connections <integer>", "--parallel-connections: Override config file setting - number of concurrent connections to list directories over (breadth first)", false);
 		
 		ftpm.setMaxNakedArguments(0);
 		ftpm.setMinNakedArguments(0);
@@ -92,7 +94,7 @@ public class FTPManifest extends CommandLineProgram {
 			"",        // Password
 			false,     // Passive transfer
 			"/",       // Start directory
-			new HashMap<String, FTPManifestEntry>(),
+			new ConcurrentHashMap<String, FTPManifestEntry>(),
 			true       // Debug
 		);
 	}
@@ -206,7 +208,10 @@ public class FTPManifest extends CommandLineProgram {
 		String startDirectory = getStringSetting(configDoc, "FTP_MANIFEST_START_DIRECTORY");
 		if(startDirectory == null){ startDirectory = "/"; }
 		
-		Map<String, FTPManifestEntry> manifestEntries = new HashMap<String, FTPManifestEntry>();
+		Integer parallelConnections = getIntegerSetting(configDoc, "FTP_MANIFEST_PARALLEL_CONNECTIONS");
+		if(parallelConnections == null){ parallelConnections = 1; }
+		
+		Map<String, FTPManifestEntry> manifestEntries = new ConcurrentHashMap<String, FTPManifestEntry>();
 		
 		ftpmt = new FTPManifestThread(
 			serverName,      // Server name
@@ -218,6 +223,7 @@ public class FTPManifest extends CommandLineProgram {
 			manifestEntries,
 			debug            // Debug
 		);
+		ftpmt.setParallelConnections(parallelConnections);
 	}
 	
 	public void setOutputFile(String outputFile){
@@ -227,6 +233,10 @@ public class FTPManifest extends CommandLineProgram {
 		return outputFile;
 	}
 	
+	public FTPManifestThread getFtpManifestThread(){
+		return ftpmt;
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.brightcove.commons.system.commandLine.CommandLineProgram#run(java.lang.String[])
 	 */
@@ -249,6 +259,10 @@ public class FTPManifest extends CommandLineProgram {
 			usage(e);
 		}
 		
+		if(getNormalArgument("parallel-connections") != null){
+			ftpmt.setParallelConnections(Integer.parseInt(getNormalArgument("parallel-connections")));
+		}
+		
 		String  retryArg = getNormalArgument("timeout-retries");
 		Integer retries  = 0;
 		if((retryArg != null) && (! "".equals(retryArg))){
@@ -317,16 +331,19 @@ public class FTPManifest extends CommandLineProgram {
 		if(ftpmt == null){
 			usage("Worker thread must be initialized before calling doList()");
 		}
+		FTPManifestThread previous = ftpmt;
 		ftpmt = new FTPManifestThread(
-			ftpmt.getServerName(),
-			ftpmt.getServerPort(),
-			ftpmt.getUsername(),
-			ftpmt.getPassword(),
-			ftpmt.getPassiveTransfer(),
-			ftpmt.getStartDirectory(),
-			ftpmt.getProcessedDirectories(),
-			ftpmt.getDebug()
+			previous.getServerName(),
+			previous.getServerPort(),
+			previous.getUsername(),
+			previous.getPassword(),
+			previous.getPassiveTransfer(),
+			previous.getStartDirectory(),
+			previous.getProcessedDirectories(),
+			previous.getDebug()
 		);
+		ftpmt.setParallelConnections(previous.getParallelConnections());
+		ftpmt.setSessionPool(previous.getSessionPool());
 		
 		ftpmt.start();
 		
@@ -344,9 +361,13 @@ public class FTPManifest extends CommandLineProgram {
 					if(timeDiff > manifestTimeoutMillis){
 						log.severe("Waited " + timeDiff + " for list to complete without success.  Terminating.");
 						
+						// Wait for the thread to stop, so it isn't still adding
+						// to the manifest when a retry picks it up
+						ftpmt.interrupt();
+						ftpmt.join();
+						
 						writeOutputFile();
 						
-						ftpmt.interrupt();
 						throw new InterruptedException("Stopped manifest generation after " + timeDiff + " milliseconds.  Manifest most likely was partially but not fully complete.");
 					}
 					
@@ -368,7 +389,7 @@ public class FTPManifest extends CommandLineProgram {
 			throw ftpmt.getException();
 		}
 		
-		log.info("List complete.");
+		log.info("List complete (" + ftpmt.getDirectoriesPerSecond() + " directories/sec).");
 		
 		writeOutputFile();
 	}
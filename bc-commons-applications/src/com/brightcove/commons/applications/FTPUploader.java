@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +14,8 @@ import javax.xml.transform.TransformerException;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.brightcove.commons.ftp.FTPTransferJournal;
+import com.brightcove.commons.ftp.FTPTransferResult;
 import com.brightcove.commons.ftp.FTPUploaderThread;
 import com.brightcove.commons.ftp.UploadMapping;
 import com.brightcove.commons.system.commandLine.CommandLineProgram;
@@ -48,6 +51,7 @@ public class FTPUploader extends CommandLineProgram {
 	 *    Accepted command line arguments:<ul>
 	 *        <li>--config-file:     Path to config file with FTP options</li>
 	 *        <li>--timeout-retries: Number of times to retry a timed out request</li>
+	 *        <li>--parallel-connections: Number of concurrent connections to upload over</li>
 	 *    </ul>
 	 * </p>
 	 * 
@@ -71,6 +75,8 @@ public class FTPUploader extends CommandLineProgram {
 		ftpu.allowNormalArgument("local-regex",          "--local-regex <string>",          "--local-regex:          Override config file setting - files to select from local directory for upload",              false);
 		ftpu.allowNormalArgument("local-file",           "--local-file <path>",             "--local-file:           Override config file setting - specific file to upload",                                      false);
 		ftpu.allowNormalArgument("remote-directory",     "--remote-directory <path>",       "--remote-directory:     Override config file setting - remote directory to upload to",                                false);
+		ftpu.allowNormalArgument("parallel-connections", "--parallel-connections <integer>", "--parallel-connections: Override config file setting - number of concurrent connections to upload over (largest files first)", false);
+		ftpu.allowNormalArgument("journal-file",         "--journal-file <path>",           "--journal-file:         Override config file setting - local file recording partial uploads, so retries resume",      false);
 		
 		ftpu.setMaxNakedArguments(0);
 		ftpu.setMinNakedArguments(0);
@@ -111,6 +117,17 @@ public class FTPUploader extends CommandLineProgram {
 		if(ftpu.getNormalArgument("debug") != null){
 			ftpu.getFtpUploaderThread().setDebug(Boolean.parseBoolean(ftpu.getNormalArgument("debug")));
 		}
+		if(ftpu.getNormalArgument("parallel-connections") != null){
+			ftpu.getFtpUploaderThread().setParallelConnections(Integer.parseInt(ftpu.getNormalArgument("parallel-connections")));
+		}
+		if(ftpu.getNormalArgument("journal-file") != null){
+			try {
+				ftpu.getFtpUploaderThread().setJournal(new FTPTransferJournal(new File(ftpu.getNormalArgument("journal-file"))));
+			}
+			catch (IOException e) {
+				ftpu.usage(e);
+			}
+		}
 		
 		String localDirectoryArg  = ftpu.getNormalArgument("local-directory");
 		String remoteDirectoryArg = ftpu.getNormalArgument("remote-directory");
@@ -145,6 +162,7 @@ public class FTPUploader extends CommandLineProgram {
 			"Skip transfer:        '" + ftpu.getFtpUploaderThread().getSkipTransfer()   + "'\n" + 
 			"Remove source:        '" + ftpu.getFtpUploaderThread().getSkipTransfer()   + "'\n" +
 			"Debug:                '" + ftpu.getFtpUploaderThread().getDebug()          + "'\n" + 
+			"Parallel connections: '" + ftpu.getFtpUploaderThread().getParallelConnections() + "'\n" + 
 			uploadMappingString
 		);
 		
@@ -287,6 +305,8 @@ public class FTPUploader extends CommandLineProgram {
 		String removeSource    = getStringSetting(configDoc, "FTP_UPLOAD_REMOVE_SOURCE");
 		String passiveTransfer = getStringSetting(configDoc, "FTP_UPLOAD_USE_PASSIVE_TRANSFER");
 		String debug           = getStringSetting(configDoc, "FTP_UPLOAD_DEBUG");
+		String connections     = getStringSetting(configDoc, "FTP_UPLOAD_PARALLEL_CONNECTIONS");
+		String journalFile     = getStringSetting(configDoc, "FTP_UPLOAD_JOURNAL_FILE");
 		
 		if(serverPort == null){
 			serverPort = "21";
@@ -303,6 +323,9 @@ public class FTPUploader extends CommandLineProgram {
 		if(debug == null){
 			debug = "true";
 		}
+		if(connections == null){
+			connections = "1";
+		}
 		
 		this.getFtpUploaderThread().setServerName(serverName);
 		this.getFtpUploaderThread().setServerPort(Integer.parseInt(serverPort));
@@ -312,6 +335,10 @@ public class FTPUploader extends CommandLineProgram {
 		this.getFtpUploaderThread().setRemoveSource(Boolean.parseBoolean(removeSource));
 		this.getFtpUploaderThread().setPassiveTransfer(Boolean.parseBoolean(passiveTransfer));
 		this.getFtpUploaderThread().setDebug(Boolean.parseBoolean(debug));
+		this.getFtpUploaderThread().setParallelConnections(Integer.parseInt(connections));
+		if(journalFile != null){
+			this.getFtpUploaderThread().setJournal(new FTPTransferJournal(new File(journalFile)));
+		}
 		
 		String uploadDirectory = getStringSetting(configDoc, "FTP_UPLOAD_LOCAL_DIRECTORY");
 		String uploadRegex     = getStringSetting(configDoc, "FTP_UPLOAD_LOCAL_REGEX");
@@ -399,6 +426,30 @@ public class FTPUploader extends CommandLineProgram {
 		);
 	}
 	
+	private FTPUploaderThread copyFtpUploaderThread(FTPUploaderThread original){
+		// Files finished before the last attempt stopped aren't tried again -
+		// with removeSource set, their source is already gone
+		List<UploadMapping> remaining = new ArrayList<UploadMapping>(original.getUploadMappings());
+		remaining.removeAll(original.getCompletedMappings());
+		
+		FTPUploaderThread copy = new FTPUploaderThread(
+			original.getServerName(),
+			original.getServerPort(),
+			original.getUsername(),
+			original.getPassword(),
+			original.getSkipTransfer(),
+			original.getRemoveSource(),
+			original.getPassiveTransfer(),
+			remaining,
+			original.getDebug()
+		);
+		copy.setParallelConnections(original.getParallelConnections());
+		copy.setJournal(original.getJournal());
+		copy.setSessionPool(original.getSessionPool());
+		
+		return copy;
+	}
+	
 	/**
 	 * <p>
 	 *    Performs the upload.  Actual upload is done by a background
@@ -408,6 +459,11 @@ public class FTPUploader extends CommandLineProgram {
 	 * @throws Exception If thread is interrupted (mainly if upload times out)
 	 */
 	public void doUpload() throws Exception {
+		if(ftput.getState() != Thread.State.NEW){
+			// A thread can only be run once - retries need a fresh one
+			ftput = copyFtpUploaderThread(ftput);
+		}
+		
 		this.getLogger().info("Starting new thread '" + ftput + "'.");
 		ftput.start();
 		
@@ -430,6 +486,7 @@ public class FTPUploader extends CommandLineProgram {
 						this.getLogger().severe("Waited " + timeDiff + " for upload to complete without success.  Terminating.");
 						
 						ftput.interrupt();
+						ftput.join(waitInterval);
 						throw new InterruptedException("Stopped upload after " + timeDiff + " milliseconds.  Upload most likely was partially but not fully complete.");
 					}
 					
@@ -446,6 +503,17 @@ public class FTPUploader extends CommandLineProgram {
 		
 		this.getLogger().info("Thread completed.  Checking for exceptions.");
 		
+		if(ftput.getUploadResults() != null){
+			for(FTPTransferResult result : ftput.getUploadResults()){
+				if(result.getSuccess()){
+					this.getLogger().info("Uploaded " + result + ".");
+				}
+				else{
+					this.getLogger().severe("Upload failed " + result + ".");
+				}
+			}
+		}
+		
 		if(ftput.getException() != null){
 			this.getLogger().severe("Thread threw exception '" + ftput.getException() + "'.");
 			throw ftput.getException();
@@ -1,9 +1,9 @@
 package com.brightcove.commons.ftp;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -19,12 +19,18 @@ import org.apache.commons.net.ftp.FTPClient;
  *
  */
 public class FTPDownloaderThread extends FTPThread {
-	List<DownloadMapping> downloadMappings;
+	List<DownloadMapping>   downloadMappings;
+	List<FTPTransferResult> downloadResults;
+	List<DownloadMapping>   completedMappings;
+	Integer                 segments;
 	
 	public FTPDownloaderThread(String serverName, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<DownloadMapping> downloadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.downloadMappings = downloadMappings;
+		this.downloadMappings  = downloadMappings;
+		this.downloadResults   = null;
+		this.completedMappings = Collections.synchronizedList(new ArrayList<DownloadMapping>());
+		this.segments          = 1;
 		
 		this.serverName          = serverName;
 		this.serverPort          = 21;
@@ -43,7 +49,10 @@ public class FTPDownloaderThread extends FTPThread {
 	public FTPDownloaderThread(String serverName, Integer serverPort, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<DownloadMapping> downloadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.downloadMappings = downloadMappings;
+		this.downloadMappings  = downloadMappings;
+		this.downloadResults   = null;
+		this.completedMappings = Collections.synchronizedList(new ArrayList<DownloadMapping>());
+		this.segments          = 1;
 		
 		this.serverName          = serverName;
 		this.serverPort          = serverPort;
@@ -60,7 +69,12 @@ public class FTPDownloaderThread extends FTPThread {
 	}
 	
 	public void run() {
-		ftpc = new FTPClient();
+		downloadResults = null;
+		
+		if((segments != null) && (segments > 1)){
+			runSegmented();
+			return;
+		}
 		
 		if(! connect()){
 			// Exception trying to connect
@@ -75,11 +89,7 @@ public class FTPDownloaderThread extends FTPThread {
 				
 				log.info("\tDownloading file \"" + remoteFile + "\" to \"" + localFile.getAbsolutePath() + "\".");
 				
-				FileOutputStream fos = new FileOutputStream(localFile);
-				ftpc.retrieveFile(remoteFile, fos);
-				printFTPCommandInfo("retrieve file (" + remoteFile + ")");
-				fos.flush();
-				fos.close();
+				downloadFile(downloadMapping);
 				
 				if(removeSource){
 					log.info("\tRemoving source file \"" + remoteFile + "\" per request.");
@@ -91,6 +101,8 @@ public class FTPDownloaderThread extends FTPThread {
 						printFTPCommandInfo("delete file (" + remoteFile + ")");
 					}
 				}
+				
+				completedMappings.add(downloadMapping);
 			}
 			
 			printFTPCommandInfo("end of file transfers");
@@ -103,6 +115,64 @@ public class FTPDownloaderThread extends FTPThread {
 		disconnect();
 	}
 	
+	private void runSegmented() {
+		log.info("Downloading from server \"" + serverName + "\" in up to " + segments + " segments per file.");
+		
+		FTPSegmentedDownloader downloader = new FTPSegmentedDownloader(serverName, serverPort, username, password, passiveTransfer, segments, debug);
+		downloader.setSessionPool(sessionPool);
+		
+		downloadResults = new ArrayList<FTPTransferResult>();
+		for(DownloadMapping downloadMapping : downloadMappings){
+			FTPTransferResult result;
+			try{
+				result = downloader.download(downloadMapping);
+			}
+			catch(InterruptedException ie){
+				exception = ie;
+				return;
+			}
+			
+			downloadResults.add(result);
+			if(! result.getSuccess()){
+				exception = result.getException();
+				return;
+			}
+			
+			if(! removeSource){
+				completedMappings.add(downloadMapping);
+			}
+		}
+		
+		if(removeSource){
+			if(! connect()){
+				// Exception trying to connect
+				return;
+			}
+			
+			try{
+				for(DownloadMapping downloadMapping : downloadMappings){
+					String remoteFile = downloadMapping.getSource();
+					log.info("\tRemoving source file \"" + remoteFile + "\" per request.");
+					if(! ftpc.deleteFile(remoteFile)){
+						printFTPCommandInfo("delete file (" + remoteFile + ")");
+						throw new IOException("Couldn't delete file \"" + remoteFile + "\".");
+					}
+					else{
+						printFTPCommandInfo("delete file (" + remoteFile + ")");
+					}
+					
+					completedMappings.add(downloadMapping);
+				}
+			}
+			catch(Exception e){
+				log.info("Exception thrown - '" + e + "'.");
+				exception = e;
+			}
+			
+			disconnect();
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Clears out the queue of files to download
@@ -157,4 +227,52 @@ public class FTPDownloaderThread extends FTPThread {
 	public void setDownloadMappings(List<DownloadMapping> downloadMappings){
 		this.downloadMappings = downloadMappings;
 	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of segments each file is split into.  With more
+	 *    than one, each file is fetched as that many byte ranges over
+	 *    concurrent connections (see FTPSegmentedDownloader).
+	 * </p>
+	 * 
+	 * @return Number of segments per file
+	 */
+	public Integer getSegments(){
+		return segments;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of segments each file is split into
+	 * </p>
+	 * 
+	 * @param segments Number of segments (and connections) per file - 1 downloads each file over a single connection
+	 */
+	public void setSegments(Integer segments){
+		this.segments = segments;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the result of each file from the last segmented download
+	 * </p>
+	 * 
+	 * @return Per-file results, or null if the last download wasn't segmented
+	 */
+	public List<FTPTransferResult> getDownloadResults(){
+		return downloadResults;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files that have been downloaded (and removed, if
+	 *    removeSource is set) so far - for working out what is left to do
+	 *    when a download is stopped part way.
+	 * </p>
+	 * 
+	 * @return Files that are finished
+	 */
+	public List<DownloadMapping> getCompletedMappings(){
+		return new ArrayList<DownloadMapping>(completedMappings);
+	}
 }
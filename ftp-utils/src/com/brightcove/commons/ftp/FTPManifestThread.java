@@ -21,11 +21,18 @@ public class FTPManifestThread extends FTPThread {
 	
 	Map<String, FTPManifestEntry> processedDirectories;
 	
+	Integer parallelConnections;
+	Long    directoriesListed;
+	Double  directoriesPerSecond;
+	
 	public FTPManifestThread(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, String startDirectory, Map<String, FTPManifestEntry> processedDirectories, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
 		this.startDirectory       = startDirectory;
 		this.processedDirectories = processedDirectories;
+		this.parallelConnections  = 1;
+		this.directoriesListed    = 0l;
+		this.directoriesPerSecond = null;
 		
 		this.serverName          = serverName;
 		this.serverPort          = serverPort;
@@ -43,7 +50,10 @@ public class FTPManifestThread extends FTPThread {
 	}
 	
 	public void run() {
-		ftpc = new FTPClient();
+		if(parallelConnections > 1){
+			runParallel();
+			return;
+		}
 		
 		log.info("Connecting to '" + serverName + "' as user '" + username + "'.");
 		
@@ -53,6 +63,7 @@ public class FTPManifestThread extends FTPThread {
 		}
 		
 		log.info("Generating a manifest for files on server \"" + serverName + "\".");
+		Long start = System.currentTimeMillis();
 		try{
 			traverseDirectory(startDirectory);
 			printFTPCommandInfo("end of manifest generation");
@@ -61,9 +72,27 @@ public class FTPManifestThread extends FTPThread {
 			exception = e;
 		}
 		
+		Long milliseconds = System.currentTimeMillis() - start;
+		directoriesPerSecond = (milliseconds > 0) ? Math.round(directoriesListed * 10000.0 / milliseconds) / 10.0 : 0.0;
+		log.info("Listed " + directoriesListed + " directories in " + milliseconds + " milliseconds - " + directoriesPerSecond + " directories/sec.");
+		
 		disconnect();
 	}
 	
+	private void runParallel() {
+		FTPParallelManifest crawler = new FTPParallelManifest(serverName, serverPort, username, password, passiveTransfer, parallelConnections, debug);
+		crawler.setSessionPool(sessionPool);
+		
+		try{
+			crawler.crawl(startDirectory, processedDirectories);
+		}
+		catch(Exception e){
+			exception = e;
+		}
+		
+		directoriesPerSecond = crawler.getDirectoriesPerSecond();
+	}
+	
 	private void traverseDirectory(String directory) throws IOException {
 		log.info("---------- Traversing directory '" + directory + "'.");
 		
@@ -72,17 +101,18 @@ public class FTPManifestThread extends FTPThread {
 		
 		FTPFile[] files = ftpc.listFiles();
 		printFTPCommandInfo("list files (" + directory + ")");
+		directoriesListed++;
 		
 		if(! directory.endsWith("/")){
 			directory += "/";
 		}
 		
-		String fileList = "";
+		StringBuilder fileList = new StringBuilder();
 		for(FTPFile file : files){
-			if(! fileList.equals("")){
-				fileList += ",";
+			if(fileList.length() > 0){
+				fileList.append(",");
 			}
-			fileList += file.getName();
+			fileList.append(file.getName());
 		}
 		log.info("**********     Files: [" + fileList + "].");
 		
@@ -122,4 +152,33 @@ public class FTPManifestThread extends FTPThread {
 	public String getStartDirectory(){
 		return startDirectory;
 	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of connections to list directories over.  With more
+	 *    than one, the server is crawled breadth first by an
+	 *    FTPParallelManifest instead of depth first over a single connection,
+	 *    and processedDirectories should be safe for concurrent use.
+	 * </p>
+	 * 
+	 * @param parallelConnections Number of concurrent connections
+	 */
+	public void setParallelConnections(Integer parallelConnections){
+		this.parallelConnections = parallelConnections;
+	}
+	
+	public Integer getParallelConnections(){
+		return parallelConnections;
+	}
+	
+	/**
+	 * <p>
+	 *    Rate the manifest was generated at
+	 * </p>
+	 * 
+	 * @return Directories listed per second, or null if the thread hasn't finished
+	 */
+	public Double getDirectoriesPerSecond(){
+		return directoriesPerSecond;
+	}
 }
@@ -0,0 +1,456 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * <p>
+ *    Lists every file on an FTP server over several connections at once.
+ *    Directories waiting to be listed are kept on a shared frontier; each
+ *    connection takes the next directory from it, lists it, records the
+ *    entries and puts any subdirectories back on the frontier, so the tree
+ *    is crawled breadth first by all of the connections together rather
+ *    than depth first by one.
+ * </p>
+ *
+ * <p>
+ *    Connections are borrowed from a session pool - the one given with
+ *    setSessionPool, or else a pool of its own that is closed when the
+ *    crawl is over.
+ * </p>
+ *
+ * <p>
+ *    Entries are written to the map passed to crawl as they are found, so
+ *    the map must be safe for concurrent use (a ConcurrentHashMap, for
+ *    example).  A directory entry is marked completed once that directory
+ *    has been listed, so a crawl that is stopped part way can be picked up
+ *    again by passing the same map back in - only the directories not yet
+ *    marked completed are listed.  The start directory has an entry of its
+ *    own for this, so the map holds one directory entry more than the
+ *    serial walk in FTPManifestThread records.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPParallelManifest {
+	private Logger  log;
+	private String  serverName;
+	private Integer serverPort;
+	private String  username;
+	private String  password;
+	private Boolean passiveTransfer;
+	private Integer connections;
+	private Integer maxRetries;
+	private Long    progressIntervalMilliseconds;
+	private Boolean debug;
+	
+	private FTPSessionPool sessionPool;
+	
+	private volatile Boolean   cancelled;
+	private volatile Exception exception;
+	
+	private Map<String, FTPManifestEntry>  entries;
+	private LinkedBlockingQueue<String>    frontier;
+	private Set<String>                    queued;
+	private AtomicInteger                  pending;
+	private Map<String, Integer>           attempts;
+	private AtomicLong                     directoriesListed;
+	private AtomicLong                     lastProgress;
+	private Long                           start;
+	private Long                           milliseconds;
+	private List<CrawlWorker>              workers;
+	
+	public FTPParallelManifest(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, Integer connections, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.serverName                   = serverName;
+		this.serverPort                   = serverPort;
+		this.username                     = username;
+		this.password                     = password;
+		this.passiveTransfer              = passiveTransfer;
+		this.connections                  = connections;
+		this.maxRetries                   = 3;
+		this.progressIntervalMilliseconds = 10000l; // 10 seconds
+		this.debug                        = debug;
+		
+		sessionPool       = null;
+		cancelled         = false;
+		exception         = null;
+		directoriesListed = new AtomicLong(0);
+		milliseconds      = 0l;
+	}
+	
+	/**
+	 * <p>
+	 *    Lists every file and directory under startDirectory, blocking until
+	 *    the whole tree has been listed or the crawl has failed.
+	 * </p>
+	 * 
+	 * @param startDirectory Directory to begin listing at
+	 * @param manifestEntries Map to store the entries in, keyed by path - may hold the entries of an earlier, unfinished crawl
+	 * @return manifestEntries
+	 * @throws IOException If a directory couldn't be listed (after retries), or no connection could be made - entries listed so far are left in manifestEntries
+	 * @throws InterruptedException If the calling thread is interrupted while waiting - the crawl is cancelled
+	 */
+	public Map<String, FTPManifestEntry> crawl(String startDirectory, Map<String, FTPManifestEntry> manifestEntries) throws IOException, InterruptedException {
+		cancelled         = false;
+		exception         = null;
+		entries           = manifestEntries;
+		frontier          = new LinkedBlockingQueue<String>();
+		queued            = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		pending           = new AtomicInteger(0);
+		attempts          = new ConcurrentHashMap<String, Integer>();
+		directoriesListed = new AtomicLong(0);
+		start             = System.currentTimeMillis();
+		milliseconds      = 0l;
+		lastProgress      = new AtomicLong(start);
+		workers           = new ArrayList<CrawlWorker>();
+		
+		// The start directory is tracked like any other, so a listing of it
+		// that was stopped part way is done again
+		if(! entries.containsKey(startDirectory)){
+			entries.put(startDirectory, new FTPManifestEntry(startDirectory, startDirectory, FTPManifestEntryType.DIRECTORY, false));
+		}
+		
+		// Pick up where an earlier crawl left off - anything it found but
+		// didn't get to list yet
+		for(FTPManifestEntry entry : entries.values()){
+			if(entry.getType().equals(FTPManifestEntryType.DIRECTORY) && (! entry.getCompleted())){
+				enqueue(entry.getPath());
+			}
+		}
+		
+		FTPSessionPool pool = sessionPool;
+		if(pool == null){
+			pool = new FTPSessionPool(serverName, serverPort, username, password, passiveTransfer, connections);
+		}
+		
+		log.info("Generating a manifest for files on server \"" + serverName + "\" over " + connections + " connections (" + pending.get() + " directories to start from).");
+		try{
+			for(Integer i=0;i<connections;i++){
+				CrawlWorker worker = new CrawlWorker(pool);
+				worker.setName("ftp-manifest-" + serverName + "-" + i);
+				workers.add(worker);
+				worker.start();
+			}
+			
+			try{
+				for(CrawlWorker worker : workers){
+					worker.join();
+				}
+			}
+			catch(InterruptedException ie){
+				cancel();
+				
+				// Don't hand manifestEntries back while a worker may still be
+				// writing to it
+				awaitWorkers();
+				throw ie;
+			}
+		}
+		finally{
+			if(pool != sessionPool){
+				pool.close();
+			}
+			milliseconds = System.currentTimeMillis() - start;
+		}
+		
+		log.info("Listed " + directoriesListed.get() + " directories (" + entries.size() + " entries) in " + milliseconds + " milliseconds - " + getDirectoriesPerSecond() + " directories/sec.");
+		
+		if(exception != null){
+			throw new IOException("[ERR] Manifest of \"" + serverName + "\" is incomplete (" + pending.get() + " directories not listed): " + exception, exception);
+		}
+		if(pending.get() > 0){
+			throw new IOException("[ERR] Manifest of \"" + serverName + "\" is incomplete (" + pending.get() + " directories not listed).");
+		}
+		
+		return entries;
+	}
+	
+	/**
+	 * <p>
+	 *    Stops a crawl in progress.  No further directories are listed, and
+	 *    the open connections are closed.
+	 * </p>
+	 */
+	public void cancel(){
+		cancelled = true;
+		
+		if(workers != null){
+			for(CrawlWorker worker : workers){
+				worker.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Rate the last (or current) crawl listed directories at
+	 * </p>
+	 * 
+	 * @return Directories listed per second
+	 */
+	public Double getDirectoriesPerSecond(){
+		Long elapsed = milliseconds;
+		if((start != null) && (elapsed == 0)){
+			elapsed = System.currentTimeMillis() - start;
+		}
+		if(elapsed <= 0){
+			return 0.0;
+		}
+		return Math.round(directoriesListed.get() * 10000.0 / elapsed) / 10.0;
+	}
+	
+	public Long    getDirectoriesListed() { return directoriesListed.get(); }
+	public Long    getMilliseconds()      { return milliseconds;            }
+	
+	public String  getServerName()      { return serverName;      }
+	public Integer getServerPort()      { return serverPort;      }
+	public String  getUsername()        { return username;        }
+	public String  getPassword()        { return password;        }
+	public Boolean getPassiveTransfer() { return passiveTransfer; }
+	public Integer getConnections()     { return connections;     }
+	public Boolean getDebug()           { return debug;           }
+	
+	public Integer getMaxRetries()                   { return maxRetries;                   }
+	public Long    getProgressIntervalMilliseconds() { return progressIntervalMilliseconds; }
+	
+	/**
+	 * <p>
+	 *    Sets how many times a directory whose listing failed is put back on
+	 *    the frontier before the crawl gives up on it
+	 * </p>
+	 * 
+	 * @param maxRetries Number of retries per directory
+	 */
+	public void setMaxRetries(Integer maxRetries){
+		this.maxRetries = maxRetries;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets how often progress (directories listed, directories/sec and the
+	 *    size of the frontier) is logged during a crawl
+	 * </p>
+	 * 
+	 * @param progressIntervalMilliseconds Time between progress messages
+	 */
+	public void setProgressIntervalMilliseconds(Long progressIntervalMilliseconds){
+		this.progressIntervalMilliseconds = progressIntervalMilliseconds;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the pool to borrow connections from.  The pool should allow at
+	 *    least as many sessions as there are connections, or the extra
+	 *    connections will wait for (and may time out waiting for) a session.
+	 * </p>
+	 * 
+	 * @param sessionPool Pool to borrow from, or null to use a pool just for this crawl
+	 */
+	public void setSessionPool(FTPSessionPool sessionPool){
+		this.sessionPool = sessionPool;
+	}
+	
+	public FTPSessionPool getSessionPool(){
+		return sessionPool;
+	}
+	
+	private void enqueue(String directory){
+		if(! queued.add(directory)){
+			// Already on the frontier (or listed) in this crawl
+			return;
+		}
+		pending.incrementAndGet();
+		frontier.add(directory);
+	}
+	
+	/**
+	 * <p>
+	 *    Waits for every worker to stop, even if the calling thread is
+	 *    interrupted again while waiting
+	 * </p>
+	 */
+	private void awaitWorkers(){
+		Boolean interrupted = false;
+		for(CrawlWorker worker : workers){
+			while(worker.isAlive()){
+				try{
+					worker.join();
+				}
+				catch(InterruptedException ie){
+					interrupted = true;
+				}
+			}
+		}
+		
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void logProgress(){
+		Long now  = System.currentTimeMillis();
+		Long last = lastProgress.get();
+		if((now - last >= progressIntervalMilliseconds) && lastProgress.compareAndSet(last, now)){
+			log.info("Listed " + directoriesListed.get() + " directories (" + entries.size() + " entries), " + frontier.size() + " waiting - " + getDirectoriesPerSecond() + " directories/sec.");
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    One connection to the server, listing directories from the shared
+	 *    frontier until there are none left to list.
+	 * </p>
+	 */
+	private class CrawlWorker extends FTPThread {
+		public CrawlWorker(FTPSessionPool pool){
+			super(FTPParallelManifest.this.serverName, FTPParallelManifest.this.username, FTPParallelManifest.this.password, null, null, FTPParallelManifest.this.passiveTransfer, FTPParallelManifest.this.debug);
+			this.serverPort  = FTPParallelManifest.this.serverPort;
+			this.sessionPool = pool;
+		}
+		
+		public void run(){
+			if(! connect()){
+				log.severe("Couldn't connect to \"" + serverName + "\": " + exception + ".");
+				FTPParallelManifest.this.exception = exception;
+				return;
+			}
+			
+			try{
+				while((! cancelled) && (FTPParallelManifest.this.exception == null) && (pending.get() > 0)){
+					String directory = frontier.poll(100, TimeUnit.MILLISECONDS);
+					if(directory == null){
+						// Frontier is empty for now, but other connections
+						// may still add to it
+						continue;
+					}
+					
+					try{
+						traverseDirectory(directory);
+						pending.decrementAndGet();
+					}
+					catch(Exception e){
+						// FTPClient can also throw runtime exceptions when its
+						// connection is closed under it
+						if(cancelled){
+							break;
+						}
+						if(! retry(directory, e)){
+							break;
+						}
+					}
+					
+					logProgress();
+				}
+			}
+			catch(InterruptedException ie){
+				// Cancelled
+			}
+			
+			if(cancelled){
+				discardConnection();
+			}
+			else{
+				disconnect();
+			}
+		}
+		
+		/**
+		 * <p>
+		 *    Puts a directory whose listing failed back on the frontier, and
+		 *    replaces the connection in case it was the connection that failed.
+		 * </p>
+		 * 
+		 * @return False if this connection should stop
+		 */
+		private Boolean retry(String directory, Exception e){
+			Integer attempt = attempts.get(directory);
+			attempt = (attempt == null) ? 1 : attempt + 1;
+			attempts.put(directory, attempt);
+			
+			if(attempt > maxRetries){
+				log.severe("Giving up on directory '" + directory + "' after " + attempt + " attempts: " + e + ".");
+				exception                          = e;
+				FTPParallelManifest.this.exception = e;
+				return false;
+			}
+			
+			log.warning("Couldn't list directory '" + directory + "' (" + e + "), retrying.");
+			frontier.add(directory);
+			
+			discardConnection();
+			if(! connect()){
+				log.severe("Couldn't reconnect to \"" + serverName + "\": " + exception + ".");
+				FTPParallelManifest.this.exception = exception;
+				return false;
+			}
+			return true;
+		}
+		
+		private void traverseDirectory(String directory) throws IOException {
+			if(debug){
+				log.info("---------- Traversing directory '" + directory + "'.");
+			}
+			
+			if(! ftpc.changeWorkingDirectory(directory)){
+				throw new IOException("[ERR] Couldn't change to directory '" + directory + "': " + ftpc.getReplyString().trim());
+			}
+			printFTPCommandInfo("change directory (" + directory + ")");
+			
+			FTPFile[] files = ftpc.listFiles();
+			printFTPCommandInfo("list files (" + directory + ")");
+			
+			String prefix = directory;
+			if(! prefix.endsWith("/")){
+				prefix += "/";
+			}
+			
+			for(FTPFile file : files){
+				if((file == null) || ".".equals(file.getName()) || "..".equals(file.getName())){
+					continue;
+				}
+				
+				String path = prefix + file.getName();
+				
+				FTPManifestEntry existing = entries.get(path);
+				if(existing != null){
+					// An unfinished directory from an earlier crawl may have
+					// been recorded after that crawl's frontier was rebuilt,
+					// so make sure it is queued (enqueue ignores repeats)
+					if(existing.getType().equals(FTPManifestEntryType.DIRECTORY) && (! existing.getCompleted())){
+						enqueue(path);
+					}
+					continue;
+				}
+				
+				if(file.getType() == FTPFile.DIRECTORY_TYPE){
+					entries.put(path, new FTPManifestEntry(path, file.getName(), FTPManifestEntryType.DIRECTORY, false));
+					enqueue(path);
+				}
+				else{
+					entries.put(path, new FTPManifestEntry(path, file.getName(), FTPManifestEntryType.FILE, true));
+				}
+			}
+			
+			FTPManifestEntry entry = entries.get(directory);
+			if(entry != null){
+				entry.setCompleted(true);
+			}
+			directoriesListed.incrementAndGet();
+		}
+	}
+}
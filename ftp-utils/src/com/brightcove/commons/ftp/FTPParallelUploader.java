@@ -0,0 +1,296 @@
+package com.brightcove.commons.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ *    Uploads files to an FTP server over several connections at once.  Each
+ *    connection is a separate logged in session that takes the next file
+ *    from a shared queue as soon as it finishes the previous one, so a
+ *    handful of large files can't hold up the rest of the batch.  The queue
+ *    is ordered largest file first, so the big uploads start early and the
+ *    small ones fill in around them.
+ * </p>
+ *
+ * <p>
+ *    Every file gets an FTPTransferResult, whether or not it was uploaded.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPParallelUploader {
+	private Logger  log;
+	private String  serverName;
+	private Integer serverPort;
+	private String  username;
+	private String  password;
+	private Boolean removeSource;
+	private Boolean passiveTransfer;
+	private Integer connections;
+	private Boolean debug;
+	
+	private FTPTransferJournal journal;
+	private FTPSessionPool     sessionPool;
+	
+	private volatile Boolean cancelled;
+	
+	private ConcurrentLinkedQueue<UploadMapping>    queue;
+	private Map<UploadMapping, FTPTransferResult>   results;
+	private List<UploadWorker>                      workers;
+	
+	public FTPParallelUploader(String serverName, Integer serverPort, String username, String password, Boolean removeSource, Boolean passiveTransfer, Integer connections, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.serverName      = serverName;
+		this.serverPort      = serverPort;
+		this.username        = username;
+		this.password        = password;
+		this.removeSource    = removeSource;
+		this.passiveTransfer = passiveTransfer;
+		this.connections     = connections;
+		this.debug           = debug;
+		
+		journal     = null;
+		sessionPool = null;
+		cancelled   = false;
+	}
+	
+	/**
+	 * <p>
+	 *    Uploads a list of files, blocking until every file has been uploaded
+	 *    or has failed.
+	 * </p>
+	 * 
+	 * @param uploadMappings Files to upload
+	 * @return Result for each file, in the same order as uploadMappings
+	 * @throws InterruptedException If the calling thread is interrupted while waiting - outstanding uploads are cancelled
+	 */
+	public List<FTPTransferResult> upload(List<UploadMapping> uploadMappings) throws InterruptedException {
+		List<UploadMapping> sorted = new ArrayList<UploadMapping>(uploadMappings);
+		Collections.sort(sorted, new Comparator<UploadMapping>(){
+			public int compare(UploadMapping a, UploadMapping b){
+				Long aLength = a.getSource().length();
+				Long bLength = b.getSource().length();
+				return bLength.compareTo(aLength);
+			}
+		});
+		
+		cancelled = false;
+		queue     = new ConcurrentLinkedQueue<UploadMapping>(sorted);
+		results   = Collections.synchronizedMap(new HashMap<UploadMapping, FTPTransferResult>());
+		workers   = new ArrayList<UploadWorker>();
+		
+		Integer workerCount = Math.max(1, Math.min(connections, uploadMappings.size()));
+		log.info("Uploading " + uploadMappings.size() + " files to server \"" + serverName + "\" over " + workerCount + " connections.");
+		for(Integer i=0;i<workerCount;i++){
+			UploadWorker worker = new UploadWorker();
+			worker.setName("ftp-upload-" + serverName + "-" + i);
+			workers.add(worker);
+			worker.start();
+		}
+		
+		try{
+			for(UploadWorker worker : workers){
+				worker.join();
+			}
+		}
+		catch(InterruptedException ie){
+			cancel();
+			throw ie;
+		}
+		
+		// Anything left in the queue was never attempted (every connection
+		// failed, or the upload was cancelled)
+		Exception lastException = null;
+		for(UploadWorker worker : workers){
+			if(worker.getException() != null){
+				lastException = worker.getException();
+			}
+		}
+		
+		List<FTPTransferResult> ret = new ArrayList<FTPTransferResult>();
+		for(UploadMapping mapping : uploadMappings){
+			FTPTransferResult result = results.get(mapping);
+			if(result == null){
+				Exception exception = lastException;
+				if(exception == null){
+					exception = new IOException("[ERR] File \"" + mapping.getSource().getAbsolutePath() + "\" was not uploaded.");
+				}
+				result = new FTPTransferResult(mapping, false, 0l, 0l, exception);
+			}
+			ret.add(result);
+		}
+		return ret;
+	}
+	
+	/**
+	 * <p>
+	 *    Stops an upload in progress.  No further files are started, and the
+	 *    open connections are closed, which aborts the files in flight.
+	 * </p>
+	 */
+	public void cancel(){
+		cancelled = true;
+		
+		if(workers != null){
+			for(UploadWorker worker : workers){
+				worker.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files from the current (or last) upload that have been
+	 *    uploaded - and removed, if removeSource is set - so far
+	 * </p>
+	 * 
+	 * @return Files that are finished
+	 */
+	public List<UploadMapping> getCompletedMappings(){
+		List<UploadMapping> ret = new ArrayList<UploadMapping>();
+		if(results != null){
+			synchronized(results){
+				for(FTPTransferResult result : results.values()){
+					if(result.getSuccess()){
+						ret.add((UploadMapping)result.getMapping());
+					}
+				}
+			}
+		}
+		return ret;
+	}
+	
+	public String  getServerName()      { return serverName;      }
+	public Integer getServerPort()      { return serverPort;      }
+	public String  getUsername()        { return username;        }
+	public String  getPassword()        { return password;        }
+	public Boolean getRemoveSource()    { return removeSource;    }
+	public Boolean getPassiveTransfer() { return passiveTransfer; }
+	public Integer getConnections()     { return connections;     }
+	public Boolean getDebug()           { return debug;           }
+	
+	/**
+	 * <p>
+	 *    Sets the journal used to resume partial uploads (see FTPThread.uploadFile)
+	 * </p>
+	 * 
+	 * @param journal Journal to record progress in, or null to always upload from the start
+	 */
+	public void setJournal(FTPTransferJournal journal){
+		this.journal = journal;
+	}
+	
+	public FTPTransferJournal getJournal(){
+		return journal;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the pool to borrow connections from.  The pool should allow at
+	 *    least as many sessions as there are connections, or the extra
+	 *    connections will wait for (and may time out waiting for) a session.
+	 * </p>
+	 * 
+	 * @param sessionPool Pool to borrow from, or null to open new connections
+	 */
+	public void setSessionPool(FTPSessionPool sessionPool){
+		this.sessionPool = sessionPool;
+	}
+	
+	public FTPSessionPool getSessionPool(){
+		return sessionPool;
+	}
+	
+	/**
+	 * <p>
+	 *    One connection to the server, uploading files from the shared queue
+	 *    until it is empty.
+	 * </p>
+	 */
+	private class UploadWorker extends FTPThread {
+		public UploadWorker(){
+			super(FTPParallelUploader.this.serverName, FTPParallelUploader.this.username, FTPParallelUploader.this.password, false, FTPParallelUploader.this.removeSource, FTPParallelUploader.this.passiveTransfer, FTPParallelUploader.this.debug);
+			this.serverPort = FTPParallelUploader.this.serverPort;
+			this.journal     = FTPParallelUploader.this.journal;
+			this.sessionPool = FTPParallelUploader.this.sessionPool;
+		}
+		
+		public void run(){
+			if(! connect()){
+				log.severe("Couldn't connect to \"" + serverName + "\": " + exception + ".");
+				return;
+			}
+			
+			UploadMapping mapping = queue.poll();
+			while(mapping != null && ! cancelled){
+				FTPTransferResult result = upload(mapping);
+				results.put(mapping, result);
+				
+				if(! result.getSuccess() && ! cancelled && ! stillConnected()){
+					// Lost the connection part way through a file - the
+					// file has failed, but the rest of the queue needn't
+					log.warning("Connection lost, reconnecting.");
+					discardConnection();
+					if(! connect()){
+						log.severe("Couldn't reconnect to \"" + serverName + "\": " + exception + ".");
+						return;
+					}
+				}
+				
+				mapping = queue.poll();
+			}
+			
+			if(cancelled){
+				// cancel() closed the connection under the transfer
+				discardConnection();
+			}
+			else{
+				disconnect();
+			}
+		}
+		
+		private Boolean stillConnected(){
+			try{
+				return ftpc.sendNoOp();
+			}
+			catch(IOException ioe){
+				return false;
+			}
+		}
+		
+		private FTPTransferResult upload(UploadMapping mapping){
+			File localFile = mapping.getSource();
+			Long start     = System.currentTimeMillis();
+			
+			log.info("\tUploading file \"" + localFile.getAbsolutePath() + "\".");
+			
+			try{
+				Long bytes = uploadFile(mapping);
+				
+				if(removeSource){
+					log.info("\tRemoving source file \"" + localFile.getAbsolutePath() + "\" per request.");
+					if(! localFile.delete()){
+						throw new IOException("Couldn't delete file \"" + localFile.getAbsolutePath() + "\".");
+					}
+				}
+				
+				return new FTPTransferResult(mapping, true, bytes, System.currentTimeMillis() - start, null);
+			}
+			catch(Exception e){
+				log.info("Exception thrown - '" + e + "'.");
+				return new FTPTransferResult(mapping, false, 0l, System.currentTimeMillis() - start, e);
+			}
+		}
+	}
+}
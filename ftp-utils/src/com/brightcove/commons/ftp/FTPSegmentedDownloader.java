@@ -0,0 +1,414 @@
+package com.brightcove.commons.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * <p>
+ *    Downloads a single large file from an FTP server over several
+ *    connections at once.  The file is split into byte ranges, and each
+ *    connection fetches one range at a time (using REST to start part way
+ *    through the file) and writes it straight into place in the local file.
+ *    A single TCP stream is limited by the latency of the link - several of
+ *    them side by side are not.
+ * </p>
+ *
+ * <p>
+ *    A range that fails part way through is retried from the last byte
+ *    written, up to maxRetries times, so a dropped connection only costs the
+ *    bytes that were in flight.  Files smaller than two segments (or whose
+ *    size the server won't report) are downloaded over one connection.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPSegmentedDownloader {
+	private static final Integer BUFFER_SIZE = 65536;
+	
+	private Logger  log;
+	private String  serverName;
+	private Integer serverPort;
+	private String  username;
+	private String  password;
+	private Boolean passiveTransfer;
+	private Integer segments;
+	private Long    minimumSegmentSize;
+	private Integer maxRetries;
+	private Boolean debug;
+	
+	private volatile Boolean cancelled;
+	
+	private ConcurrentLinkedQueue<Segment> queue;
+	private List<SegmentWorker>            workers;
+	private FileChannel                    channel;
+	private String                         remoteFile;
+	private FTPSessionPool                 sessionPool;
+	
+	public FTPSegmentedDownloader(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, Integer segments, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.serverName         = serverName;
+		this.serverPort         = serverPort;
+		this.username           = username;
+		this.password           = password;
+		this.passiveTransfer    = passiveTransfer;
+		this.segments           = segments;
+		this.minimumSegmentSize = 16l * 1024l * 1024l; // 16 MB
+		this.maxRetries         = 3;
+		this.debug              = debug;
+		
+		sessionPool = null;
+		cancelled   = false;
+	}
+	
+	/**
+	 * <p>
+	 *    Downloads one file, blocking until it is complete or has failed.
+	 * </p>
+	 * 
+	 * @param mapping File to download
+	 * @return Result of the download
+	 * @throws InterruptedException If the calling thread is interrupted while waiting - the download is cancelled
+	 */
+	public FTPTransferResult download(DownloadMapping mapping) throws InterruptedException {
+		remoteFile = mapping.getSource();
+		File localFile = mapping.getDestination();
+		Long start     = System.currentTimeMillis();
+		
+		log.info("\tDownloading file \"" + remoteFile + "\" to \"" + localFile.getAbsolutePath() + "\".");
+		
+		RandomAccessFile raf = null;
+		try{
+			Long size = getRemoteSize();
+			
+			Integer count = 1;
+			if((size != null) && (segments > 1)){
+				count = (int)Math.max(1l, Math.min((long)segments, size / minimumSegmentSize));
+			}
+			
+			raf = new RandomAccessFile(localFile, "rw");
+			if(size != null){
+				raf.setLength(size);
+			}
+			else{
+				raf.setLength(0);
+			}
+			channel = raf.getChannel();
+			
+			// Segment i covers [size * i / count, size * (i + 1) / count) - a
+			// file of unknown size is one segment read to the end
+			queue = new ConcurrentLinkedQueue<Segment>();
+			if(size == null){
+				queue.add(new Segment(0l, -1l));
+			}
+			else{
+				for(Integer i=0;i<count;i++){
+					Long from = size * i / count;
+					Long to   = size * (i + 1) / count;
+					queue.add(new Segment(from, to - from));
+				}
+			}
+			List<Segment> allSegments = new ArrayList<Segment>(queue);
+			
+			log.info("\tDownloading " + size + " bytes in " + count + " segments.");
+			
+			cancelled = false;
+			workers   = new ArrayList<SegmentWorker>();
+			for(Integer i=0;i<count;i++){
+				SegmentWorker worker = new SegmentWorker();
+				worker.setName("ftp-download-" + serverName + "-" + i);
+				workers.add(worker);
+				worker.start();
+			}
+			
+			try{
+				for(SegmentWorker worker : workers){
+					worker.join();
+				}
+			}
+			catch(InterruptedException ie){
+				cancel();
+				throw ie;
+			}
+			
+			Long bytes = 0l;
+			for(Segment segment : allSegments){
+				if(! segment.isComplete()){
+					Exception exception = segment.exception;
+					if(exception == null){
+						exception = lastWorkerException();
+					}
+					if(exception == null){
+						exception = new IOException("[ERR] Segment at " + segment.start + " of \"" + remoteFile + "\" was not downloaded.");
+					}
+					return new FTPTransferResult(mapping, false, bytes, System.currentTimeMillis() - start, exception);
+				}
+				bytes += segment.done;
+			}
+			
+			return new FTPTransferResult(mapping, true, bytes, System.currentTimeMillis() - start, null);
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown - '" + ioe + "'.");
+			return new FTPTransferResult(mapping, false, 0l, System.currentTimeMillis() - start, ioe);
+		}
+		finally{
+			if(raf != null){
+				try{
+					raf.close();
+				}
+				catch(IOException ioe){
+					log.warning("Couldn't close \"" + localFile.getAbsolutePath() + "\": " + ioe + ".");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Stops a download in progress.  The open connections are closed,
+	 *    which aborts the segments in flight.
+	 * </p>
+	 */
+	public void cancel(){
+		cancelled = true;
+		
+		if(workers != null){
+			for(SegmentWorker worker : workers){
+				worker.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Asks the server for the size of the remote file
+	 * </p>
+	 * 
+	 * @return Size in bytes, or null if the server doesn't support SIZE
+	 * @throws IOException If the server can't be connected to, or the file doesn't exist
+	 */
+	private Long getRemoteSize() throws IOException {
+		SegmentWorker probe = new SegmentWorker();
+		if(! probe.connect()){
+			throw new IOException("[ERR] Couldn't connect to \"" + serverName + "\": " + probe.getException());
+		}
+		
+		try{
+			Integer reply = probe.getFtpClient().sendCommand("SIZE", remoteFile);
+			probe.printFTPCommandInfo("size (" + remoteFile + ")");
+			if(reply == FTPReply.FILE_STATUS){
+				return Long.parseLong(probe.getFtpClient().getReplyString().substring(4).trim());
+			}
+			if(reply == FTPReply.FILE_UNAVAILABLE){
+				throw new IOException("[ERR] Couldn't find \"" + remoteFile + "\": " + probe.getFtpClient().getReplyString().trim());
+			}
+			return null;
+		}
+		catch(NumberFormatException nfe){
+			return null;
+		}
+		finally{
+			probe.disconnect();
+		}
+	}
+	
+	private Exception lastWorkerException(){
+		Exception ret = null;
+		for(SegmentWorker worker : workers){
+			if(worker.getException() != null){
+				ret = worker.getException();
+			}
+		}
+		return ret;
+	}
+	
+	public String  getServerName()         { return serverName;         }
+	public Integer getServerPort()         { return serverPort;         }
+	public String  getUsername()           { return username;           }
+	public String  getPassword()           { return password;           }
+	public Boolean getPassiveTransfer()    { return passiveTransfer;    }
+	public Integer getSegments()           { return segments;           }
+	public Long    getMinimumSegmentSize() { return minimumSegmentSize; }
+	public Integer getMaxRetries()         { return maxRetries;         }
+	public Boolean getDebug()              { return debug;              }
+	
+	public void setSegments(Integer segments)                  { this.segments           = segments;           }
+	public void setMinimumSegmentSize(Long minimumSegmentSize) { this.minimumSegmentSize = minimumSegmentSize; }
+	public void setMaxRetries(Integer maxRetries)              { this.maxRetries         = maxRetries;         }
+	
+	/**
+	 * <p>
+	 *    Sets the pool to borrow connections from.  The pool should allow at
+	 *    least as many sessions as there are segments, or the extra
+	 *    connections will wait for (and may time out waiting for) a session.
+	 * </p>
+	 * 
+	 * @param sessionPool Pool to borrow from, or null to open new connections
+	 */
+	public void setSessionPool(FTPSessionPool sessionPool){
+		this.sessionPool = sessionPool;
+	}
+	
+	public FTPSessionPool getSessionPool(){
+		return sessionPool;
+	}
+	
+	/**
+	 * <p>
+	 *    A byte range of the remote file, and how much of it has been written
+	 * </p>
+	 */
+	private static class Segment {
+		Long      start;
+		Long      length;
+		Long      done;
+		Boolean   finished;
+		Integer   attempts;
+		Exception exception;
+		
+		Segment(Long start, Long length){
+			this.start     = start;
+			this.length    = length;
+			this.done      = 0l;
+			this.finished  = false;
+			this.attempts  = 0;
+			this.exception = null;
+		}
+		
+		Boolean isComplete(){
+			return finished;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    One connection to the server, downloading segments from the shared
+	 *    queue until it is empty.
+	 * </p>
+	 */
+	private class SegmentWorker extends FTPThread {
+		public SegmentWorker(){
+			super(FTPSegmentedDownloader.this.serverName, FTPSegmentedDownloader.this.username, FTPSegmentedDownloader.this.password, false, false, FTPSegmentedDownloader.this.passiveTransfer, FTPSegmentedDownloader.this.debug);
+			this.serverPort  = FTPSegmentedDownloader.this.serverPort;
+			this.sessionPool = FTPSegmentedDownloader.this.sessionPool;
+		}
+		
+		public void run(){
+			if(! connect()){
+				log.severe("Couldn't connect to \"" + serverName + "\": " + exception + ".");
+				return;
+			}
+			
+			Segment segment = queue.poll();
+			while((segment != null) && (! cancelled)){
+				try{
+					download(segment);
+					segment.finished = true;
+				}
+				catch(IOException ioe){
+					segment.attempts++;
+					segment.exception = ioe;
+					if(cancelled){
+						break;
+					}
+					
+					if(segment.attempts > maxRetries){
+						log.severe("Segment at " + segment.start + " failed " + segment.attempts + " times - giving up (" + ioe + ").");
+					}
+					else{
+						log.warning("Segment at " + segment.start + " failed after " + segment.done + " bytes - retrying (" + ioe + ").");
+						queue.add(segment);
+						
+						discardConnection();
+						if(! connect()){
+							log.severe("Couldn't reconnect to \"" + serverName + "\": " + exception + ".");
+							return;
+						}
+					}
+				}
+				
+				segment = queue.poll();
+			}
+			
+			if(cancelled){
+				// cancel() closed the connection under the transfer
+				discardConnection();
+			}
+			else{
+				disconnect();
+			}
+		}
+		
+		private void download(Segment segment) throws IOException {
+			Long position  = segment.start + segment.done;
+			Long remaining = -1l;
+			if(segment.length >= 0){
+				remaining = segment.length - segment.done;
+			}
+			
+			ftpc.setRestartOffset(position);
+			InputStream in = ftpc.retrieveFileStream(remoteFile);
+			printFTPCommandInfo("retrieve file (" + remoteFile + " from " + position + ")");
+			if(in == null){
+				throw new IOException("[ERR] Couldn't retrieve \"" + remoteFile + "\": " + ftpc.getReplyString().trim());
+			}
+			
+			byte[]     buffer  = new byte[BUFFER_SIZE];
+			ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+			try{
+				while(remaining != 0){
+					checkInterrupted();
+					
+					Integer wanted = BUFFER_SIZE;
+					if((remaining > 0) && (remaining < wanted)){
+						wanted = remaining.intValue();
+					}
+					
+					Integer read = in.read(buffer, 0, wanted);
+					if(read < 0){
+						break;
+					}
+					
+					wrapped.clear();
+					wrapped.limit(read);
+					while(wrapped.hasRemaining()){
+						channel.write(wrapped, position + wrapped.position());
+					}
+					
+					position       += read;
+					segment.done   += read;
+					if(remaining > 0){
+						remaining -= read;
+					}
+				}
+			}
+			finally{
+				// Closing early tells the server to stop sending - the rest
+				// of the file belongs to other segments
+				in.close();
+			}
+			
+			Boolean completed = ftpc.completePendingCommand();
+			printFTPCommandInfo("complete retrieve (" + remoteFile + ")");
+			
+			if(remaining > 0){
+				throw new IOException("[ERR] Transfer of \"" + remoteFile + "\" ended " + remaining + " bytes early.");
+			}
+			if((remaining < 0) && (! completed)){
+				throw new IOException("[ERR] Transfer of \"" + remoteFile + "\" failed: " + ftpc.getReplyString().trim());
+			}
+		}
+	}
+}
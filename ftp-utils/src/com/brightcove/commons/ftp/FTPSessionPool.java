@@ -0,0 +1,424 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * <p>
+ *    Bounded pool of logged in FTPClient sessions to one server, so that
+ *    jobs run one after another against the same server don't each pay for
+ *    a new connection, login, file type and transfer mode.
+ * </p>
+ *
+ * <p>
+ *    Sessions are checked with a NOOP (and returned to the directory they
+ *    logged in to) when borrowed, and broken ones are replaced.  Idle
+ *    sessions are kept alive with a NOOP every keepAliveMilliseconds, and
+ *    closed once they have been idle for maxIdleMilliseconds.  At most
+ *    maxSessions are open at once - borrowers wait (up to
+ *    borrowTimeoutMilliseconds) for one to be returned.
+ * </p>
+ *
+ * <p>
+ *    An FTPThread given a pool (see FTPThread.setSessionPool) borrows from it
+ *    in connect() and returns the session in disconnect().  getSharedPool
+ *    returns one pool per server and login, for callers that want to share
+ *    sessions without passing a pool around.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPSessionPool {
+	private static final Map<String, FTPSessionPool> sharedPools = new HashMap<String, FTPSessionPool>();
+	
+	private Logger  log;
+	private String  serverName;
+	private Integer serverPort;
+	private String  username;
+	private String  password;
+	private Boolean passiveTransfer;
+	private Integer maxSessions;
+	private Long    maxIdleMilliseconds;
+	private Long    keepAliveMilliseconds;
+	private Long    borrowTimeoutMilliseconds;
+	
+	private LinkedList<IdleSession>  idle;
+	private Map<FTPClient, String>   homeDirectories;
+	private Integer                  busy;
+	private Boolean                  closed;
+	private Timer                    timer;
+	
+	public FTPSessionPool(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, Integer maxSessions) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.serverName                = serverName;
+		this.serverPort                = serverPort;
+		this.username                  = username;
+		this.password                  = password;
+		this.passiveTransfer           = passiveTransfer;
+		this.maxSessions               = maxSessions;
+		this.maxIdleMilliseconds       = 1000l * 60l * 5l; // 5 minutes
+		this.keepAliveMilliseconds     = 1000l * 60l;      // 1 minute
+		this.borrowTimeoutMilliseconds = 1000l * 60l;      // 1 minute
+		
+		idle            = new LinkedList<IdleSession>();
+		homeDirectories = new HashMap<FTPClient, String>();
+		busy            = 0;
+		closed          = false;
+		timer           = null;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the pool shared by everything connecting to a server with
+	 *    the same login and transfer mode, creating it (with room for 8
+	 *    sessions) the first time.
+	 * </p>
+	 * 
+	 * @param serverName Server host name or ip address
+	 * @param serverPort Server port
+	 * @param username Username to log in with
+	 * @param password Password to log in with
+	 * @param passiveTransfer Use passive transfer mode if true instead of active
+	 * @return Shared pool
+	 */
+	public static FTPSessionPool getSharedPool(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer){
+		String key = username + "@" + serverName + ":" + serverPort + "/" + passiveTransfer;
+		synchronized(sharedPools){
+			FTPSessionPool pool = sharedPools.get(key);
+			if((pool == null) || pool.isClosed()){
+				pool = new FTPSessionPool(serverName, serverPort, username, password, passiveTransfer, 8);
+				sharedPools.put(key, pool);
+			}
+			return pool;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Borrows a logged in session, waiting for one to be returned if the
+	 *    pool is at its limit.  The session must be given back with release,
+	 *    or with invalidate if it may be in a bad state.
+	 * </p>
+	 * 
+	 * @return Logged in session, in binary mode and in the directory it logged in to
+	 * @throws IOException If a session can't be opened, none is returned in time, or the pool is closed
+	 */
+	public FTPClient borrow() throws IOException {
+		Long deadline = System.currentTimeMillis() + borrowTimeoutMilliseconds;
+		
+		while(true){
+			IdleSession session = null;
+			synchronized(this){
+				while((! closed) && idle.isEmpty() && (busy >= maxSessions)){
+					Long remaining = deadline - System.currentTimeMillis();
+					if(remaining <= 0){
+						throw new IOException("[ERR] Timed out waiting for a session to \"" + serverName + "\".");
+					}
+					try{
+						wait(remaining);
+					}
+					catch(InterruptedException ie){
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("[ERR] Interrupted waiting for a session to \"" + serverName + "\".");
+					}
+				}
+				if(closed){
+					throw new IOException("[ERR] Session pool for \"" + serverName + "\" is closed.");
+				}
+				
+				busy++;
+				if(! idle.isEmpty()){
+					session = idle.removeFirst();
+				}
+			}
+			
+			if(session == null){
+				try{
+					return open();
+				}
+				catch(IOException ioe){
+					returnSlot();
+					throw ioe;
+				}
+			}
+			
+			if(validate(session.client)){
+				return session.client;
+			}
+			
+			log.info("Discarding broken session to \"" + serverName + "\".");
+			close(session.client);
+			returnSlot();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns a borrowed session to the pool
+	 * </p>
+	 * 
+	 * @param client Session to return
+	 */
+	public void release(FTPClient client){
+		synchronized(this){
+			if(! closed){
+				idle.addFirst(new IdleSession(client));
+				busy--;
+				notifyAll();
+				startTimer();
+				return;
+			}
+		}
+		
+		close(client);
+		returnSlot();
+	}
+	
+	/**
+	 * <p>
+	 *    Closes a borrowed session rather than returning it - for a session
+	 *    whose connection failed, or whose transfer was aborted part way.
+	 * </p>
+	 * 
+	 * @param client Session to close
+	 */
+	public void invalidate(FTPClient client){
+		close(client);
+		returnSlot();
+	}
+	
+	/**
+	 * <p>
+	 *    Closes every idle session and stops the keep-alive timer.  Sessions
+	 *    still borrowed are closed when they are returned.
+	 * </p>
+	 */
+	public void close(){
+		List<IdleSession> sessions;
+		synchronized(this){
+			closed   = true;
+			sessions = new ArrayList<IdleSession>(idle);
+			idle.clear();
+			if(timer != null){
+				timer.cancel();
+				timer = null;
+			}
+			notifyAll();
+		}
+		
+		for(IdleSession session : sessions){
+			close(session.client);
+		}
+	}
+	
+	public synchronized Boolean isClosed()        { return closed;      }
+	public synchronized Integer getIdleSessions() { return idle.size(); }
+	public synchronized Integer getBusySessions() { return busy;        }
+	
+	public String  getServerName()                { return serverName;                }
+	public Integer getServerPort()                { return serverPort;                }
+	public String  getUsername()                  { return username;                  }
+	public Boolean getPassiveTransfer()           { return passiveTransfer;           }
+	public Integer getMaxSessions()               { return maxSessions;               }
+	public Long    getMaxIdleMilliseconds()       { return maxIdleMilliseconds;       }
+	public Long    getKeepAliveMilliseconds()     { return keepAliveMilliseconds;     }
+	public Long    getBorrowTimeoutMilliseconds() { return borrowTimeoutMilliseconds; }
+	
+	public synchronized void setMaxSessions(Integer maxSessions)                          { this.maxSessions               = maxSessions; notifyAll(); }
+	public synchronized void setMaxIdleMilliseconds(Long maxIdleMilliseconds)             { this.maxIdleMilliseconds       = maxIdleMilliseconds;       }
+	public synchronized void setKeepAliveMilliseconds(Long keepAliveMilliseconds)         { this.keepAliveMilliseconds     = keepAliveMilliseconds;     }
+	public synchronized void setBorrowTimeoutMilliseconds(Long borrowTimeoutMilliseconds) { this.borrowTimeoutMilliseconds = borrowTimeoutMilliseconds; }
+	
+	private FTPClient open() throws IOException {
+		log.info("Opening new session to \"" + serverName + "\" as user \"" + username + "\".");
+		
+		FTPClient client = new FTPClient();
+		try{
+			client.connect(serverName, serverPort);
+			if(! client.login(username, password)){
+				throw new IOException("[ERR] Couldn't log in to \"" + serverName + "\": " + client.getReplyString().trim());
+			}
+			
+			client.setFileType(FTP.BINARY_FILE_TYPE);
+			if(passiveTransfer){
+				client.enterLocalPassiveMode();
+			}
+			else{
+				client.enterLocalActiveMode();
+			}
+			
+			String home = client.printWorkingDirectory();
+			synchronized(this){
+				homeDirectories.put(client, home);
+			}
+			return client;
+		}
+		catch(IOException ioe){
+			close(client);
+			throw ioe;
+		}
+	}
+	
+	private Boolean validate(FTPClient client){
+		try{
+			if(! client.isConnected()){
+				return false;
+			}
+			if(! client.sendNoOp()){
+				return false;
+			}
+			
+			String home;
+			synchronized(this){
+				home = homeDirectories.get(client);
+			}
+			if((home != null) && (! client.changeWorkingDirectory(home))){
+				return false;
+			}
+			return true;
+		}
+		catch(IOException ioe){
+			return false;
+		}
+	}
+	
+	private void close(FTPClient client){
+		synchronized(this){
+			homeDirectories.remove(client);
+		}
+		
+		try{
+			if(client.isConnected() && FTPReply.isPositiveCompletion(client.getReplyCode())){
+				client.logout();
+			}
+		}
+		catch(IOException ioe){
+			// Connection is going away regardless
+		}
+		finally{
+			try{
+				client.disconnect();
+			}
+			catch(IOException ioe){
+				// Connection is going away regardless
+			}
+		}
+	}
+	
+	private synchronized void returnSlot(){
+		busy--;
+		notifyAll();
+	}
+	
+	/**
+	 * <p>
+	 *    Starts the keep-alive / eviction timer, once there is something idle
+	 *    for it to look after.
+	 * </p>
+	 */
+	private synchronized void startTimer(){
+		if(timer != null){
+			return;
+		}
+		
+		Long period = Math.min(keepAliveMilliseconds, maxIdleMilliseconds);
+		timer = new Timer("ftp-session-pool-" + serverName, true);
+		timer.schedule(new TimerTask(){
+			public void run(){
+				maintain();
+			}
+		}, period, period);
+	}
+	
+	/**
+	 * <p>
+	 *    Closes sessions that have been idle too long, and sends a NOOP on
+	 *    the rest so the server doesn't time them out.
+	 * </p>
+	 */
+	private void maintain(){
+		List<IdleSession> expired = new ArrayList<IdleSession>();
+		List<IdleSession> checked = new ArrayList<IdleSession>();
+		
+		Long now = System.currentTimeMillis();
+		synchronized(this){
+			Iterator<IdleSession> it = idle.iterator();
+			while(it.hasNext()){
+				IdleSession session = it.next();
+				if(now - session.idleSince > maxIdleMilliseconds){
+					it.remove();
+					expired.add(session);
+				}
+				else if(now - session.lastChecked >= keepAliveMilliseconds){
+					// Held as busy while the NOOP is in flight, so it isn't
+					// borrowed at the same time
+					it.remove();
+					checked.add(session);
+					busy++;
+				}
+			}
+		}
+		
+		for(IdleSession session : expired){
+			log.info("Closing session to \"" + serverName + "\" after " + (now - session.idleSince) + " milliseconds idle.");
+			close(session.client);
+		}
+		
+		for(IdleSession session : checked){
+			Boolean alive;
+			try{
+				alive = session.client.sendNoOp();
+			}
+			catch(IOException ioe){
+				alive = false;
+			}
+			
+			if(alive){
+				session.lastChecked = System.currentTimeMillis();
+				synchronized(this){
+					if(! closed){
+						idle.add(session);
+						busy--;
+						notifyAll();
+						continue;
+					}
+				}
+			}
+			
+			close(session.client);
+			returnSlot();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    A session waiting in the pool
+	 * </p>
+	 */
+	private static class IdleSession {
+		FTPClient client;
+		Long      idleSince;
+		Long      lastChecked;
+		
+		IdleSession(FTPClient client){
+			this.client      = client;
+			this.idleSince   = System.currentTimeMillis();
+			this.lastChecked = this.idleSince;
+		}
+	}
+}
@@ -1,11 +1,23 @@
 package com.brightcove.commons.ftp;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
 import java.util.logging.Logger;
 
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPReply;
 
 public class FTPThread extends Thread {
 	Logger           log;
@@ -19,7 +31,10 @@ public class FTPThread extends Thread {
 	Boolean          debug;
 	Exception        exception;
 	
-	FTPClient ftpc;
+	FTPClient          ftpc;
+	FTPTransferJournal journal;
+	FTPSessionPool     sessionPool;
+	Boolean            pooledSession;
 	
 	public FTPThread() {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
@@ -33,7 +48,10 @@ public class FTPThread extends Thread {
 		this.passiveTransfer = false;
 		this.debug           = true;
 		
-		exception = null;
+		exception     = null;
+		journal       = null;
+		sessionPool   = null;
+		pooledSession = false;
 		
 		ftpc = new FTPClient();
 	}
@@ -50,7 +68,10 @@ public class FTPThread extends Thread {
 		this.passiveTransfer = passiveTransfer;
 		this.debug           = debug;
 		
-		exception = null;
+		exception     = null;
+		journal       = null;
+		sessionPool   = null;
+		pooledSession = false;
 		
 		ftpc = new FTPClient();
 	}
@@ -63,7 +84,46 @@ public class FTPThread extends Thread {
 		disconnect();
 	}
 	
+	/**
+	 * <p>
+	 *    Interrupts the thread, and closes its connection.  A transfer doesn't
+	 *    otherwise notice an interrupt (and closing the control connection
+	 *    alone leaves the data connection running), so uploadFile and
+	 *    downloadFile also check for it as the data is copied.
+	 * </p>
+	 */
+	public void interrupt() {
+		super.interrupt();
+		
+		try{
+			ftpc.disconnect();
+		}
+		catch(IOException ioe){
+			// Connection is going away regardless
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Opens a logged in connection - borrowed from the session pool, if
+	 *    one is set, rather than a new one.
+	 * </p>
+	 * 
+	 * @return True if connected, false if not (see getException)
+	 */
 	public Boolean connect() {
+		if(sessionPool != null){
+			try{
+				ftpc          = sessionPool.borrow();
+				pooledSession = true;
+				return true;
+			}
+			catch(Exception e){
+				exception = e;
+				return false;
+			}
+		}
+		
 		ftpc = new FTPClient();
 		
 		try{
@@ -94,7 +154,25 @@ public class FTPThread extends Thread {
 		return false;
 	}
 	
+	/**
+	 * <p>
+	 *    Closes the connection - or, if it was borrowed from the session
+	 *    pool, returns it (unless this thread has failed, in which case the
+	 *    connection may be in a bad state and is closed).
+	 * </p>
+	 */
 	public void disconnect() {
+		if(pooledSession){
+			pooledSession = false;
+			if(exception == null){
+				sessionPool.release(ftpc);
+			}
+			else{
+				sessionPool.invalidate(ftpc);
+			}
+			return;
+		}
+		
 		log.info("Disconnecting...");
 		
 		try{
@@ -129,6 +207,293 @@ public class FTPThread extends Thread {
 		}
 	}
 	
+	/**
+	 * <p>
+	 *    Closes the connection without returning it to the session pool -
+	 *    for a connection that failed part way through a transfer.
+	 * </p>
+	 */
+	public void discardConnection() {
+		if(pooledSession){
+			pooledSession = false;
+			sessionPool.invalidate(ftpc);
+			return;
+		}
+		
+		disconnect();
+	}
+	
+	/**
+	 * <p>
+	 *    Asks the server for the size of a file
+	 * </p>
+	 * 
+	 * @param path Path of the file on the server
+	 * @return Size in bytes, or null if the file doesn't exist or the server doesn't support SIZE
+	 * @throws IOException If the command can't be sent
+	 */
+	public Long getRemoteSize(String path) throws IOException {
+		Integer reply = ftpc.sendCommand("SIZE", path);
+		printFTPCommandInfo("size (" + path + ")");
+		if(reply != FTPReply.FILE_STATUS){
+			return null;
+		}
+		
+		try{
+			return Long.parseLong(ftpc.getReplyString().substring(4).trim());
+		}
+		catch(NumberFormatException nfe){
+			return null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Asks the server for the last modified time of a file (MDTM)
+	 * </p>
+	 * 
+	 * @param path Path of the file on the server
+	 * @return Last modified time in milliseconds since the epoch, or null if the file doesn't exist or the server doesn't support MDTM
+	 * @throws IOException If the command can't be sent
+	 */
+	public Long getRemoteModificationTime(String path) throws IOException {
+		String reply = ftpc.getModificationTime(path);
+		printFTPCommandInfo("modification time (" + path + ")");
+		if(reply == null){
+			return null;
+		}
+		
+		// Reply is "213 YYYYMMDDhhmmss[.sss]", always in UTC
+		reply = reply.trim();
+		if(reply.startsWith("213")){
+			reply = reply.substring(3).trim();
+		}
+		if(reply.length() < 14){
+			return null;
+		}
+		
+		SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		format.setLenient(false);
+		try{
+			return format.parse(reply.substring(0, 14)).getTime();
+		}
+		catch(ParseException pe){
+			return null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Asks the server for the size of a file, waiting until it stops
+	 *    changing.  After an upload is aborted the server can still be
+	 *    writing out data from the old connection for a moment, and
+	 *    appending before it finishes would corrupt the file.
+	 * </p>
+	 * 
+	 * @param path Path of the file on the server
+	 * @return Size in bytes, or null if the file doesn't exist or the server doesn't support SIZE
+	 * @throws IOException If the command can't be sent, or the thread is interrupted while waiting
+	 */
+	public Long getSettledRemoteSize(String path) throws IOException {
+		Long size = getRemoteSize(path);
+		for(Integer i=0;(size != null) && (i < 30);i++){
+			try{
+				Thread.sleep(1000);
+			}
+			catch(InterruptedException ie){
+				throw new InterruptedIOException("[ERR] Interrupted waiting for size of \"" + path + "\".");
+			}
+			
+			Long nextSize = getRemoteSize(path);
+			if(size.equals(nextSize)){
+				return size;
+			}
+			size = nextSize;
+		}
+		return size;
+	}
+	
+	/**
+	 * <p>
+	 *    Uploads a single file.
+	 * </p>
+	 * 
+	 * <p>
+	 *    If a journal is set, an earlier partial upload of the same
+	 *    (unchanged) file is resumed with APPE from the size the server
+	 *    reports, and the finished upload is verified by comparing the
+	 *    remote size with the local one.
+	 * </p>
+	 * 
+	 * @param mapping File to upload
+	 * @return Number of bytes sent
+	 * @throws IOException If the upload fails, is refused, or doesn't verify
+	 */
+	public Long uploadFile(UploadMapping mapping) throws IOException {
+		File   localFile  = mapping.getSource();
+		String remoteFile = mapping.getDestination();
+		Long   length     = localFile.length();
+		Long   modified   = localFile.lastModified();
+		
+		// A journal entry only exists once the server has accepted an
+		// earlier STOR/APPE of this file, so the remote file is ours to
+		// append to
+		Long offset = 0l;
+		if((journal != null) && (journal.getOffset(mapping, length, modified) != null)){
+			Long remoteSize = getSettledRemoteSize(remoteFile);
+			if((remoteSize != null) && (remoteSize <= length)){
+				offset = remoteSize;
+			}
+		}
+		
+		if((offset > 0) && offset.equals(length)){
+			log.info("\tFile \"" + localFile.getAbsolutePath() + "\" was already uploaded.");
+		}
+		else{
+			FileInputStream fis = new FileInputStream(localFile);
+			try{
+				OutputStream out;
+				if(offset > 0){
+					log.info("\tResuming upload of \"" + localFile.getAbsolutePath() + "\" from byte " + offset + ".");
+					fis.getChannel().position(offset);
+					out = ftpc.appendFileStream(remoteFile);
+					printFTPCommandInfo("append file (" + remoteFile + ")");
+				}
+				else{
+					out = ftpc.storeFileStream(remoteFile);
+					printFTPCommandInfo("store file (" + remoteFile + ")");
+				}
+				
+				if(out == null){
+					refused(mapping, remoteFile);
+				}
+				
+				if(journal != null){
+					journal.setOffset(mapping, length, modified, offset);
+				}
+				
+				try{
+					InputStream in     = new InterruptibleInputStream(fis);
+					byte[]      buffer = new byte[64 * 1024];
+					Integer     read   = in.read(buffer);
+					while(read != -1){
+						out.write(buffer, 0, read);
+						read = in.read(buffer);
+					}
+				}
+				finally{
+					out.close();
+				}
+			}
+			finally{
+				fis.close();
+			}
+			
+			if(! ftpc.completePendingCommand()){
+				refused(mapping, remoteFile);
+			}
+		}
+		
+		if(journal != null){
+			Long remoteSize = getRemoteSize(remoteFile);
+			if((remoteSize != null) && (! remoteSize.equals(length))){
+				journal.setOffset(mapping, length, modified, remoteSize);
+				throw new IOException("[ERR] Uploaded file \"" + remoteFile + "\" is " + remoteSize + " bytes, expected " + length + ".");
+			}
+			journal.remove(mapping);
+		}
+		
+		return length - offset;
+	}
+	
+	private void refused(UploadMapping mapping, String remoteFile) throws IOException {
+		if(journal != null){
+			// Nothing on the server can be trusted as ours - start again
+			// from scratch next time
+			journal.remove(mapping);
+		}
+		throw new IOException("[ERR] Server refused file \"" + remoteFile + "\": " + ftpc.getReplyString().trim());
+	}
+	
+	/**
+	 * <p>
+	 *    Downloads a single file.
+	 * </p>
+	 * 
+	 * <p>
+	 *    If a journal is set, an earlier partial download of the same
+	 *    (unchanged) remote file is resumed with REST from the end of the
+	 *    local file, and the finished download is verified by comparing the
+	 *    local size with the remote one.  The remote file counts as unchanged
+	 *    only if both its size and its modification time (MDTM) match, so
+	 *    downloads from a server without MDTM are never resumed.
+	 * </p>
+	 * 
+	 * @param mapping File to download
+	 * @return Number of bytes received
+	 * @throws IOException If the download fails, is refused, or doesn't verify
+	 */
+	public Long downloadFile(DownloadMapping mapping) throws IOException {
+		String remoteFile = mapping.getSource();
+		File   localFile  = mapping.getDestination();
+		
+		Long offset         = 0l;
+		Long remoteSize     = null;
+		Long remoteModified = null;
+		if(journal != null){
+			remoteSize = getRemoteSize(remoteFile);
+			if(remoteSize != null){
+				// A replaced file of the same size can only be told apart by
+				// its modification time - without one, don't risk appending
+				// to a partial copy of the old file
+				remoteModified = getRemoteModificationTime(remoteFile);
+				if((remoteModified != null) && (journal.getOffset(mapping, remoteSize, remoteModified) != null) && localFile.exists() && (localFile.length() <= remoteSize)){
+					offset = localFile.length();
+				}
+				journal.setOffset(mapping, remoteSize, remoteModified, offset);
+			}
+		}
+		
+		if((offset > 0) && offset.equals(remoteSize)){
+			log.info("\tFile \"" + remoteFile + "\" was already downloaded.");
+		}
+		else{
+			Boolean retrieved;
+			FileOutputStream fos = new FileOutputStream(localFile, (offset > 0));
+			try{
+				if(offset > 0){
+					log.info("\tResuming download of \"" + remoteFile + "\" from byte " + offset + ".");
+					ftpc.setRestartOffset(offset);
+				}
+				retrieved = ftpc.retrieveFile(remoteFile, new InterruptibleOutputStream(fos));
+				printFTPCommandInfo("retrieve file (" + remoteFile + ")");
+				fos.flush();
+			}
+			finally{
+				fos.close();
+			}
+			
+			if(! retrieved){
+				if((journal != null) && (offset > 0)){
+					// Server won't resume - start again from scratch next time
+					journal.remove(mapping);
+				}
+				throw new IOException("[ERR] Couldn't retrieve file \"" + remoteFile + "\": " + ftpc.getReplyString().trim());
+			}
+		}
+		
+		if(remoteSize != null){
+			if(localFile.length() != remoteSize){
+				journal.setOffset(mapping, remoteSize, remoteModified, localFile.length());
+				throw new IOException("[ERR] Downloaded file \"" + localFile.getAbsolutePath() + "\" is " + localFile.length() + " bytes, expected " + remoteSize + ".");
+			}
+			journal.remove(mapping);
+		}
+		
+		return localFile.length() - offset;
+	}
+	
 	/**
 	 * <p>
 	 *    Sets the last exception to null
@@ -165,6 +530,9 @@ public class FTPThread extends Thread {
 	public Exception getException()       { return exception;       }
 	public FTPClient getFtpClient()       { return ftpc;            }
 	
+	public FTPTransferJournal getJournal()     { return journal;     }
+	public FTPSessionPool     getSessionPool() { return sessionPool; }
+	
 	public void setLog(Logger log)                          { this.log             = log;             }
 	public void setServerName(String serverName)            { this.serverName      = serverName;      }
 	public void setServerPort(Integer serverPort)           { this.serverPort      = serverPort;      }
@@ -176,4 +544,62 @@ public class FTPThread extends Thread {
 	public void setDebug(Boolean debug)                     { this.debug           = debug;           }
 	public void setException(Exception exception)           { this.exception       = exception;       }
 	public void setFtpClient(FTPClient ftpc)                { this.ftpc            = ftpc;            }
+	
+	public void setJournal(FTPTransferJournal journal)     { this.journal     = journal;     }
+	public void setSessionPool(FTPSessionPool sessionPool) { this.sessionPool = sessionPool; }
+	
+	/**
+	 * <p>
+	 *    Throws if the current thread has been interrupted
+	 * </p>
+	 * 
+	 * @throws InterruptedIOException If the current thread has been interrupted
+	 */
+	static void checkInterrupted() throws InterruptedIOException {
+		if(Thread.currentThread().isInterrupted()){
+			throw new InterruptedIOException("[ERR] Transfer interrupted.");
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Stream that fails as soon as the thread reading it is interrupted
+	 * </p>
+	 */
+	private static class InterruptibleInputStream extends FilterInputStream {
+		InterruptibleInputStream(InputStream in){
+			super(in);
+		}
+		
+		public int read() throws IOException {
+			checkInterrupted();
+			return super.read();
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkInterrupted();
+			return super.read(b, off, len);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Stream that fails as soon as the thread writing it is interrupted
+	 * </p>
+	 */
+	private static class InterruptibleOutputStream extends FilterOutputStream {
+		InterruptibleOutputStream(OutputStream out){
+			super(out);
+		}
+		
+		public void write(int b) throws IOException {
+			checkInterrupted();
+			out.write(b);
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkInterrupted();
+			out.write(b, off, len);
+		}
+	}
 }
@@ -0,0 +1,161 @@
+package com.brightcove.commons.ftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ *    Small local file recording how far each transfer got, so that a
+ *    transfer that was interrupted (timed out, lost its connection, or the
+ *    process was killed) can pick up where it left off instead of starting
+ *    again from byte 0.
+ * </p>
+ *
+ * <p>
+ *    Each entry records the size (and, where known, last modified time) of
+ *    the file being sent, so a file that has changed since the interrupted
+ *    attempt is sent again from the start rather than resumed.  Entries are
+ *    removed once a transfer has been verified.  The journal is rewritten
+ *    (via a temporary file and a rename) on every change, and is safe to
+ *    share between threads.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPTransferJournal {
+	private Logger     log;
+	private File       journalFile;
+	private Properties entries;
+	
+	/**
+	 * <p>
+	 *    Default constructor - loads the journal if it already exists
+	 * </p>
+	 * 
+	 * @param journalFile File to keep the journal in
+	 * @throws IOException If the journal exists but can't be read
+	 */
+	public FTPTransferJournal(File journalFile) throws IOException {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.journalFile = journalFile;
+		this.entries     = new Properties();
+		
+		if(journalFile.exists()){
+			FileInputStream fis = new FileInputStream(journalFile);
+			try{
+				entries.load(fis);
+			}
+			finally{
+				fis.close();
+			}
+			log.info("Loaded " + entries.size() + " unfinished transfers from journal \"" + journalFile.getAbsolutePath() + "\".");
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the offset an earlier attempt at a transfer reached, if the
+	 *    file being sent is unchanged since then.
+	 * </p>
+	 * 
+	 * @param mapping File being transferred
+	 * @param size Current size of the file being sent
+	 * @param modified Current last modified time of the file being sent, or null if not known
+	 * @return Recorded offset, or null if there is no usable entry
+	 */
+	public synchronized Long getOffset(FTPMapping<?, ?> mapping, Long size, Long modified){
+		String value = entries.getProperty(getKey(mapping));
+		if(value == null){
+			return null;
+		}
+		
+		String[] fields = value.split(",");
+		try{
+			Long recordedSize     = Long.parseLong(fields[0]);
+			Long recordedModified = Long.parseLong(fields[1]);
+			Long recordedOffset   = Long.parseLong(fields[2]);
+			
+			if(! recordedSize.equals(size)){
+				return null;
+			}
+			if((modified != null) && (! recordedModified.equals(modified))){
+				return null;
+			}
+			return recordedOffset;
+		}
+		catch(RuntimeException re){
+			log.warning("Ignoring unreadable journal entry '" + value + "'.");
+			return null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Records how far a transfer has got
+	 * </p>
+	 * 
+	 * @param mapping File being transferred
+	 * @param size Size of the file being sent
+	 * @param modified Last modified time of the file being sent, or null if not known
+	 * @param offset Number of bytes confirmed at the destination
+	 * @throws IOException If the journal can't be written
+	 */
+	public synchronized void setOffset(FTPMapping<?, ?> mapping, Long size, Long modified, Long offset) throws IOException {
+		if(modified == null){
+			modified = 0l;
+		}
+		entries.setProperty(getKey(mapping), size + "," + modified + "," + offset);
+		save();
+	}
+	
+	/**
+	 * <p>
+	 *    Forgets a transfer, once it has completed
+	 * </p>
+	 * 
+	 * @param mapping File that was transferred
+	 * @throws IOException If the journal can't be written
+	 */
+	public synchronized void remove(FTPMapping<?, ?> mapping) throws IOException {
+		if(entries.remove(getKey(mapping)) != null){
+			save();
+		}
+	}
+	
+	public File getJournalFile(){
+		return journalFile;
+	}
+	
+	private String getKey(FTPMapping<?, ?> mapping){
+		return getPath(mapping.getSource()) + " -> " + getPath(mapping.getDestination());
+	}
+	
+	private String getPath(Object path){
+		if(path instanceof File){
+			return ((File)path).getAbsolutePath();
+		}
+		return String.valueOf(path);
+	}
+	
+	private void save() throws IOException {
+		File tempFile = new File(journalFile.getAbsolutePath() + ".tmp");
+		
+		FileOutputStream fos = new FileOutputStream(tempFile);
+		try{
+			entries.store(fos, "Unfinished FTP transfers");
+		}
+		finally{
+			fos.close();
+		}
+		
+		if((! tempFile.renameTo(journalFile)) && ((! journalFile.delete()) || (! tempFile.renameTo(journalFile)))){
+			throw new IOException("[ERR] Couldn't write journal \"" + journalFile.getAbsolutePath() + "\".");
+		}
+	}
+}
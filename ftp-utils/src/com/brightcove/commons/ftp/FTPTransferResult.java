@@ -0,0 +1,71 @@
+package com.brightcove.commons.ftp;
+
+/**
+ * <p>
+ *    Outcome of transferring a single file - whether it succeeded, how many
+ *    bytes were moved and how long it took, or the exception that stopped it.
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class FTPTransferResult {
+	private FTPMapping<?, ?> mapping;
+	private Boolean          success;
+	private Long             bytes;
+	private Long             milliseconds;
+	private Exception        exception;
+	
+	/**
+	 * <p>
+	 *    Default constructor
+	 * </p>
+	 * 
+	 * @param mapping File that was transferred
+	 * @param success True if the file was transferred completely
+	 * @param bytes Number of bytes transferred
+	 * @param milliseconds Time spent on the transfer
+	 * @param exception Exception that stopped the transfer, or null
+	 */
+	public FTPTransferResult(FTPMapping<?, ?> mapping, Boolean success, Long bytes, Long milliseconds, Exception exception){
+		this.mapping      = mapping;
+		this.success      = success;
+		this.bytes        = bytes;
+		this.milliseconds = milliseconds;
+		this.exception    = exception;
+	}
+	
+	public FTPMapping<?, ?> getMapping(){
+		return mapping;
+	}
+	
+	public Boolean getSuccess(){
+		return success;
+	}
+	
+	public Long getBytes(){
+		return bytes;
+	}
+	
+	public Long getMilliseconds(){
+		return milliseconds;
+	}
+	
+	public Exception getException(){
+		return exception;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		String ret = "\"" + mapping.getSource() + "\" -> \"" + mapping.getDestination() + "\": ";
+		if(success){
+			ret += "transferred " + bytes + " bytes in " + milliseconds + " milliseconds";
+		}
+		else{
+			ret += "failed (" + exception + ")";
+		}
+		return ret;
+	}
+}
@@ -1,9 +1,9 @@
 package com.brightcove.commons.ftp;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -19,12 +19,20 @@ import org.apache.commons.net.ftp.FTPClient;
  *
  */
 public class FTPUploaderThread extends FTPThread {
-	private List<UploadMapping> uploadMappings;
+	private List<UploadMapping>     uploadMappings;
+	private Integer                 parallelConnections;
+	private List<FTPTransferResult> uploadResults;
+	private List<UploadMapping>     completedMappings;
+	private FTPParallelUploader     parallelUploader;
 	
 	public FTPUploaderThread(String serverName, Integer serverPort, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<UploadMapping> uploadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.uploadMappings = uploadMappings;
+		this.uploadMappings      = uploadMappings;
+		this.parallelConnections = 1;
+		this.uploadResults       = null;
+		this.completedMappings   = Collections.synchronizedList(new ArrayList<UploadMapping>());
+		this.parallelUploader    = null;
 		
 		this.serverName          = serverName;
 		this.serverPort          = serverPort;
@@ -41,7 +49,12 @@ public class FTPUploaderThread extends FTPThread {
 	}
 	
 	public void run() {
-		ftpc = new FTPClient();
+		uploadResults = null;
+		
+		if((parallelConnections != null) && (parallelConnections > 1)){
+			runParallel();
+			return;
+		}
 		
 		if(! connect()){
 			// Exception trying to connect
@@ -54,12 +67,9 @@ public class FTPUploaderThread extends FTPThread {
 				File   localFile  = uploadMapping.getSource();
 				String remoteFile = uploadMapping.getDestination();
 				
-				log.info("\tUploading file \"" + localFile.getAbsolutePath() + "\".");
+				log.info("\tUploading file \"" + localFile.getAbsolutePath() + "\" to \"" + remoteFile + "\".");
 				
-				FileInputStream fis = new FileInputStream(localFile);
-				ftpc.storeFile(remoteFile, fis);
-				printFTPCommandInfo("store file (" + remoteFile + ")");
-				fis.close();
+				uploadFile(uploadMapping);
 				
 				if(removeSource){
 					log.info("\tRemoving source file \"" + localFile.getAbsolutePath() + "\" per request.");
@@ -67,6 +77,8 @@ public class FTPUploaderThread extends FTPThread {
 						throw new IOException("Couldn't delete file \"" + localFile.getAbsolutePath() + "\".");
 					}
 				}
+				
+				completedMappings.add(uploadMapping);
 			}
 			
 			printFTPCommandInfo("end of file transfers");
@@ -78,6 +90,27 @@ public class FTPUploaderThread extends FTPThread {
 		disconnect();
 	}
 	
+	private void runParallel() {
+		FTPParallelUploader uploader = new FTPParallelUploader(serverName, serverPort, username, password, removeSource, passiveTransfer, parallelConnections, debug);
+		uploader.setJournal(journal);
+		uploader.setSessionPool(sessionPool);
+		parallelUploader = uploader;
+		
+		try{
+			uploadResults = uploader.upload(uploadMappings);
+		}
+		catch(InterruptedException ie){
+			exception = ie;
+			return;
+		}
+		
+		for(FTPTransferResult result : uploadResults){
+			if((! result.getSuccess()) && (exception == null)){
+				exception = result.getException();
+			}
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Clears out the queue of files to upload
@@ -132,4 +165,56 @@ public class FTPUploaderThread extends FTPThread {
 	public void setUploadMappings(List<UploadMapping> uploadMappings){
 		this.uploadMappings = uploadMappings;
 	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of connections to upload over.  With more than
+	 *    one, the files are shared out between that many concurrent sessions
+	 *    (see FTPParallelUploader), largest file first.
+	 * </p>
+	 * 
+	 * @return Number of concurrent connections
+	 */
+	public Integer getParallelConnections(){
+		return parallelConnections;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the number of connections to upload over
+	 * </p>
+	 * 
+	 * @param parallelConnections Number of concurrent connections - 1 uploads the files one after another
+	 */
+	public void setParallelConnections(Integer parallelConnections){
+		this.parallelConnections = parallelConnections;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the result of each file from the last parallel upload
+	 * </p>
+	 * 
+	 * @return Per-file results, or null if the last upload wasn't parallel
+	 */
+	public List<FTPTransferResult> getUploadResults(){
+		return uploadResults;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files that have been uploaded (and removed, if
+	 *    removeSource is set) so far - for working out what is left to do
+	 *    when an upload is stopped part way.
+	 * </p>
+	 * 
+	 * @return Files that are finished
+	 */
+	public List<UploadMapping> getCompletedMappings(){
+		List<UploadMapping> ret = new ArrayList<UploadMapping>(completedMappings);
+		if(parallelUploader != null){
+			ret.addAll(parallelUploader.getCompletedMappings());
+		}
+		return ret;
+	}
 }
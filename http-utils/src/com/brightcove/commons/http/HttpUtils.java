@@ -1,11 +1,24 @@
 package com.brightcove.commons.http;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.ParseException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
 
 /**
  * <p>
@@ -16,6 +29,8 @@ import org.apache.http.HttpEntity;
  *
  */
 public class HttpUtils {
+	public static final String DEFAULT_CHARSET = "UTF-8";
+	
 	/**
 	 * <p>
 	 *    Parses an HTTP request into a into a plain String response
@@ -33,26 +48,253 @@ public class HttpUtils {
 		
 		String      output   = "";
 		InputStream instream = entity.getContent();
-		String      charSet  = "UTF-8";
+		String      charSet  = getCharset(entity);
+		
+		output = IOUtils.toString(instream, charSet);
+		
+	    return output;
+	}
+	
+	/**
+	 * <p>
+	 *    Opens a reader over the contents of an HTTP entity, without
+	 *    reading the contents into memory first.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The reader uses the charset from the entity's Content-Type header
+	 *    (UTF-8 if there isn't one), and gzip or deflate Content-Encoding is
+	 *    decoded on the fly.  The caller is responsible for closing the
+	 *    reader.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to read from
+	 * @return Reader over the decoded entity contents, or null if entity is null
+	 * @throws IOException If the entity can't be read
+	 * @throws IllegalStateException If something went really wrong reading from the server
+	 */
+	public static Reader parseHttpEntityAsReader(HttpEntity entity) throws IOException, IllegalStateException {
+		return parseHttpEntityAsReader(entity, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Opens a reader over the contents of an HTTP entity, without
+	 *    reading the contents into memory first, failing if the contents are
+	 *    larger than a given size.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The size limit applies to the decoded (i.e. un-gzipped) bytes, so
+	 *    a small compressed response can't expand without limit.  If the
+	 *    entity says up front that it is too large, this fails immediately,
+	 *    otherwise the reader throws an IOException once the limit is
+	 *    passed.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to read from
+	 * @param maxBytes Maximum number of bytes to read from the entity (null for no limit)
+	 * @return Reader over the decoded entity contents, or null if entity is null
+	 * @throws IOException If the entity can't be read, or is too large
+	 * @throws IllegalStateException If something went really wrong reading from the server
+	 */
+	public static Reader parseHttpEntityAsReader(HttpEntity entity, Long maxBytes) throws IOException, IllegalStateException {
+		if(entity == null){
+			return null;
+		}
+		
+		if((maxBytes != null) && (entity.getContentLength() > maxBytes)){
+			throw new IOException("[ERR] HTTP entity is " + entity.getContentLength() + " bytes, more than the maximum of " + maxBytes + ".");
+		}
+		
+		String      charSet  = getCharset(entity);
+		InputStream instream = entity.getContent();
+		
+		String encoding = getContentEncoding(entity);
+		if("gzip".equals(encoding) || "x-gzip".equals(encoding)){
+			instream = new GZIPInputStream(instream);
+		}
+		else if("deflate".equals(encoding)){
+			instream = new InflaterInputStream(instream);
+		}
+		
+		if(maxBytes != null){
+			instream = new LimitedInputStream(instream, maxBytes);
+		}
+		
+		return new InputStreamReader(instream, charSet);
+	}
+	
+	/**
+	 * <p>
+	 *    Parses the contents of an HTTP entity directly into a JSON object.
+	 * </p>
+	 * 
+	 * <p>
+	 *    The entity is decoded as it is read by a JSONTokener (see
+	 *    parseHttpEntityAsReader()), so the response is never held in
+	 *    memory as a String as well as a JSON object.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to read from and parse
+	 * @return JSON object in the entity, or null if entity is null
+	 * @throws IOException If the entity can't be read
+	 * @throws JSONException If the entity is not a valid JSON object
+	 * @throws IllegalStateException If something went really wrong reading from the server
+	 */
+	public static JSONObject parseHttpEntityToJson(HttpEntity entity) throws IOException, JSONException, IllegalStateException {
+		return parseHttpEntityToJson(entity, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Parses the contents of an HTTP entity directly into a JSON object,
+	 *    failing if the contents are larger than a given size.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to read from and parse
+	 * @param maxBytes Maximum number of bytes to read from the entity (null for no limit)
+	 * @return JSON object in the entity, or null if entity is null
+	 * @throws IOException If the entity can't be read, or is too large
+	 * @throws JSONException If the entity is not a valid JSON object
+	 * @throws IllegalStateException If something went really wrong reading from the server
+	 */
+	public static JSONObject parseHttpEntityToJson(HttpEntity entity, Long maxBytes) throws IOException, JSONException, IllegalStateException {
+		Reader reader = parseHttpEntityAsReader(entity, maxBytes);
+		if(reader == null){
+			return null;
+		}
+		
+		try{
+			return new JSONObject(new JSONTokener(reader));
+		}
+		catch(JSONException jsone){
+			// JSONTokener wraps read errors - report the size limit as an IOException
+			if(jsone.getCause() instanceof IOException){
+				throw (IOException)jsone.getCause();
+			}
+			throw jsone;
+		}
+		finally{
+			reader.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the charset of an HTTP entity from its Content-Type header.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Unlike a simple split on "=", this copes with other parameters
+	 *    before or after the charset, quoted values, odd spacing and
+	 *    charsets that this JVM doesn't support.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to get the charset of
+	 * @return Charset name, or UTF-8 if the entity doesn't give a (supported) charset
+	 */
+	public static String getCharset(HttpEntity entity){
+		if(entity == null){
+			return DEFAULT_CHARSET;
+		}
 		
 		Header header = entity.getContentType();
-		if(header != null){
-			charSet = header.getValue();
-			
-			String charSetUpper = charSet.toUpperCase();
-			int    charSetIdx   = charSetUpper.indexOf("CHARSET");
-			
-			if(charSetIdx < 0){
-				charSet = "UTF-8";
+		if(header == null){
+			return DEFAULT_CHARSET;
+		}
+		
+		try{
+			for(HeaderElement element : header.getElements()){
+				NameValuePair param = element.getParameterByName("charset");
+				if((param == null) || (param.getValue() == null)){
+					continue;
+				}
+				
+				String charSet = param.getValue().trim();
+				if(charSet.startsWith("\"") && charSet.endsWith("\"") && (charSet.length() > 1)){
+					charSet = charSet.substring(1, charSet.length() - 1).trim();
+				}
+				
+				if((charSet.length() > 0) && Charset.isSupported(charSet)){
+					return charSet;
+				}
 			}
-			else{
-				charSet = charSet.substring(charSetIdx + "charset".length());
-				charSet = charSet.split("=")[1].trim();
+		}
+		catch(ParseException pe){
+			// Badly formed header - fall back on the default
+		}
+		catch(IllegalCharsetNameException icne){
+			// Not a legal charset name - fall back on the default
+		}
+		
+		return DEFAULT_CHARSET;
+	}
+	
+	/**
+	 * <p>
+	 *    Gets the Content-Encoding of an HTTP entity, in lower case.
+	 * </p>
+	 * 
+	 * @param entity HTTP entity to get the encoding of
+	 * @return Content encoding, or null if there isn't one
+	 */
+	private static String getContentEncoding(HttpEntity entity){
+		Header header = entity.getContentEncoding();
+		if((header == null) || (header.getValue() == null)){
+			return null;
+		}
+		
+		return header.getValue().trim().toLowerCase();
+	}
+	
+	/**
+	 * <p>
+	 *    An input stream that fails once more than a given number of bytes
+	 *    have been read from it.
+	 * </p>
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private long maxBytes;
+		private long bytesRead;
+		
+		public LimitedInputStream(InputStream in, long maxBytes){
+			super(in);
+			this.maxBytes  = maxBytes;
+			this.bytesRead = 0;
+		}
+		
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0){
+				count(1);
 			}
+			return b;
 		}
 		
-		output = IOUtils.toString(instream, charSet);
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if(n > 0){
+				count(n);
+			}
+			return n;
+		}
 		
-	    return output;
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+		
+		public boolean markSupported(){
+			return false;
+		}
+		
+		private void count(long n) throws IOException {
+			bytesRead += n;
+			if(bytesRead > maxBytes){
+				throw new IOException("[ERR] HTTP entity is more than the maximum of " + maxBytes + " bytes.");
+			}
+		}
 	}
 }
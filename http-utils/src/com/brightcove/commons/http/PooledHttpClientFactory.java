@@ -0,0 +1,217 @@
+package com.brightcove.commons.http;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.brightcove.commons.misc.nvpair.BcHttpParams;
+
+/**
+ * <p>
+ *    An HttpClientFactory that hands out a single, thread safe HttpClient
+ *    backed by a pool of connections.
+ * </p>
+ *
+ * <p>
+ *    DefaultHttpClientFactory creates a new client (with its own connection
+ *    manager) for every call, so every request has to open (and, for
+ *    HTTPS, negotiate) a new connection.  The client returned by this
+ *    factory keeps connections alive between requests and re-uses them,
+ *    up to the configured per-route and total limits.  A background thread
+ *    periodically closes connections that have expired or been idle for
+ *    too long.
+ * </p>
+ *
+ * <p>
+ *    The pool is configured through BcHttpParams, using the integer
+ *    parameters named by the PARAM_* constants on this class.  Any other
+ *    parameters (e.g. CoreConnectionPNames.CONNECTION_TIMEOUT and
+ *    CoreConnectionPNames.SO_TIMEOUT) are passed on to the client as well.
+ * </p>
+ *
+ * <p>
+ *    Typical usage:
+ *    <pre>
+ *    BcHttpParams params = new BcHttpParams();
+ *    params.addIntegerParam(PooledHttpClientFactory.PARAM_MAX_TOTAL_CONNECTIONS, 50);
+ *    params.addIntegerParam(PooledHttpClientFactory.PARAM_MAX_CONNECTIONS_PER_ROUTE, 10);
+ *    params.addIntegerParam(PooledHttpClientFactory.PARAM_CONNECTION_TIMEOUT, 5000);
+ *
+ *    PooledHttpClientFactory factory = new PooledHttpClientFactory(params);
+ *    ...
+ *    factory.shutdown();
+ *    </pre>
+ * </p>
+ *
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ *
+ */
+public class PooledHttpClientFactory implements HttpClientFactory {
+	/** Maximum number of connections in the pool (integer) */
+	public static final String PARAM_MAX_TOTAL_CONNECTIONS     = "http.conn-manager.max-total";
+	/** Maximum number of connections to any one host (integer) */
+	public static final String PARAM_MAX_CONNECTIONS_PER_ROUTE = "bc.conn-manager.max-per-route";
+	/** Milliseconds to keep a connection alive if the server does not say (integer) */
+	public static final String PARAM_KEEP_ALIVE                = "bc.conn-manager.keep-alive";
+	/** Milliseconds a connection may sit idle in the pool before it is closed (integer) */
+	public static final String PARAM_IDLE_TIMEOUT              = "bc.conn-manager.idle-timeout";
+	/** Milliseconds between checks for expired / idle connections (integer) */
+	public static final String PARAM_EVICTION_INTERVAL         = "bc.conn-manager.eviction-interval";
+	/** Milliseconds to wait for a connection to be established (integer) */
+	public static final String PARAM_CONNECTION_TIMEOUT        = CoreConnectionPNames.CONNECTION_TIMEOUT;
+	/** Milliseconds to wait for data on an open connection (integer) */
+	public static final String PARAM_SOCKET_TIMEOUT            = CoreConnectionPNames.SO_TIMEOUT;
+	
+	public static final Integer DEFAULT_MAX_TOTAL_CONNECTIONS     = 20;
+	public static final Integer DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+	public static final Integer DEFAULT_KEEP_ALIVE                = 30000;
+	public static final Integer DEFAULT_IDLE_TIMEOUT              = 30000;
+	public static final Integer DEFAULT_EVICTION_INTERVAL         = 5000;
+	
+	private ThreadSafeClientConnManager connManager;
+	private DefaultHttpClient           httpClient;
+	private ScheduledExecutorService    evictor;
+	
+	/**
+	 * <p>
+	 *    Creates a new factory with the default pool settings.
+	 * </p>
+	 */
+	public PooledHttpClientFactory(){
+		this(new BcHttpParams());
+	}
+	
+	/**
+	 * <p>
+	 *    Creates a new factory configured from a set of parameters.
+	 * </p>
+	 * 
+	 * @param bcParams Pool and client parameters (see the PARAM_* constants)
+	 */
+	public PooledHttpClientFactory(BcHttpParams bcParams){
+		HttpParams params = bcParams.generateHttpParams();
+		
+		Integer maxTotal         = params.getIntParameter(PARAM_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_TOTAL_CONNECTIONS);
+		Integer maxPerRoute      = params.getIntParameter(PARAM_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		Integer keepAlive        = params.getIntParameter(PARAM_KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+		Integer idleTimeout      = params.getIntParameter(PARAM_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+		Integer evictionInterval = params.getIntParameter(PARAM_EVICTION_INTERVAL, DEFAULT_EVICTION_INTERVAL);
+		
+		ConnManagerParams.setMaxTotalConnections(params, maxTotal);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(maxPerRoute));
+		
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+		
+		connManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		httpClient  = new DefaultHttpClient(connManager, params);
+		httpClient.setKeepAliveStrategy(new KeepAliveStrategy(keepAlive));
+		
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "PooledHttpClientFactory-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new IdleConnectionEvictor(connManager, idleTimeout), evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the shared, pooled HTTP client.  The same client is
+	 *    returned on every call, and may be used by several threads at once.
+	 *    Callers should always consume the response entity so that the
+	 *    connection is returned to the pool.
+	 * </p>
+	 * 
+	 * @return Shared HTTP client
+	 */
+	public HttpClient getHttpClient(){
+		return httpClient;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of connections currently in the pool (both in
+	 *    use and idle).
+	 * </p>
+	 * 
+	 * @return Number of connections in the pool
+	 */
+	public Integer getConnectionsInPool(){
+		return connManager.getConnectionsInPool();
+	}
+	
+	/**
+	 * <p>
+	 *    Closes every connection in the pool and stops the eviction thread.
+	 *    The client must not be used after this is called.
+	 * </p>
+	 */
+	public void shutdown(){
+		evictor.shutdownNow();
+		connManager.shutdown();
+	}
+	
+	/**
+	 * <p>
+	 *    Uses the keep-alive time sent by the server, or a default time if
+	 *    the server did not send one.
+	 * </p>
+	 */
+	private static class KeepAliveStrategy extends DefaultConnectionKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		private Integer defaultKeepAlive;
+		
+		public KeepAliveStrategy(Integer defaultKeepAlive){
+			this.defaultKeepAlive = defaultKeepAlive;
+		}
+		
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context){
+			long duration = super.getKeepAliveDuration(response, context);
+			if(duration < 0){
+				return defaultKeepAlive;
+			}
+			return duration;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Closes expired connections, and connections that have been idle for
+	 *    too long.
+	 * </p>
+	 */
+	private static class IdleConnectionEvictor implements Runnable {
+		private ThreadSafeClientConnManager connManager;
+		private Integer                     idleTimeout;
+		
+		public IdleConnectionEvictor(ThreadSafeClientConnManager connManager, Integer idleTimeout){
+			this.connManager = connManager;
+			this.idleTimeout = idleTimeout;
+		}
+		
+		public void run(){
+			connManager.closeExpiredConnections();
+			connManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+		}
+	}
+}
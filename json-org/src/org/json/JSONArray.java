@@ -350,16 +350,43 @@ public class JSONArray {
      * @throws JSONException If the array contains an invalid number.
      */
     public String join(String separator) throws JSONException {
+        StringBuilder sb = new StringBuilder(estimateLength());
+        try {
+            join(separator, sb);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Append the contents of this JSONArray, with the
+     * <code>separator</code> string inserted between each element.
+     * @param separator A string that will be inserted between the elements.
+     * @param out Where to append the text.
+     * @throws JSONException If the array contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    void join(String separator, Appendable out)
+            throws JSONException, IOException {
         int len = length();
-        StringBuffer sb = new StringBuffer();
 
         for (int i = 0; i < len; i += 1) {
             if (i > 0) {
-                sb.append(separator);
+                out.append(separator);
             }
-            sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+            JSONObject.writeValue(this.myArrayList.get(i), out);
         }
-        return sb.toString();
+    }
+
+
+    /**
+     * A first guess at the length of this JSONArray's JSON text, used to
+     * size the StringBuilder it is written to.
+     */
+    int estimateLength() {
+        return 16 + this.myArrayList.size() * 16;
     }
 
 
@@ -607,7 +634,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(int value) {
-        put(new Integer(value));
+        put(Integer.valueOf(value));
         return this;
     }
 
@@ -619,7 +646,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(long value) {
-        put(new Long(value));
+        put(Long.valueOf(value));
         return this;
     }
 
@@ -708,7 +735,7 @@ public class JSONArray {
      * @throws JSONException If the index is negative.
      */
     public JSONArray put(int index, int value) throws JSONException {
-        put(index, new Integer(value));
+        put(index, Integer.valueOf(value));
         return this;
     }
 
@@ -723,7 +750,7 @@ public class JSONArray {
      * @throws JSONException If the index is negative.
      */
     public JSONArray put(int index, long value) throws JSONException {
-        put(index, new Long(value));
+        put(index, Long.valueOf(value));
         return this;
     }
 
@@ -821,7 +848,9 @@ public class JSONArray {
      */
     public String toString() {
         try {
-            return '[' + join(",") + ']';
+            StringBuilder sb = new StringBuilder(estimateLength());
+            write(sb);
+            return sb.toString();
         } catch (Exception e) {
             return null;
         }
@@ -855,34 +884,12 @@ public class JSONArray {
      * @throws JSONException
      */
     String toString(int indentFactor, int indent) throws JSONException {
-        int len = length();
-        if (len == 0) {
-            return "[]";
-        }
-        int i;
-        StringBuffer sb = new StringBuffer("[");
-        if (len == 1) {
-            sb.append(JSONObject.valueToString(this.myArrayList.get(0),
-                    indentFactor, indent));
-        } else {
-            int newindent = indent + indentFactor;
-            sb.append('\n');
-            for (i = 0; i < len; i += 1) {
-                if (i > 0) {
-                    sb.append(",\n");
-                }
-                for (int j = 0; j < newindent; j += 1) {
-                    sb.append(' ');
-                }
-                sb.append(JSONObject.valueToString(this.myArrayList.get(i),
-                        indentFactor, newindent));
-            }
-            sb.append('\n');
-            for (i = 0; i < indent; i += 1) {
-                sb.append(' ');
-            }
+        StringBuilder sb = new StringBuilder(estimateLength() * 2);
+        try {
+            write(sb, indentFactor, indent);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
         }
-        sb.append(']');
         return sb.toString();
     }
 
@@ -898,29 +905,66 @@ public class JSONArray {
      */
     public Writer write(Writer writer) throws JSONException {
         try {
-            boolean b = false;
-            int     len = length();
+            write((Appendable) writer);
+            return writer;
+        } catch (IOException e) {
+           throw new JSONException(e);
+        }
+    }
 
-            writer.write('[');
 
+    /**
+     * Append the contents of the JSONArray as JSON text. For compactness,
+     * no whitespace is added. toString() and write(Writer) both come here.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param out Where to append the text.
+     * @throws JSONException If the array contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    void write(Appendable out) throws JSONException, IOException {
+        out.append('[');
+        join(",", out);
+        out.append(']');
+    }
+
+
+    /**
+     * Append the prettyprinted JSON text of this JSONArray.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param out Where to append the text.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param indent The indention of the top level.
+     * @throws JSONException If the array contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    void write(Appendable out, int indentFactor, int indent)
+            throws JSONException, IOException {
+        int len = length();
+        if (len == 0) {
+            out.append("[]");
+            return;
+        }
+        out.append('[');
+        if (len == 1) {
+            JSONObject.writeValue(this.myArrayList.get(0), out,
+                    indentFactor, indent);
+        } else {
+            int newindent = indent + indentFactor;
+            out.append('\n');
             for (int i = 0; i < len; i += 1) {
-                if (b) {
-                    writer.write(',');
-                }
-                Object v = this.myArrayList.get(i);
-                if (v instanceof JSONObject) {
-                    ((JSONObject)v).write(writer);
-                } else if (v instanceof JSONArray) {
-                    ((JSONArray)v).write(writer);
-                } else {
-                    writer.write(JSONObject.valueToString(v));
+                if (i > 0) {
+                    out.append(",\n");
                 }
-                b = true;
+                JSONObject.indent(out, newindent);
+                JSONObject.writeValue(this.myArrayList.get(i), out,
+                        indentFactor, newindent);
             }
-            writer.write(']');
-            return writer;
-        } catch (IOException e) {
-           throw new JSONException(e);
+            out.append('\n');
+            JSONObject.indent(out, indent);
         }
+        out.append(']');
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,353 @@
+package org.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * A JSONBinaryReader reads values written by a JSONBinaryWriter, producing
+ * the same JSONObjects, JSONArrays and values that parsing the equivalent
+ * JSON text would: integers come back as Integer (or Long if they do not
+ * fit), other numbers as Double (or, for numbers written as text, whatever
+ * JSONObject.stringToValue makes of them), and null as JSONObject.NULL.
+ * <p>
+ * Nothing is tokenized and numbers are not converted from text, so reading
+ * is considerably faster than parsing JSON text. Each key is decoded once
+ * and then shared by every object it appears in.
+ * <p>
+ * A JSONBinaryReader is not thread safe.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONBinaryReader {
+
+    private byte[]            bytes;
+    private int               pos;
+    private int               limit;
+    private int               start;
+    private char[]            chars;
+    private ArrayList<String> keys;
+    private boolean           compactObjects;
+
+
+    /**
+     * Construct a JSONBinaryReader over a byte array.
+     * @param bytes The output of a JSONBinaryWriter.
+     * @throws JSONException If the bytes do not start with the header
+     *  written by JSONBinaryWriter.
+     */
+    public JSONBinaryReader(byte[] bytes) throws JSONException {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a JSONBinaryReader over part of a byte array. The array is
+     * not copied, so it must not be changed while reading.
+     * @param bytes  A byte array.
+     * @param offset The offset of the output of a JSONBinaryWriter.
+     * @param length The length of the output.
+     * @throws JSONException If the bytes do not start with the header
+     *  written by JSONBinaryWriter.
+     */
+    public JSONBinaryReader(byte[] bytes, int offset, int length)
+            throws JSONException {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.start = offset;
+        this.chars = new char[64];
+        this.keys = new ArrayList<String>();
+        this.compactObjects = false;
+        byte[] magic = JSONBinaryWriter.MAGIC;
+        if (length < magic.length || bytes[offset] != magic[0] ||
+                bytes[offset + 1] != magic[1]) {
+            throw new JSONException("Not binary JSON");
+        }
+        if (bytes[offset + 2] != magic[2]) {
+            throw new JSONException("Unsupported binary JSON version " +
+                    bytes[offset + 2]);
+        }
+        this.pos += magic.length;
+    }
+
+
+    /**
+     * Construct a JSONBinaryReader over everything that can be read from a
+     * stream. The stream is read to the end, but not closed.
+     * @param inputStream The output of a JSONBinaryWriter.
+     * @throws JSONException If the stream can not be read, or does not
+     *  start with the header written by JSONBinaryWriter.
+     */
+    public JSONBinaryReader(InputStream inputStream) throws JSONException {
+        this(readFully(inputStream));
+    }
+
+
+    private static byte[] readFully(InputStream inputStream)
+            throws JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] block = new byte[8192];
+        try {
+            int n = inputStream.read(block);
+            while (n >= 0) {
+                out.write(block, 0, n);
+                n = inputStream.read(block);
+            }
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Decode a value written by JSONBinaryWriter.encode.
+     * @param bytes The encoded bytes.
+     * @return The value.
+     * @throws JSONException If the bytes are not valid binary JSON.
+     */
+    public static Object decode(byte[] bytes) throws JSONException {
+        return new JSONBinaryReader(bytes).nextValue();
+    }
+
+
+    /**
+     * Determine whether JSONObjects read by this reader are backed by a
+     * compact, insertion-ordered map rather than a HashMap.
+     * @return true if compact objects are used.
+     */
+    public boolean isCompactObjects() {
+        return this.compactObjects;
+    }
+
+
+    /**
+     * Set whether JSONObjects read by this reader are backed by a compact,
+     * insertion-ordered map rather than a HashMap.
+     * @param compactObjects true to use compact objects.
+     */
+    public void setCompactObjects(boolean compactObjects) {
+        this.compactObjects = compactObjects;
+    }
+
+
+    /**
+     * Determine if there is another value to read.
+     * @return true if there are more bytes.
+     */
+    public boolean more() {
+        return this.pos < this.limit;
+    }
+
+
+    /**
+     * Read the next value, which must be a JSONObject.
+     * @return A JSONObject.
+     * @throws JSONException If the next value is not a JSONObject, or the
+     *  bytes are not valid binary JSON.
+     */
+    public JSONObject nextObject() throws JSONException {
+        if (readTag() != JSONBinaryWriter.OBJECT) {
+            throw error("Expected a JSONObject", this.pos - 1);
+        }
+        return readObject();
+    }
+
+
+    /**
+     * Read the next value, which must be a JSONArray.
+     * @return A JSONArray.
+     * @throws JSONException If the next value is not a JSONArray, or the
+     *  bytes are not valid binary JSON.
+     */
+    public JSONArray nextArray() throws JSONException {
+        if (readTag() != JSONBinaryWriter.ARRAY) {
+            throw error("Expected a JSONArray", this.pos - 1);
+        }
+        return readArray();
+    }
+
+
+    /**
+     * Read the next value. The value can be a Boolean, Double, Integer,
+     * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object
+     * (or, for a number written as text, a BigDecimal or the like).
+     * @return An object.
+     * @throws JSONException If the bytes are not valid binary JSON.
+     */
+    public Object nextValue() throws JSONException {
+        return readValue(readTag());
+    }
+
+
+    /**
+     * Make a printable string of this JSONBinaryReader.
+     * @return " at {byte offset}"
+     */
+    public String toString() {
+        return " at " + (this.pos - this.start);
+    }
+
+
+    private Object readValue(int tag) throws JSONException {
+        switch (tag) {
+        case JSONBinaryWriter.NULL:
+            return JSONObject.NULL;
+        case JSONBinaryWriter.FALSE:
+            return Boolean.FALSE;
+        case JSONBinaryWriter.TRUE:
+            return Boolean.TRUE;
+        case JSONBinaryWriter.INTEGER:
+            long zigzag = readVarlong();
+            long l = (zigzag >>> 1) ^ -(zigzag & 1);
+            if (l == (int) l) {
+                return Integer.valueOf((int) l);
+            }
+            return Long.valueOf(l);
+        case JSONBinaryWriter.DOUBLE:
+            need(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i += 1) {
+                bits = (bits << 8) | (this.bytes[this.pos] & 0xFF);
+                this.pos += 1;
+            }
+            return Double.valueOf(Double.longBitsToDouble(bits));
+        case JSONBinaryWriter.STRING:
+            return readString();
+        case JSONBinaryWriter.NUMBER:
+            return JSONObject.stringToValue(readString());
+        case JSONBinaryWriter.OBJECT:
+            return readObject();
+        case JSONBinaryWriter.ARRAY:
+            return readArray();
+        }
+        throw error("Unexpected tag " + tag, this.pos - 1);
+    }
+
+
+    private JSONObject readObject() throws JSONException {
+        JSONObject jo = new JSONObject(this.compactObjects);
+        for (;;) {
+            int tag = readTag();
+            String key;
+            switch (tag) {
+            case JSONBinaryWriter.END:
+                jo.trimToSize();
+                return jo;
+            case JSONBinaryWriter.KEY:
+                key = readString();
+                this.keys.add(key);
+                break;
+            case JSONBinaryWriter.KEY_REF:
+                int index = (int) readVarlong();
+                if (index < 0 || index >= this.keys.size()) {
+                    throw error("Bad key reference " + index, this.pos - 1);
+                }
+                key = this.keys.get(index);
+                break;
+            case JSONBinaryWriter.KEY_INLINE:
+                key = readString();
+                break;
+            default:
+                throw error("Expected a key", this.pos - 1);
+            }
+            jo.put(key, nextValue());
+        }
+    }
+
+
+    private JSONArray readArray() throws JSONException {
+        JSONArray ja = new JSONArray();
+        for (;;) {
+            int tag = readTag();
+            if (tag == JSONBinaryWriter.END) {
+                return ja;
+            }
+            ja.put(readValue(tag));
+        }
+    }
+
+
+    private int readTag() throws JSONException {
+        need(1);
+        int tag = this.bytes[this.pos] & 0xFF;
+        this.pos += 1;
+        return tag;
+    }
+
+
+    private long readVarlong() throws JSONException {
+        long l = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            need(1);
+            int b = this.bytes[this.pos];
+            this.pos += 1;
+            l |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return l;
+            }
+        }
+        throw error("Bad varint", this.pos);
+    }
+
+
+    /**
+     * Read a string written by JSONBinaryWriter: a varint length followed
+     * by UTF-8 (or CESU-8) bytes.
+     */
+    private String readString() throws JSONException {
+        long length = readVarlong();
+        if (length > this.limit - this.pos) {
+            throw error("Unexpected end of binary JSON", this.pos);
+        }
+        int end = this.pos + (int) length;
+        if (this.chars.length < length) {
+            this.chars = new char[(int) length];
+        }
+        char[] c = this.chars;
+        byte[] b = this.bytes;
+        int n = 0;
+        int i = this.pos;
+        while (i < end) {
+            int b0 = b[i];
+            if (b0 >= 0) {
+                c[n] = (char) b0;
+                i += 1;
+            } else if ((b0 & 0xE0) == 0xC0 && i + 1 < end) {
+                c[n] = (char) (((b0 & 0x1F) << 6) | (b[i + 1] & 0x3F));
+                i += 2;
+            } else if ((b0 & 0xF0) == 0xE0 && i + 2 < end) {
+                c[n] = (char) (((b0 & 0x0F) << 12) |
+                        ((b[i + 1] & 0x3F) << 6) | (b[i + 2] & 0x3F));
+                i += 3;
+            } else if ((b0 & 0xF8) == 0xF0 && i + 3 < end) {
+                int code = ((b0 & 0x07) << 18) | ((b[i + 1] & 0x3F) << 12) |
+                        ((b[i + 2] & 0x3F) << 6) | (b[i + 3] & 0x3F);
+                code -= 0x10000;
+                c[n] = (char) (0xD800 | (code >> 10));
+                n += 1;
+                c[n] = (char) (0xDC00 | (code & 0x3FF));
+                i += 4;
+            } else {
+                c[n] = '\uFFFD';
+                i += 1;
+            }
+            n += 1;
+        }
+        this.pos = end;
+        return new String(c, 0, n);
+    }
+
+
+    private void need(int n) throws JSONException {
+        if (this.limit - this.pos < n) {
+            throw error("Unexpected end of binary JSON", this.pos);
+        }
+    }
+
+
+    private JSONException error(String message, int at) {
+        return new JSONException(message + " at " + (at - this.start));
+    }
+}
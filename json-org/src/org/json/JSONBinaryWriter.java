@@ -0,0 +1,495 @@
+package org.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A JSONBinaryWriter writes JSON values in a compact binary form, which can
+ * be read back with a JSONBinaryReader. It is meant for caches and other
+ * intermediate storage, where JSON text is larger and slower to parse than
+ * it needs to be.
+ * <p>
+ * It has the same methods as JSONWriter (<code>object</code>,
+ * <code>key</code>, <code>value</code>, <code>endObject</code> and so on),
+ * so a stream of values can be written without building a JSONObject, and
+ * <code>value</code> also accepts whole JSONObjects and JSONArrays. For
+ * example, <pre>
+ * byte[] bytes = JSONBinaryWriter.encode(jsonObject);
+ * JSONObject copy = new JSONBinaryReader(bytes).nextObject();</pre>
+ * <p>
+ * The output starts with the three bytes 'J', 'B', 1 (the format version).
+ * Each value then starts with a one byte tag:
+ * <ul>
+ * <li>null, false and true are the tag alone.</li>
+ * <li>Integers are a zigzag varint (so small numbers, positive or negative,
+ *     take one or two bytes). Doubles are 8 bytes, big-endian. Other
+ *     numbers (such as BigDecimal) are written as their JSON text.</li>
+ * <li>Strings are a varint length followed by UTF-8 bytes (a surrogate
+ *     pair is written as two 3 byte sequences, as in CESU-8).</li>
+ * <li>Objects and arrays are their members followed by an end tag, so
+ *     their size need not be known in advance.</li>
+ * <li>The first time a key is written it is added to a dictionary. Each
+ *     later use of the key is written as a varint index into the
+ *     dictionary. Very long keys, and keys after the first 65536, are
+ *     written in full each time.</li>
+ * </ul>
+ * <p>
+ * Duplicate keys are not checked for. As with JSONWriter, output is
+ * collected in a buffer and passed on to the stream when the outermost value
+ * is finished, when the buffer fills, and on <code>flush</code>. A
+ * JSONBinaryWriter is not thread safe.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONBinaryWriter {
+
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INTEGER = 3;
+    static final int DOUBLE = 4;
+    static final int STRING = 5;
+    static final int NUMBER = 6;
+    static final int OBJECT = 7;
+    static final int ARRAY = 8;
+    static final int END = 9;
+    static final int KEY = 10;
+    static final int KEY_REF = 11;
+    static final int KEY_INLINE = 12;
+
+    static final byte[] MAGIC = { 'J', 'B', 1 };
+
+    static final int MAX_KEYS = 65536;
+    static final int MAX_KEY_LENGTH = 64;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The current mode: 'a' (array), 'd' (done), 'i' (initial), 'k' (key),
+     * or 'o' (object value), as in JSONWriter.
+     */
+    private char mode;
+
+    /**
+     * The object/array stack: 'a' for an array, 'k' for an object.
+     */
+    private char[] stack;
+    private int    top;
+
+    /**
+     * The index of each key in the dictionary.
+     */
+    private HashMap<String, Integer> keys;
+
+    private byte[]       buffer;
+    private int          length;
+    private OutputStream outputStream;
+
+
+    /**
+     * Make a fresh JSONBinaryWriter. It can be used to write one value
+     * (usually an object or array).
+     * @param outputStream The stream that will receive the output.
+     */
+    public JSONBinaryWriter(OutputStream outputStream) {
+        this.mode = 'i';
+        this.stack = new char[20];
+        this.top = 0;
+        this.keys = new HashMap<String, Integer>();
+        this.buffer = new byte[BUFFER_SIZE];
+        this.outputStream = outputStream;
+        System.arraycopy(MAGIC, 0, this.buffer, 0, MAGIC.length);
+        this.length = MAGIC.length;
+    }
+
+
+    /**
+     * Encode a value: a JSONObject, JSONArray, or any other value that
+     * JSONWriter.value accepts.
+     * @param value The value.
+     * @return The encoded bytes.
+     * @throws JSONException If the value contains an invalid number.
+     */
+    public static byte[] encode(Object value) throws JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JSONBinaryWriter(out).value(value).flush();
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Begin writing an array. All values until the balancing
+     * <code>endArray</code> are members of the array.
+     * @return this
+     * @throws JSONException If the array is started in the wrong place.
+     */
+    public JSONBinaryWriter array() throws JSONException {
+        if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
+            writeByte(ARRAY);
+            push('a');
+            return this;
+        }
+        throw new JSONException("Misplaced array.");
+    }
+
+
+    /**
+     * End an array.
+     * @return this
+     * @throws JSONException If incorrectly nested.
+     */
+    public JSONBinaryWriter endArray() throws JSONException {
+        return end('a', "Misplaced endArray.");
+    }
+
+
+    /**
+     * Begin writing an object. All keys and values until the balancing
+     * <code>endObject</code> are members of the object.
+     * @return this
+     * @throws JSONException If the object is started in the wrong place.
+     */
+    public JSONBinaryWriter object() throws JSONException {
+        if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
+            writeByte(OBJECT);
+            push('k');
+            return this;
+        }
+        throw new JSONException("Misplaced object.");
+    }
+
+
+    /**
+     * End an object.
+     * @return this
+     * @throws JSONException If incorrectly nested.
+     */
+    public JSONBinaryWriter endObject() throws JSONException {
+        return end('k', "Misplaced endObject.");
+    }
+
+
+    /**
+     * Write a key. In an object, every value must be preceded by a key.
+     * @param string A key string.
+     * @return this
+     * @throws JSONException If the key is null or out of place.
+     */
+    public JSONBinaryWriter key(String string) throws JSONException {
+        if (string == null) {
+            throw new JSONException("Null key.");
+        }
+        if (this.mode != 'k') {
+            throw new JSONException("Misplaced key.");
+        }
+        Integer index = this.keys.get(string);
+        if (index != null) {
+            writeByte(KEY_REF);
+            writeVarint(index.intValue());
+        } else if (string.length() <= MAX_KEY_LENGTH &&
+                this.keys.size() < MAX_KEYS) {
+            this.keys.put(string, Integer.valueOf(this.keys.size()));
+            writeByte(KEY);
+            writeString(string);
+        } else {
+            writeByte(KEY_INLINE);
+            writeString(string);
+        }
+        this.mode = 'o';
+        return this;
+    }
+
+
+    /**
+     * Write a boolean value.
+     * @param b A boolean.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public JSONBinaryWriter value(boolean b) throws JSONException {
+        beginValue();
+        writeByte(b ? TRUE : FALSE);
+        return endValue();
+    }
+
+
+    /**
+     * Write a long value.
+     * @param l A long.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public JSONBinaryWriter value(long l) throws JSONException {
+        beginValue();
+        writeByte(INTEGER);
+        writeVarlong((l << 1) ^ (l >> 63));
+        return endValue();
+    }
+
+
+    /**
+     * Write a double value.
+     * @param d A double.
+     * @return this
+     * @throws JSONException If the number is not finite, or the value is
+     *  out of sequence.
+     */
+    public JSONBinaryWriter value(double d) throws JSONException {
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException(
+                    "JSON does not allow non-finite numbers.");
+        }
+        beginValue();
+        writeByte(DOUBLE);
+        long bits = Double.doubleToLongBits(d);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.buffer[this.length] = (byte) (bits >>> shift);
+            this.length += 1;
+        }
+        return endValue();
+    }
+
+
+    /**
+     * Write an object value.
+     * @param object The object to write. It can be null, or a Boolean,
+     *  Number, String, JSONObject, JSONArray, Map, Collection or array, or an
+     *  object that implements JSONString. Anything else is written as the
+     *  string from its toString method.
+     * @return this
+     * @throws JSONException If the value is or contains an invalid number,
+     *  or the value is out of sequence.
+     */
+    @SuppressWarnings("rawtypes")
+    public JSONBinaryWriter value(Object object) throws JSONException {
+        if (object == null || JSONObject.NULL.equals(object)) {
+            beginValue();
+            writeByte(NULL);
+            return endValue();
+        }
+        if (object instanceof String) {
+            beginValue();
+            writeByte(STRING);
+            writeString((String) object);
+            return endValue();
+        }
+        if (object instanceof Integer || object instanceof Long ||
+                object instanceof Short || object instanceof Byte) {
+            return value(((Number) object).longValue());
+        }
+        if (object instanceof Double) {
+            return value(((Double) object).doubleValue());
+        }
+        if (object instanceof Number) {
+            String string = JSONObject.numberToString((Number) object);
+            beginValue();
+            writeByte(NUMBER);
+            writeString(string);
+            return endValue();
+        }
+        if (object instanceof Boolean) {
+            return value(((Boolean) object).booleanValue());
+        }
+        if (object instanceof JSONObject) {
+            JSONObject jo = (JSONObject) object;
+            object();
+            Iterator keys = jo.keys();
+            while (keys.hasNext()) {
+                String key = keys.next().toString();
+                key(key);
+                value(jo.opt(key));
+            }
+            return endObject();
+        }
+        if (object instanceof JSONArray) {
+            JSONArray ja = (JSONArray) object;
+            array();
+            int len = ja.length();
+            for (int i = 0; i < len; i += 1) {
+                value(ja.opt(i));
+            }
+            return endArray();
+        }
+        if (object instanceof JSONString) {
+            String string;
+            try {
+                string = ((JSONString) object).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            if (string == null) {
+                throw new JSONException("Bad value from toJSONString: " +
+                        string);
+            }
+            return value(new JSONTokener(string).nextValue());
+        }
+        if (object instanceof Map || object instanceof Collection ||
+                object.getClass().isArray()) {
+            return value(JSONObject.wrap(object));
+        }
+        return value(object.toString());
+    }
+
+
+    /**
+     * Pass everything written so far on to the stream, and flush the
+     * stream.
+     * @return this
+     * @throws JSONException If the stream throws an IOException.
+     */
+    public JSONBinaryWriter flush() throws JSONException {
+        flushBuffer();
+        try {
+            this.outputStream.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+
+    private void beginValue() throws JSONException {
+        if (this.mode != 'i' && this.mode != 'o' && this.mode != 'a') {
+            throw new JSONException("Value out of sequence.");
+        }
+    }
+
+
+    private JSONBinaryWriter endValue() throws JSONException {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        } else if (this.mode == 'i') {
+            this.mode = 'd';
+            flushBuffer();
+        }
+        return this;
+    }
+
+
+    private JSONBinaryWriter end(char c, String message)
+            throws JSONException {
+        if (this.mode != c) {
+            throw new JSONException(message);
+        }
+        this.top -= 1;
+        writeByte(END);
+        if (this.top == 0) {
+            this.mode = 'i';
+        } else {
+            this.mode = this.stack[this.top - 1] == 'k' ? 'o' : 'a';
+        }
+        return endValue();
+    }
+
+
+    private void push(char c) {
+        if (this.top == this.stack.length) {
+            char[] newStack = new char[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.top);
+            this.stack = newStack;
+        }
+        this.stack[this.top] = c;
+        this.top += 1;
+        this.mode = c;
+    }
+
+
+    private void writeByte(int b) throws JSONException {
+        ensureCapacity(1);
+        this.buffer[this.length] = (byte) b;
+        this.length += 1;
+    }
+
+
+    private void writeVarint(int i) throws JSONException {
+        writeVarlong(i & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * Write an unsigned varint: 7 bits per byte, low bits first, with the
+     * high bit set on every byte but the last.
+     */
+    private void writeVarlong(long l) throws JSONException {
+        ensureCapacity(10);
+        while ((l & ~0x7FL) != 0) {
+            this.buffer[this.length] = (byte) ((l & 0x7F) | 0x80);
+            this.length += 1;
+            l >>>= 7;
+        }
+        this.buffer[this.length] = (byte) l;
+        this.length += 1;
+    }
+
+
+    /**
+     * Write the UTF-8 length and bytes of a string.
+     */
+    private void writeString(String string) throws JSONException {
+        int len = string.length();
+        int utf8Length = len;
+        for (int i = 0; i < len; i += 1) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                utf8Length += c < 0x800 ? 1 : 2;
+            }
+        }
+        writeVarint(utf8Length);
+        ensureCapacity(utf8Length);
+        byte[] b = this.buffer;
+        int n = this.length;
+        for (int i = 0; i < len; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                b[n] = (byte) c;
+                n += 1;
+            } else if (c < 0x800) {
+                b[n] = (byte) (0xC0 | (c >> 6));
+                b[n + 1] = (byte) (0x80 | (c & 0x3F));
+                n += 2;
+            } else {
+
+// Surrogate pairs are written as two 3 byte sequences, so that every char
+// takes a fixed number of bytes. JSONBinaryReader decodes them back to the
+// same pair.
+
+                b[n] = (byte) (0xE0 | (c >> 12));
+                b[n + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[n + 2] = (byte) (0x80 | (c & 0x3F));
+                n += 3;
+            }
+        }
+        this.length = n;
+    }
+
+
+    /**
+     * Make room for n more bytes in the buffer, passing the buffer on to
+     * the stream (and, for a very long string, growing it) if needed.
+     */
+    private void ensureCapacity(int n) throws JSONException {
+        if (this.length + n > this.buffer.length) {
+            flushBuffer();
+            if (n > this.buffer.length) {
+                this.buffer = new byte[n];
+            }
+        }
+    }
+
+
+    private void flushBuffer() throws JSONException {
+        if (this.length > 0) {
+            try {
+                this.outputStream.write(this.buffer, 0, this.length);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            this.length = 0;
+        }
+    }
+}
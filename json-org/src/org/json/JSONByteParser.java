@@ -0,0 +1,640 @@
+package org.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A JSONByteParser parses JSON text directly from UTF-8 encoded bytes.
+ * <p>
+ * JSONTokener(InputStream) decodes every byte of its input to a char before
+ * looking at it. This parser works on the bytes themselves: structural
+ * characters, whitespace, numbers, true, false and null are all recognised
+ * as bytes, and only the contents of strings are decoded. Integers (and
+ * most decimals) are converted straight from the bytes, without building a
+ * String for JSONObject.stringToValue.
+ * <p>
+ * The same (lenient) syntax as JSONTokener is accepted, and the values
+ * produced are the same as those JSONObject(JSONTokener) and
+ * JSONArray(JSONTokener) would produce for the same text. Errors report the
+ * byte offset at which they were found.
+ * <p>
+ * A JSONByteParser is not thread safe.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONByteParser {
+
+    private byte[] bytes;
+    private int    pos;
+    private int    limit;
+    private int    start;
+    private char[] chars;
+    private boolean compactObjects;
+    private JSONKeyCache keyCache;
+
+
+    /**
+     * Construct a JSONByteParser over a UTF-8 byte array.
+     * @param bytes The UTF-8 encoded JSON text.
+     */
+    public JSONByteParser(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a JSONByteParser over part of a UTF-8 byte array. The array
+     * is not copied, so it must not be changed while parsing.
+     * @param bytes  A byte array.
+     * @param offset The offset of the UTF-8 encoded JSON text in the array.
+     * @param length The length in bytes of the JSON text.
+     */
+    public JSONByteParser(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.start = offset;
+        this.chars = new char[64];
+        this.compactObjects = false;
+        this.keyCache = null;
+
+        // Skip a UTF-8 byte order mark
+        if (length >= 3 && (bytes[offset] & 0xFF) == 0xEF &&
+                (bytes[offset + 1] & 0xFF) == 0xBB &&
+                (bytes[offset + 2] & 0xFF) == 0xBF) {
+            this.pos += 3;
+        }
+    }
+
+
+    /**
+     * Construct a JSONByteParser over the remaining bytes of a buffer. If
+     * the buffer is backed by an array it is parsed in place, otherwise the
+     * bytes are copied out. The buffer's position is not changed.
+     * @param buffer A buffer holding UTF-8 encoded JSON text.
+     */
+    public JSONByteParser(ByteBuffer buffer) {
+        this(arrayOf(buffer), offsetOf(buffer), buffer.remaining());
+    }
+
+
+    /**
+     * Construct a JSONByteParser over everything that can be read from a
+     * stream. The stream is read to the end, but not closed.
+     * @param inputStream A stream of UTF-8 encoded JSON text.
+     * @throws JSONException If the stream can not be read.
+     */
+    public JSONByteParser(InputStream inputStream) throws JSONException {
+        this(readFully(inputStream));
+    }
+
+
+    private static byte[] arrayOf(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+
+
+    private static int offsetOf(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.arrayOffset() + buffer.position();
+        }
+        return 0;
+    }
+
+
+    private static byte[] readFully(InputStream inputStream) throws JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] block = new byte[8192];
+        try {
+            int n = inputStream.read(block);
+            while (n >= 0) {
+                out.write(block, 0, n);
+                n = inputStream.read(block);
+            }
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Determine whether JSONObjects parsed by this parser are backed by a
+     * compact, insertion-ordered map rather than a HashMap.
+     * @return true if compact objects are used.
+     */
+    public boolean isCompactObjects() {
+        return this.compactObjects;
+    }
+
+
+    /**
+     * Set whether JSONObjects parsed by this parser are backed by a compact,
+     * insertion-ordered map rather than a HashMap (see
+     * JSONTokener.setCompactObjects).
+     * @param compactObjects true to use compact objects.
+     */
+    public void setCompactObjects(boolean compactObjects) {
+        this.compactObjects = compactObjects;
+    }
+
+
+    /**
+     * Get the cache used for the keys of JSONObjects parsed by this parser.
+     * @return The key cache, or null if keys are not cached.
+     */
+    public JSONKeyCache getKeyCache() {
+        return this.keyCache;
+    }
+
+
+    /**
+     * Set a cache to use for the keys of JSONObjects parsed by this parser,
+     * so that repeated keys share one String instance.
+     * @param keyCache A key cache, or null to not cache keys.
+     */
+    public void setKeyCache(JSONKeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+
+    /**
+     * Determine if there is anything other than whitespace left to parse.
+     * @return true if there is more JSON text.
+     */
+    public boolean more() {
+        return nextClean() != 0;
+    }
+
+
+    /**
+     * Parse the next value, which must be a JSONObject.
+     * @return A JSONObject.
+     * @throws JSONException If there is a syntax error or a duplicated key.
+     */
+    public JSONObject nextObject() throws JSONException {
+        if (nextClean() != '{') {
+            throw syntaxError("A JSONObject text must begin with '{'");
+        }
+        this.pos += 1;
+        return parseObject();
+    }
+
+
+    /**
+     * Parse the next value, which must be a JSONArray.
+     * @return A JSONArray.
+     * @throws JSONException If there is a syntax error.
+     */
+    public JSONArray nextArray() throws JSONException {
+        if (nextClean() != '[') {
+            throw syntaxError("A JSONArray text must start with '['");
+        }
+        this.pos += 1;
+        return parseArray();
+    }
+
+
+    /**
+     * Parse the next value. The value can be a Boolean, Double, Integer,
+     * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
+     * @return An object.
+     * @throws JSONException If there is a syntax error.
+     */
+    public Object nextValue() throws JSONException {
+        int c = nextClean();
+        switch (c) {
+        case '"':
+        case '\'':
+            this.pos += 1;
+            return parseString((byte) c);
+        case '{':
+            this.pos += 1;
+            return parseObject();
+        case '[':
+            this.pos += 1;
+            return parseArray();
+        }
+        return parseUnquoted();
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     * @param message The error message.
+     * @return A JSONException object, suitable for throwing.
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + toString());
+    }
+
+
+    /**
+     * Make a printable string of this JSONByteParser.
+     * @return " at {byte offset}"
+     */
+    public String toString() {
+        return " at " + (this.pos - this.start);
+    }
+
+
+    /**
+     * Skip whitespace, and return (without consuming) the next byte.
+     * @return The next byte, or 0 at the end of the input.
+     */
+    private int nextClean() {
+        while (this.pos < this.limit) {
+            int b = this.bytes[this.pos] & 0xFF;
+            if (b > ' ') {
+                return b;
+            }
+            if (b == 0) {
+                return 0;
+            }
+            this.pos += 1;
+        }
+        return 0;
+    }
+
+
+    private JSONObject parseObject() throws JSONException {
+        JSONObject jo = new JSONObject(this.compactObjects);
+        parseMembers(jo);
+        jo.trimToSize();
+        return jo;
+    }
+
+
+    private void parseMembers(JSONObject jo) throws JSONException {
+        for (;;) {
+            int c = nextClean();
+            switch (c) {
+            case 0:
+                throw syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                this.pos += 1;
+                return;
+            }
+            String key = nextKey();
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = nextClean();
+            if (c == '=') {
+                this.pos += 1;
+                if (this.pos < this.limit && this.bytes[this.pos] == '>') {
+                    this.pos += 1;
+                }
+            } else if (c == ':') {
+                this.pos += 1;
+            } else {
+                throw syntaxError("Expected a ':' after a key");
+            }
+            jo.putOnce(key, nextValue());
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+            switch (nextClean()) {
+            case ';':
+            case ',':
+                this.pos += 1;
+                if (nextClean() == '}') {
+                    this.pos += 1;
+                    return;
+                }
+                break;
+            case '}':
+                this.pos += 1;
+                return;
+            default:
+                throw syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+
+    /**
+     * Parse the next key of a JSONObject. With a key cache, plain ASCII
+     * quoted keys are looked up straight from the bytes.
+     * @return A key.
+     * @throws JSONException If there is a syntax error.
+     */
+    private String nextKey() throws JSONException {
+        if (this.keyCache == null) {
+            return nextValue().toString();
+        }
+        int c = nextClean();
+        if (c != '"' && c != '\'') {
+            return nextValue().toString();
+        }
+        byte[] b = this.bytes;
+        int first = this.pos + 1;
+        int p = first;
+        while (p < this.limit) {
+            byte d = b[p];
+            if (d == c) {
+                this.pos = p + 1;
+                return this.keyCache.intern(b, first, p - first);
+            }
+            if (d < ' ' || d == '\\') {
+                break;
+            }
+            p += 1;
+        }
+        this.pos = first;
+        return this.keyCache.intern(parseString((byte) c));
+    }
+
+
+    private JSONArray parseArray() throws JSONException {
+        JSONArray ja = new JSONArray();
+        if (nextClean() == ']') {
+            this.pos += 1;
+            return ja;
+        }
+        for (;;) {
+            if (nextClean() == ',') {
+                ja.put(JSONObject.NULL);
+            } else {
+                ja.put(nextValue());
+            }
+            switch (nextClean()) {
+            case ';':
+            case ',':
+                this.pos += 1;
+                if (nextClean() == ']') {
+                    this.pos += 1;
+                    return ja;
+                }
+                break;
+            case ']':
+                this.pos += 1;
+                return ja;
+            default:
+                throw syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
+
+    /**
+     * Parse a quoted string, the opening quote having been consumed.
+     * Backslash processing is done, and the contents are decoded from UTF-8.
+     * @param quote The quoting character.
+     * @return A String.
+     * @throws JSONException Unterminated string or illegal escape.
+     */
+    private String parseString(byte quote) throws JSONException {
+        byte[] b = this.bytes;
+        int p = this.pos;
+        int end = this.limit;
+
+        // Fast path - plain ASCII with no escapes
+        while (p < end) {
+            byte c = b[p];
+            if (c == quote) {
+                int n = p - this.pos;
+                char[] out = chars(n);
+                for (int i = 0; i < n; i += 1) {
+                    out[i] = (char) b[this.pos + i];
+                }
+                this.pos = p + 1;
+                return new String(out, 0, n);
+            }
+            if (c < ' ' || c == '\\') {
+                break;
+            }
+            p += 1;
+        }
+
+        // Slow path - escapes and multi-byte characters
+        char[] out = chars(p - this.pos + 16);
+        int n = 0;
+        for (int i = this.pos; i < p; i += 1) {
+            out[n++] = (char) b[i];
+        }
+        for (;;) {
+            if (p >= end) {
+                this.pos = p;
+                throw syntaxError("Unterminated string");
+            }
+            int c = b[p] & 0xFF;
+            if (n + 2 > out.length) {
+                out = growChars(n);
+            }
+            if (c == quote) {
+                this.pos = p + 1;
+                return new String(out, 0, n);
+            }
+            if (c < 0x80) {
+                if (c == 0 || c == '\n' || c == '\r') {
+                    this.pos = p;
+                    throw syntaxError("Unterminated string");
+                }
+                p += 1;
+                if (c != '\\') {
+                    out[n++] = (char) c;
+                    continue;
+                }
+                if (p >= end) {
+                    this.pos = p;
+                    throw syntaxError("Unterminated string");
+                }
+                c = b[p++];
+                switch (c) {
+                case 'b':
+                    out[n++] = '\b';
+                    break;
+                case 't':
+                    out[n++] = '\t';
+                    break;
+                case 'n':
+                    out[n++] = '\n';
+                    break;
+                case 'f':
+                    out[n++] = '\f';
+                    break;
+                case 'r':
+                    out[n++] = '\r';
+                    break;
+                case 'u':
+                    if (p + 4 > end) {
+                        this.pos = end;
+                        throw syntaxError("Substring bounds error");
+                    }
+                    int h = 0;
+                    for (int i = 0; i < 4; i += 1) {
+                        int d = JSONTokener.dehexchar((char) b[p + i]);
+                        if (d < 0) {
+                            this.pos = p;
+                            throw syntaxError("Illegal escape.");
+                        }
+                        h = (h << 4) | d;
+                    }
+                    out[n++] = (char) h;
+                    p += 4;
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    out[n++] = (char) c;
+                    break;
+                default:
+                    this.pos = p;
+                    throw syntaxError("Illegal escape.");
+                }
+                continue;
+            }
+
+            // Multi-byte UTF-8 sequence - malformed input becomes U+FFFD
+            int need;
+            int cp;
+            if (c >= 0xF0 && c <= 0xF4) {
+                need = 3;
+                cp = c & 0x07;
+            } else if (c >= 0xE0) {
+                need = (c <= 0xEF) ? 2 : -1;
+                cp = c & 0x0F;
+            } else if (c >= 0xC2) {
+                need = 1;
+                cp = c & 0x1F;
+            } else {
+                need = -1;
+                cp = 0;
+            }
+            p += 1;
+            int i = 0;
+            while (i < need && p < end && (b[p] & 0xC0) == 0x80) {
+                cp = (cp << 6) | (b[p] & 0x3F);
+                p += 1;
+                i += 1;
+            }
+            if (need < 0 || i < need || (need == 2 && (cp < 0x800 ||
+                    (cp >= 0xD800 && cp <= 0xDFFF))) ||
+                    (need == 3 && (cp < 0x10000 || cp > 0x10FFFF))) {
+                out[n++] = '\uFFFD';
+            } else if (cp >= 0x10000) {
+                cp -= 0x10000;
+                out[n++] = (char) (0xD800 + (cp >> 10));
+                out[n++] = (char) (0xDC00 + (cp & 0x3FF));
+            } else {
+                out[n++] = (char) cp;
+            }
+        }
+    }
+
+
+    /**
+     * Parse unquoted text. This could be the values true, false, or null,
+     * or it can be a number, or (as JSONTokener allows) a bare string.
+     * @return An object.
+     * @throws JSONException If there is no value.
+     */
+    private Object parseUnquoted() throws JSONException {
+        byte[] b = this.bytes;
+        int first = this.pos;
+        int p = first;
+        while (p < this.limit) {
+            int c = b[p] & 0xFF;
+            if (c < ' ' || c == ',' || c == ':' || c == ']' || c == '}' ||
+                    c == '/' || c == '\\' || c == '"' || c == '[' ||
+                    c == '{' || c == ';' || c == '=' || c == '#') {
+                break;
+            }
+            p += 1;
+        }
+        this.pos = p;
+
+        // Trim trailing spaces (leading whitespace was skipped by nextClean)
+        int last = p;
+        while (last > first && b[last - 1] == ' ') {
+            last -= 1;
+        }
+        int length = last - first;
+        if (length == 0) {
+            throw syntaxError("Missing value");
+        }
+
+        int c = b[first];
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            Object number = parseNumber(b, first, last);
+            if (number != null) {
+                return number;
+            }
+        } else if (length == 4 && matches(b, first, "true")) {
+            return Boolean.TRUE;
+        } else if (length == 5 && matches(b, first, "false")) {
+            return Boolean.FALSE;
+        } else if (length == 4 && matches(b, first, "null")) {
+            return JSONObject.NULL;
+        }
+
+        return JSONObject.stringToValue(decode(b, first, length));
+    }
+
+
+    /**
+     * Parse a plain decimal number from bytes with JSONObject.parseNumber,
+     * so the two parsers convert numbers identically. The bytes are copied
+     * into the char buffer as they are: a number is ASCII, and any other
+     * byte becomes a char that parseNumber rejects.
+     * @return The number, or null if it must be left to stringToValue.
+     */
+    private Object parseNumber(byte[] b, int p, int end) {
+        int length = end - p;
+        char[] out = chars(length);
+        for (int i = 0; i < length; i += 1) {
+            out[i] = (char) b[p + i];
+        }
+        return JSONObject.parseNumber(out, 0, length);
+    }
+
+
+    /**
+     * Compare bytes to an ASCII word, ignoring case.
+     */
+    private static boolean matches(byte[] b, int p, String word) {
+        for (int i = 0; i < word.length(); i += 1) {
+            int c = b[p + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static String decode(byte[] b, int offset, int length) throws JSONException {
+        try {
+            return new String(b, offset, length, "UTF-8");
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    private char[] chars(int length) {
+        if (this.chars.length < length) {
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+        }
+        return this.chars;
+    }
+
+
+    private char[] growChars(int used) {
+        char[] grown = new char[this.chars.length * 2];
+        System.arraycopy(this.chars, 0, grown, 0, used);
+        this.chars = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,343 @@
+package org.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact, insertion-ordered map used to hold the members of a JSONObject
+ * when the JSONTokener or JSONByteParser it is parsed with is set to use
+ * compact objects.
+ * <p>
+ * Keys and values are kept in two parallel arrays in insertion order, so
+ * there is no entry object per member and iteration (and so toString())
+ * follows the order of the source text. Objects with only a few members
+ * are searched with a linear scan. Larger ones also get an open-addressing
+ * (linear probing) hash index of ints pointing into the arrays.
+ * <p>
+ * Removing a member shifts the members after it down, so removal is linear
+ * in the size of the map. Null keys and null values are not supported
+ * (JSONObject never stores either).
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+class JSONCompactMap extends AbstractMap<String, Object> {
+
+    /** Maps up to this size are searched without a hash index. */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String[] keys;
+    private Object[] values;
+    private int      size;
+
+    /** Index + 1 of the member for each hash slot (0 is empty), or null. */
+    private int[]    index;
+
+    /** Incremented on every structural change, for fail-fast iterators. */
+    private int      modCount;
+
+
+    /**
+     * Construct an empty JSONCompactMap.
+     */
+    public JSONCompactMap() {
+        this.keys = new String[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+        this.index = null;
+        this.modCount = 0;
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+
+    public Object get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : this.values[i];
+    }
+
+
+    public Object put(String key, Object value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int i = indexOf(key);
+        if (i >= 0) {
+            Object old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        if (this.size == this.keys.length) {
+            grow();
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size += 1;
+        this.modCount += 1;
+        if (this.index != null) {
+            if (this.size * 2 > this.index.length) {
+                rebuildIndex();
+            } else {
+                addToIndex(this.size - 1);
+            }
+        } else if (this.size > LINEAR_SCAN_LIMIT) {
+            rebuildIndex();
+        }
+        return null;
+    }
+
+
+    public Object remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Object old = this.values[i];
+        removeAt(i);
+        return old;
+    }
+
+
+    public void clear() {
+        for (int i = 0; i < this.size; i += 1) {
+            this.keys[i] = null;
+            this.values[i] = null;
+        }
+        this.size = 0;
+        this.index = null;
+        this.modCount += 1;
+    }
+
+
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            public int size() {
+                return JSONCompactMap.this.size;
+            }
+
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            public Iterator<String> iterator() {
+                return new CompactIterator<String>() {
+                    String current(int i) {
+                        return keys[i];
+                    }
+                };
+            }
+        };
+    }
+
+
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            public int size() {
+                return JSONCompactMap.this.size;
+            }
+
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new CompactIterator<Map.Entry<String, Object>>() {
+                    Map.Entry<String, Object> current(int i) {
+                        return new CompactEntry(i);
+                    }
+                };
+            }
+        };
+    }
+
+
+    /**
+     * Shrink the arrays to fit the current members.
+     */
+    void trimToSize() {
+        if (this.keys.length > this.size) {
+            String[] newKeys = new String[this.size];
+            Object[] newValues = new Object[this.size];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+            System.arraycopy(this.values, 0, newValues, 0, this.size);
+            this.keys = newKeys;
+            this.values = newValues;
+        }
+    }
+
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        if (this.index == null) {
+            for (int i = 0; i < this.size; i += 1) {
+                if (key.equals(this.keys[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = this.index.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        for (;;) {
+            int i = this.index[slot] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            if (key.equals(this.keys[i])) {
+                return i;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    private void grow() {
+        int capacity = this.keys.length == 0 ? INITIAL_CAPACITY :
+                this.keys.length + (this.keys.length >> 1) + 1;
+        String[] newKeys = new String[capacity];
+        Object[] newValues = new Object[capacity];
+        System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+        System.arraycopy(this.values, 0, newValues, 0, this.size);
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+
+    private void removeAt(int i) {
+        int moved = this.size - i - 1;
+        if (moved > 0) {
+            System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+            System.arraycopy(this.values, i + 1, this.values, i, moved);
+        }
+        this.size -= 1;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modCount += 1;
+        if (this.size > LINEAR_SCAN_LIMIT) {
+            rebuildIndex();
+        } else {
+            this.index = null;
+        }
+    }
+
+
+    private void rebuildIndex() {
+        int length = Integer.highestOneBit(this.size * 4 - 1);
+        this.index = new int[length];
+        for (int i = 0; i < this.size; i += 1) {
+            addToIndex(i);
+        }
+    }
+
+
+    private void addToIndex(int i) {
+        int mask = this.index.length - 1;
+        int slot = spread(this.keys[i].hashCode()) & mask;
+        while (this.index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.index[slot] = i + 1;
+    }
+
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+
+    /**
+     * Iterates over the members in insertion order.
+     */
+    private abstract class CompactIterator<E> implements Iterator<E> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        abstract E current(int i);
+
+        public boolean hasNext() {
+            return this.next < size;
+        }
+
+        public E next() {
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next >= size) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next += 1;
+            return current(this.last);
+        }
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = modCount;
+        }
+    }
+
+
+    /**
+     * A view of one member, which writes through to the map.
+     */
+    private class CompactEntry implements Map.Entry<String, Object> {
+        private int i;
+
+        CompactEntry(int i) {
+            this.i = i;
+        }
+
+        public String getKey() {
+            return keys[this.i];
+        }
+
+        public Object getValue() {
+            return values[this.i];
+        }
+
+        public Object setValue(Object value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            Object old = values[this.i];
+            values[this.i] = value;
+            return old;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.json;
+
+/**
+ * A JSONKeyCache holds canonical String instances for the keys of the
+ * JSONObjects read by a JSONTokener or JSONByteParser.
+ * <p>
+ * Documents such as Media API responses repeat the same few dozen keys for
+ * every object. Without a cache each occurrence becomes a new String; with
+ * one, every "name" key in the document is the same String instance, so
+ * parsed objects retain less heap and key comparisons usually succeed on
+ * the identity check. When the key is read straight from the parser's
+ * buffer no String is created at all for a key that is already cached.
+ * <p>
+ * The cache is a fixed size, direct-mapped table: a new key simply replaces
+ * whatever was in its slot, so the cache can never grow, and keys longer
+ * than the maximum length are not cached. Nothing is added to the JVM's
+ * intern pool, so once the cache is no longer referenced, the keys in it
+ * can be collected.
+ * <p>
+ * A JSONKeyCache is not thread safe. It may be reused for several
+ * documents, as long as they are read one after another.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONKeyCache {
+
+    /** The default number of slots. */
+    public static final int DEFAULT_SIZE = 512;
+
+    /** The default length of the longest key that is cached. */
+    public static final int DEFAULT_MAX_KEY_LENGTH = 64;
+
+    private String[] table;
+    private int      mask;
+    private int      maxKeyLength;
+
+
+    /**
+     * Construct a JSONKeyCache with the default size and maximum key length.
+     */
+    public JSONKeyCache() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+
+    /**
+     * Construct a JSONKeyCache.
+     * @param size         The number of slots (rounded up to a power of two).
+     * @param maxKeyLength The length of the longest key that is cached.
+     */
+    public JSONKeyCache(int size, int maxKeyLength) {
+        int length = 1;
+        while (length < size) {
+            length <<= 1;
+        }
+        this.table = new String[length];
+        this.mask = length - 1;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+
+    /**
+     * Get the canonical instance of a key.
+     * @param key A key.
+     * @return An equal String from the cache, or key (which is then cached).
+     */
+    public String intern(String key) {
+        int length = key.length();
+        if (length > this.maxKeyLength) {
+            return key;
+        }
+        int slot = spread(key.hashCode()) & this.mask;
+        String cached = this.table[slot];
+        if (cached != null && cached.equals(key)) {
+            return cached;
+        }
+        this.table[slot] = key;
+        return key;
+    }
+
+
+    /**
+     * Get the canonical instance of a key held in a char array, creating a
+     * String only if the key is not already cached.
+     * @param chars  A char array.
+     * @param start  The index of the first character of the key.
+     * @param length The length of the key.
+     * @return A String equal to the key.
+     */
+    public String intern(char[] chars, int start, int length) {
+        if (length > this.maxKeyLength) {
+            return new String(chars, start, length);
+        }
+        int h = 0;
+        for (int i = start; i < start + length; i += 1) {
+            h = 31 * h + chars[i];
+        }
+        int slot = spread(h) & this.mask;
+        String cached = this.table[slot];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == chars[start + i]) {
+                i += 1;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+        String key = new String(chars, start, length);
+        this.table[slot] = key;
+        return key;
+    }
+
+
+    /**
+     * Get the canonical instance of a key held in a byte array as ASCII,
+     * creating a String only if the key is not already cached.
+     * @param bytes  A byte array, holding only ASCII characters in the key.
+     * @param start  The index of the first byte of the key.
+     * @param length The length of the key.
+     * @return A String equal to the key.
+     */
+    public String intern(byte[] bytes, int start, int length) {
+        if (length > this.maxKeyLength) {
+            return toString(bytes, start, length);
+        }
+        int h = 0;
+        for (int i = start; i < start + length; i += 1) {
+            h = 31 * h + bytes[i];
+        }
+        int slot = spread(h) & this.mask;
+        String cached = this.table[slot];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == bytes[start + i]) {
+                i += 1;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+        String key = toString(bytes, start, length);
+        this.table[slot] = key;
+        return key;
+    }
+
+
+    private static String toString(byte[] bytes, int start, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            chars[i] = (char) bytes[start + i];
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Remove every key from the cache.
+     */
+    public void clear() {
+        for (int i = 0; i < this.table.length; i += 1) {
+            this.table[i] = null;
+        }
+    }
+
+
+    /**
+     * The hash is the same as String.hashCode(), so a key hashes to the same
+     * slot whichever way it is looked up. Mix in the high bits, since the
+     * table is indexed by the low ones.
+     */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
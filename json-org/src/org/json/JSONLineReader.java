@@ -0,0 +1,337 @@
+package org.json;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * A JSONLineReader reads JSON Lines (also known as NDJSON) text: one
+ * JSONObject per line, with the lines separated by '\n' (a '\r' before
+ * the '\n' is ignored). Blank lines are skipped.
+ * <p>
+ * Unlike one large JSON array, a JSON Lines file can be processed one
+ * object at a time, and can be divided between threads: split(File, int)
+ * divides a file into byte ranges that each start at the beginning of a
+ * line, and open(File, long, long) reads one of those ranges. For example,
+ * <pre>
+ * long[] offsets = JSONLineReader.split(file, threads);
+ * // for each i, in its own thread:
+ * JSONLineReader reader = JSONLineReader.open(file, offsets[i], offsets[i + 1]);
+ * try {
+ *     JSONObject jo = reader.next();
+ *     while (jo != null) {
+ *         ...
+ *         jo = reader.next();
+ *     }
+ * } finally {
+ *     reader.close();
+ * }</pre>
+ * <p>
+ * The input must be UTF-8. Each line is parsed from its bytes with a
+ * JSONByteParser. A JSONLineReader is not thread safe.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONLineReader {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private InputStream  inputStream;
+    private long         remaining;
+    private byte[]       buffer;
+    private int          pos;
+    private int          limit;
+    private boolean      eof;
+    private int          lineNumber;
+    private boolean      compactObjects;
+    private JSONKeyCache keyCache;
+
+
+    /**
+     * Construct a JSONLineReader that reads everything from a stream.
+     * @param inputStream A stream of UTF-8 encoded JSON Lines text.
+     */
+    public JSONLineReader(InputStream inputStream) {
+        this(inputStream, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Construct a JSONLineReader that reads at most length bytes from a
+     * stream.
+     * @param inputStream A stream of UTF-8 encoded JSON Lines text.
+     * @param length      The number of bytes to read.
+     */
+    public JSONLineReader(InputStream inputStream, long length) {
+        this.inputStream = inputStream;
+        this.remaining = length;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.pos = 0;
+        this.limit = 0;
+        this.eof = false;
+        this.lineNumber = 0;
+        this.compactObjects = false;
+        this.keyCache = null;
+    }
+
+
+    /**
+     * Open a JSONLineReader over a range of a file, such as one of the
+     * ranges found by split. The reader must be closed when done with.
+     * @param file  A file of UTF-8 encoded JSON Lines text.
+     * @param start The offset of the first byte to read, which should be
+     *  the start of a line.
+     * @param end   The offset just after the last byte to read, which should
+     *  be the start of a line or the end of the file.
+     * @return A JSONLineReader.
+     * @throws JSONException If the file can not be opened.
+     */
+    public static JSONLineReader open(File file, long start, long end)
+            throws JSONException {
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                inputStream.getChannel().position(start);
+            } catch (IOException exception) {
+                inputStream.close();
+                throw exception;
+            }
+            return new JSONLineReader(inputStream, end - start);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Divide a file into byte ranges, each of which starts at the beginning
+     * of a line, so that the ranges can be read in parallel. The ranges are
+     * about the same size, but there are fewer of them than asked for if
+     * the file is small or its lines are long.
+     * @param file  A file of JSON Lines text.
+     * @param parts The number of ranges wanted.
+     * @return The offsets of the ranges: range i runs from offsets[i] up to
+     *  (but not including) offsets[i + 1]. The first offset is 0 and the
+     *  last is the length of the file.
+     * @throws JSONException If the file can not be read.
+     */
+    public static long[] split(File file, int parts) throws JSONException {
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                long length = randomAccessFile.length();
+                long[] offsets = new long[Math.max(parts, 1) + 1];
+                int count = 1;
+                offsets[0] = 0;
+                byte[] block = new byte[8192];
+                for (int i = 1; i < parts; i += 1) {
+                    long target = length * i / parts;
+                    if (target <= offsets[count - 1]) {
+                        continue;
+                    }
+                    long offset = nextLineStart(randomAccessFile, target,
+                            length, block);
+                    if (offset > offsets[count - 1] && offset < length) {
+                        offsets[count] = offset;
+                        count += 1;
+                    }
+                }
+                offsets[count] = length;
+                count += 1;
+                long[] result = new long[count];
+                System.arraycopy(offsets, 0, result, 0, count);
+                return result;
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Find the start of the first line that begins at or after an offset.
+     */
+    private static long nextLineStart(RandomAccessFile randomAccessFile,
+            long offset, long length, byte[] block) throws IOException {
+
+// Start one byte back, so that a line starting exactly at offset is found.
+
+        long position = offset - 1;
+        randomAccessFile.seek(position);
+        while (position < length) {
+            int n = randomAccessFile.read(block);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i += 1) {
+                if (block[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return length;
+    }
+
+
+    /**
+     * Determine whether JSONObjects read by this reader are backed by a
+     * compact, insertion-ordered map rather than a HashMap.
+     * @return true if compact objects are used.
+     */
+    public boolean isCompactObjects() {
+        return this.compactObjects;
+    }
+
+
+    /**
+     * Set whether JSONObjects read by this reader are backed by a compact,
+     * insertion-ordered map rather than a HashMap.
+     * @param compactObjects true to use compact objects.
+     */
+    public void setCompactObjects(boolean compactObjects) {
+        this.compactObjects = compactObjects;
+    }
+
+
+    /**
+     * Get the cache used for the keys of the JSONObjects read.
+     * @return The key cache, or null if keys are not cached.
+     */
+    public JSONKeyCache getKeyCache() {
+        return this.keyCache;
+    }
+
+
+    /**
+     * Set the cache used for the keys of the JSONObjects read. One cache is
+     * used for every line, so each distinct key is usually held once.
+     * @param keyCache A key cache, or null to not cache keys.
+     */
+    public void setKeyCache(JSONKeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+
+    /**
+     * Get the number of the line last read, counting from 1 at the start of
+     * the stream (or range).
+     * @return The line number.
+     */
+    public int getLineNumber() {
+        return this.lineNumber;
+    }
+
+
+    /**
+     * Read the JSONObject on the next line that is not blank.
+     * @return A JSONObject, or null at the end of the input.
+     * @throws JSONException If the input can not be read, or a line is not
+     *  exactly one JSONObject.
+     */
+    public JSONObject next() throws JSONException {
+        for (;;) {
+            int end = findLineEnd();
+            if (end < 0) {
+                return null;
+            }
+            int start = this.pos;
+            this.pos = end < this.limit ? end + 1 : end;
+            this.lineNumber += 1;
+            JSONByteParser parser = new JSONByteParser(this.buffer, start,
+                    end - start);
+            if (!parser.more()) {
+                continue;
+            }
+            parser.setCompactObjects(this.compactObjects);
+            parser.setKeyCache(this.keyCache);
+            try {
+                JSONObject jo = parser.nextObject();
+                if (parser.more()) {
+                    throw parser.syntaxError(
+                            "Only one JSONObject is allowed on a line");
+                }
+                return jo;
+            } catch (JSONException exception) {
+                throw new JSONException(exception.getMessage() +
+                        " on line " + this.lineNumber);
+            }
+        }
+    }
+
+
+    /**
+     * Close the underlying stream.
+     * @throws JSONException If the stream can not be closed.
+     */
+    public void close() throws JSONException {
+        try {
+            this.inputStream.close();
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Find the '\n' that ends the next line, reading more input as needed.
+     * The last line of the input need not end with '\n'.
+     * @return The index of the '\n' (or the end of the last line) in the
+     *  buffer, or -1 if there are no more lines.
+     */
+    private int findLineEnd() throws JSONException {
+        int scanned = this.pos;
+        for (;;) {
+            for (int i = scanned; i < this.limit; i += 1) {
+                if (this.buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            scanned = this.limit;
+            if (this.eof) {
+                return this.pos < this.limit ? this.limit : -1;
+            }
+            scanned -= this.pos;
+            fill();
+        }
+    }
+
+
+    /**
+     * Move the unread part of the buffer to the front (growing the buffer
+     * if it is all one line), and read more input after it.
+     */
+    private void fill() throws JSONException {
+        int unread = this.limit - this.pos;
+        if (unread == this.buffer.length) {
+            byte[] newBuffer = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, this.pos, newBuffer, 0, unread);
+            this.buffer = newBuffer;
+        } else if (this.pos > 0) {
+            System.arraycopy(this.buffer, this.pos, this.buffer, 0, unread);
+        }
+        this.pos = 0;
+        this.limit = unread;
+        if (this.remaining <= 0) {
+            this.eof = true;
+            return;
+        }
+        int wanted = (int) Math.min(this.buffer.length - this.limit,
+                this.remaining);
+        int n;
+        try {
+            n = this.inputStream.read(this.buffer, this.limit, wanted);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        if (n < 0) {
+            this.eof = true;
+        } else {
+            this.limit += n;
+            this.remaining -= n;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+/**
+ * A JSONLineWriter writes JSON Lines (also known as NDJSON) text: one
+ * JSON text per line, each followed by '\n'. The output can be read back
+ * with a JSONLineReader.
+ * <p>
+ * A line can be written from a JSONObject, or streamed with the JSONWriter
+ * returned by <code>line</code>, without building a JSONObject at all. For
+ * example, <pre>
+ * JSONLineWriter lines = new JSONLineWriter(outputStream);
+ * lines.line().object().key("id").value(1).endObject();
+ * lines.write(jsonObject);
+ * lines.close();</pre>
+ * <p>
+ * JSON text never contains a raw line break (they are escaped within
+ * strings), so every line holds exactly one text. A JSONLineWriter is not
+ * thread safe.
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ */
+public class JSONLineWriter {
+
+    private Writer     writer;
+
+    /**
+     * The JSONWriter of the line being streamed, or null.
+     */
+    private JSONWriter line;
+
+
+    /**
+     * Construct a JSONLineWriter that writes to a writer.
+     * @param writer The writer that will receive the output.
+     */
+    public JSONLineWriter(Writer writer) {
+        this.writer = writer;
+        this.line = null;
+    }
+
+
+    /**
+     * Construct a JSONLineWriter that writes UTF-8 to a stream, through a
+     * buffer.
+     * @param outputStream The stream that will receive the output.
+     */
+    public JSONLineWriter(OutputStream outputStream) {
+        this(new BufferedWriter(utf8(outputStream), 65536));
+    }
+
+
+    private static Writer utf8(OutputStream outputStream) {
+        try {
+            return new OutputStreamWriter(outputStream, "UTF-8");
+        } catch (UnsupportedEncodingException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+
+    /**
+     * Write a JSONObject as one line.
+     * @param jo A JSONObject.
+     * @return this
+     * @throws JSONException If the object contains an invalid number, or
+     *  the writer throws an IOException.
+     */
+    public JSONLineWriter write(JSONObject jo) throws JSONException {
+        endLine();
+        jo.write(this.writer);
+        newline();
+        return this;
+    }
+
+
+    /**
+     * Begin a line that is streamed with a JSONWriter. Duplicate keys are
+     * rejected.
+     * @return A JSONWriter for the line. The JSON text must be finished
+     *  before anything else is done with this JSONLineWriter.
+     * @throws JSONException If the previous line was not finished.
+     */
+    public JSONWriter line() throws JSONException {
+        return line(true);
+    }
+
+
+    /**
+     * Begin a line that is streamed with a JSONWriter.
+     * @param checkKeys If false, duplicate keys are not checked for.
+     * @return A JSONWriter for the line. The JSON text must be finished
+     *  before anything else is done with this JSONLineWriter.
+     * @throws JSONException If the previous line was not finished.
+     */
+    public JSONWriter line(boolean checkKeys) throws JSONException {
+        endLine();
+        this.line = new JSONWriter(this.writer, checkKeys);
+        return this.line;
+    }
+
+
+    /**
+     * Finish the current line, and flush the writer.
+     * @throws JSONException If the current line was not finished, or the
+     *  writer throws an IOException.
+     */
+    public void flush() throws JSONException {
+        endLine();
+        try {
+            this.writer.flush();
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Finish the current line, and close the writer.
+     * @throws JSONException If the current line was not finished, or the
+     *  writer throws an IOException.
+     */
+    public void close() throws JSONException {
+        endLine();
+        try {
+            this.writer.close();
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * End the line being streamed, if there is one.
+     */
+    private void endLine() throws JSONException {
+        if (this.line != null) {
+            if (this.line.mode != 'd') {
+                throw new JSONException("Unfinished line.");
+            }
+            this.line = null;
+            newline();
+        }
+    }
+
+
+    private void newline() throws JSONException {
+        try {
+            this.writer.write('\n');
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+}
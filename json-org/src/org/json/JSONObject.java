@@ -26,10 +26,13 @@ SOFTWARE.
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -37,6 +40,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 /**
  * A JSONObject is an unordered collection of name/value pairs. Its
@@ -127,6 +131,31 @@ public class JSONObject {
     }
 
 
+    /**
+     * A getter method of a bean class, and the key its value is put under.
+     */
+    private static final class BeanGetter {
+        final String key;
+        final Method method;
+
+        BeanGetter(String key, Method method) {
+            this.key = key;
+            this.method = method;
+        }
+    }
+
+
+    /**
+     * The getters found on each bean class, so that a class is only
+     * reflected on the first time one of its objects is converted. Classes
+     * are held weakly and their getters softly, so the cache does not keep
+     * a class (or its class loader) from being unloaded.
+     */
+    private static final Map<Class<?>, SoftReference<BeanGetter[]>>
+        beanGetters = Collections.synchronizedMap(
+            new WeakHashMap<Class<?>, SoftReference<BeanGetter[]>>());
+
+
     /**
      * The map where the JSONObject's properties are kept.
      */
@@ -143,6 +172,39 @@ public class JSONObject {
     public static final Object NULL = new Null();
 
 
+    /**
+     * Powers of ten that are exactly representable as a double.
+     */
+    static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+
+    /**
+     * Mantissas below this (2^53) are exactly representable as a double.
+     */
+    static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+
+    /**
+     * Number of significant digits that always fit in a long.
+     */
+    static final int MAX_EXACT_DIGITS = 18;
+
+
+    /**
+     * Longest string that stringToValue will try to convert directly.
+     */
+    private static final int MAX_NUMBER_LENGTH = 64;
+
+
+    /**
+     * Hexadecimal digits, for the escapes written by quote.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
     /**
      * Construct an empty JSONObject.
      */
@@ -152,6 +214,18 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct an empty JSONObject, backed either by a HashMap or (if
+     * compact is true) by a JSONCompactMap, which uses less memory and
+     * keeps its keys in the order they were added.
+     * @param compact true to use a JSONCompactMap.
+     */
+    @SuppressWarnings("rawtypes")
+	JSONObject(boolean compact) {
+        this.map = compact ? new JSONCompactMap() : new HashMap();
+    }
+
+
     /**
      * Construct a JSONObject from a subset of another JSONObject.
      * An array of strings is used to identify the keys that should be copied.
@@ -179,7 +253,19 @@ public class JSONObject {
      *  or a duplicated key.
      */
     public JSONObject(JSONTokener x) throws JSONException {
-        this();
+        this(x.isCompactObjects());
+        parse(x);
+        trimToSize();
+    }
+
+
+    /**
+     * Read the members of a JSONObject from a JSONTokener.
+     * @param x A JSONTokener object containing the source string.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    private void parse(JSONTokener x) throws JSONException {
         char c;
         String key;
 
@@ -195,7 +281,7 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey();
             }
 
 // The key is followed by ':'. We will also tolerate '=' or '=>'.
@@ -229,6 +315,17 @@ public class JSONObject {
     }
 
 
+    /**
+     * Release any unused space in a compact JSONObject's member arrays
+     * (called once a JSONObject has been fully parsed).
+     */
+    void trimToSize() {
+        if (this.map instanceof JSONCompactMap) {
+            ((JSONCompactMap) this.map).trimToSize();
+        }
+    }
+
+
     /**
      * Construct a JSONObject from a Map.
      *
@@ -950,9 +1047,46 @@ public class JSONObject {
     }
 
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @SuppressWarnings("unchecked")
 	private void populateMap(Object bean) {
-        Class klass = bean.getClass();
+        BeanGetter[] getters = getBeanGetters(bean.getClass());
+        for (int i = 0; i < getters.length; i += 1) {
+            try {
+                Object result = getters[i].method.invoke(bean, (Object[])null);
+                if (result != null) {
+                    map.put(getters[i].key, wrap(result));
+                }
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+
+    /**
+     * Get the getters of a bean class, from the cache if the class has been
+     * seen before.
+     * @param klass A bean class.
+     * @return The getters, in the order populateMap calls them.
+     */
+    private static BeanGetter[] getBeanGetters(Class<?> klass) {
+        SoftReference<BeanGetter[]> reference = beanGetters.get(klass);
+        BeanGetter[] getters = reference == null ? null : reference.get();
+        if (getters == null) {
+            getters = findBeanGetters(klass);
+            beanGetters.put(klass, new SoftReference<BeanGetter[]>(getters));
+        }
+        return getters;
+    }
+
+
+    /**
+     * Reflect on a bean class to find its getters: the public methods with
+     * no parameters whose names are "get" or "is" followed by an uppercase
+     * letter.
+     * @param klass A bean class.
+     * @return The getters.
+     */
+    private static BeanGetter[] findBeanGetters(Class<?> klass) {
 
 // If klass is a System class then set includeSuperClass to false. 
 
@@ -960,41 +1094,36 @@ public class JSONObject {
 
         Method[] methods = (includeSuperClass) ?
                 klass.getMethods() : klass.getDeclaredMethods();
+        ArrayList<BeanGetter> getters = new ArrayList<BeanGetter>();
         for (int i = 0; i < methods.length; i += 1) {
-            try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if (name.equals("getClass") || 
-                                name.equals("getDeclaringClass")) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
+            Method method = methods[i];
+            if (Modifier.isPublic(method.getModifiers())) {
+                String name = method.getName();
+                String key = "";
+                if (name.startsWith("get")) {
+                    if (name.equals("getClass") || 
+                            name.equals("getDeclaringClass")) {
+                        key = "";
+                    } else {
+                        key = name.substring(3);
                     }
-                    if (key.length() > 0 &&
-                            Character.isUpperCase(key.charAt(0)) &&
-                            method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase() +
-                                key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[])null);
-                        if (result != null) {
-                            map.put(key, wrap(result));
-                        }
+                } else if (name.startsWith("is")) {
+                    key = name.substring(2);
+                }
+                if (key.length() > 0 &&
+                        Character.isUpperCase(key.charAt(0)) &&
+                        method.getParameterTypes().length == 0) {
+                    if (key.length() == 1) {
+                        key = key.toLowerCase();
+                    } else if (!Character.isUpperCase(key.charAt(1))) {
+                        key = key.substring(0, 1).toLowerCase() +
+                            key.substring(1);
                     }
+                    getters.add(new BeanGetter(key, method));
                 }
-            } catch (Exception ignore) {
             }
         }
+        return getters.toArray(new BeanGetter[getters.size()]);
     }
 
 
@@ -1050,7 +1179,7 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, int value) throws JSONException {
-        put(key, new Integer(value));
+        put(key, Integer.valueOf(value));
         return this;
     }
 
@@ -1064,7 +1193,7 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, long value) throws JSONException {
-        put(key, new Long(value));
+        put(key, Long.valueOf(value));
         return this;
     }
 
@@ -1160,57 +1289,97 @@ public class JSONObject {
         if (string == null || string.length() == 0) {
             return "\"\"";
         }
+        StringBuilder sb = new StringBuilder(string.length() + 8);
+        try {
+            quote(string, sb);
+        } catch (IOException exception) {
+            // A StringBuilder does not throw IOException.
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Append a string in double quotes with backslash sequences in all the
+     * right places, as with quote(String). Most strings need no escaping at
+     * all; those are found with a single scan and appended in one piece.
+     * @param string A String
+     * @param out    Where to append the quoted string.
+     * @throws IOException If out throws IOException.
+     */
+    static void quote(String string, Appendable out) throws IOException {
+        if (string == null || string.length() == 0) {
+            out.append("\"\"");
+            return;
+        }
 
         char         b;
         char         c = 0;
-        String       hhhh;
         int          i;
         int          len = string.length();
-        StringBuffer sb = new StringBuffer(len + 4);
 
-        sb.append('"');
         for (i = 0; i < len; i += 1) {
+            c = string.charAt(i);
+            if (c < ' ' || c == '"' || c == '\\' || c == '/' ||
+                    (c >= '\u0080' && c < '\u00a0') ||
+                    (c >= '\u2000' && c < '\u2100')) {
+                break;
+            }
+        }
+        out.append('"');
+        if (i == len) {
+            out.append(string);
+            out.append('"');
+            return;
+        }
+        if (i > 0) {
+            out.append(string, 0, i);
+        }
+        c = i > 0 ? string.charAt(i - 1) : 0;
+        for (; i < len; i += 1) {
             b = c;
             c = string.charAt(i);
             switch (c) {
             case '\\':
             case '"':
-                sb.append('\\');
-                sb.append(c);
+                out.append('\\');
+                out.append(c);
                 break;
             case '/':
                 if (b == '<') {
-                    sb.append('\\');
+                    out.append('\\');
                 }
-                sb.append(c);
+                out.append(c);
                 break;
             case '\b':
-                sb.append("\\b");
+                out.append("\\b");
                 break;
             case '\t':
-                sb.append("\\t");
+                out.append("\\t");
                 break;
             case '\n':
-                sb.append("\\n");
+                out.append("\\n");
                 break;
             case '\f':
-                sb.append("\\f");
+                out.append("\\f");
                 break;
             case '\r':
-                sb.append("\\r");
+                out.append("\\r");
                 break;
             default:
                 if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
                                (c >= '\u2000' && c < '\u2100')) {
-                    hhhh = "000" + Integer.toHexString(c);
-                    sb.append("\\u" + hhhh.substring(hhhh.length() - 4));
+                    out.append("\\u");
+                    out.append(HEX_DIGITS[(c >> 12) & 0xF]);
+                    out.append(HEX_DIGITS[(c >> 8) & 0xF]);
+                    out.append(HEX_DIGITS[(c >> 4) & 0xF]);
+                    out.append(HEX_DIGITS[c & 0xF]);
                 } else {
-                    sb.append(c);
+                    out.append(c);
                 }
             }
         }
-        sb.append('"');
-        return sb.toString();
+        out.append('"');
     }
 
     /**
@@ -1265,10 +1434,21 @@ public class JSONObject {
 
         char b = string.charAt(0);
         if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
+            /*
+             * Plain decimal numbers (by far the most common case) are
+             * converted directly. Anything else falls through to the
+             * exception-driven conversions below.
+             */
+            if (string.length() <= MAX_NUMBER_LENGTH) {
+                Object number = parseNumber(string.toCharArray(), 0, string.length());
+                if (number != null) {
+                    return number;
+                }
+            }
             if (b == '0' && string.length() > 2 &&
                         (string.charAt(1) == 'x' || string.charAt(1) == 'X')) {
                 try {
-                    return new Integer(Integer.parseInt(string.substring(2), 16));
+                    return Integer.valueOf(Integer.parseInt(string.substring(2), 16));
                 } catch (Exception ignore) {
                 }
             }
@@ -1277,9 +1457,9 @@ public class JSONObject {
                         string.indexOf('e') > -1 || string.indexOf('E') > -1) {
                     return Double.valueOf(string);
                 } else {
-                    Long myLong = new Long(string);
+                    Long myLong = Long.valueOf(string);
                     if (myLong.longValue() == myLong.intValue()) {
-                        return new Integer(myLong.intValue());
+                        return Integer.valueOf(myLong.intValue());
                     } else {
                         return myLong;
                     }
@@ -1291,6 +1471,118 @@ public class JSONObject {
     }
 
 
+    /**
+     * Convert a plain decimal number (an optional minus sign, digits, an
+     * optional fraction and an optional exponent) without going through
+     * a String or any exceptions. Integers become an Integer or Long, as
+     * with stringToValue. Decimals become a Double, provided the digits
+     * fit exactly in a double and the exponent is small enough for the
+     * result to be rounded exactly as Double.valueOf would round it.
+     * Boxed values are obtained through Integer.valueOf, Long.valueOf and
+     * Double.valueOf, so small integers are shared.
+     *
+     * @param chars The characters holding the number.
+     * @param start The index of the first character of the number.
+     * @param end   The index after the last character of the number.
+     * @return An Integer, Long or Double, or null if the characters are not
+     *  a plain decimal number or can't be converted exactly this way.
+     */
+    static Object parseNumber(char[] chars, int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (p < end && chars[p] == '-') {
+            negative = true;
+            p += 1;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean decimal = false;
+
+        int intStart = p;
+        while (p < end && chars[p] >= '0' && chars[p] <= '9') {
+            if (digits >= MAX_EXACT_DIGITS) {
+                return null;
+            }
+            mantissa = mantissa * 10 + (chars[p] - '0');
+            if (mantissa != 0) {
+                digits += 1;
+            }
+            p += 1;
+        }
+        int intDigits = p - intStart;
+
+        if (p < end && chars[p] == '.') {
+            decimal = true;
+            p += 1;
+            int fracStart = p;
+            while (p < end && chars[p] >= '0' && chars[p] <= '9') {
+                if (digits >= MAX_EXACT_DIGITS) {
+                    return null;
+                }
+                mantissa = mantissa * 10 + (chars[p] - '0');
+                if (mantissa != 0) {
+                    digits += 1;
+                }
+                scale -= 1;
+                p += 1;
+            }
+            if (intDigits == 0 && p == fracStart) {
+                return null;
+            }
+        } else if (intDigits == 0) {
+            return null;
+        }
+
+        if (p < end && (chars[p] == 'e' || chars[p] == 'E')) {
+            decimal = true;
+            p += 1;
+            boolean negativeExponent = false;
+            if (p < end && (chars[p] == '-' || chars[p] == '+')) {
+                negativeExponent = chars[p] == '-';
+                p += 1;
+            }
+            int expStart = p;
+            int exponent = 0;
+            while (p < end && chars[p] >= '0' && chars[p] <= '9') {
+                if (exponent > 1000) {
+                    return null;
+                }
+                exponent = exponent * 10 + (chars[p] - '0');
+                p += 1;
+            }
+            if (p == expStart) {
+                return null;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (p != end) {
+            return null;
+        }
+
+        if (!decimal) {
+            long value = negative ? -mantissa : mantissa;
+            if (value == (int) value) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        }
+
+        if (mantissa >= MAX_EXACT_MANTISSA || scale < -22 || scale > 22) {
+            return null;
+        }
+        double value = (double) mantissa;
+        if (scale < 0) {
+            value = value / POWERS_OF_TEN[-scale];
+        } else {
+            value = value * POWERS_OF_TEN[scale];
+        }
+        return Double.valueOf(negative ? -value : value);
+    }
+
+
     /**
      * Throw an exception if the object is a NaN or infinite number.
      * @param o The object to test.
@@ -1344,22 +1636,10 @@ public class JSONObject {
      *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      */
-    @SuppressWarnings("rawtypes")
-	public String toString() {
+    public String toString() {
         try {
-            Iterator     keys = keys();
-            StringBuffer sb = new StringBuffer("{");
-
-            while (keys.hasNext()) {
-                if (sb.length() > 1) {
-                    sb.append(',');
-                }
-                Object o = keys.next();
-                sb.append(quote(o.toString()));
-                sb.append(':');
-                sb.append(valueToString(this.map.get(o)));
-            }
-            sb.append('}');
+            StringBuilder sb = new StringBuilder(estimateLength());
+            write(sb);
             return sb.toString();
         } catch (Exception e) {
             return null;
@@ -1397,51 +1677,26 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the object contains an invalid number.
      */
-    @SuppressWarnings("rawtypes")
-	String toString(int indentFactor, int indent) throws JSONException {
-        int i;
-        int length = this.length();
-        if (length == 0) {
-            return "{}";
-        }
-        Iterator     keys = sortedKeys();
-        int          newindent = indent + indentFactor;
-        Object       object;
-        StringBuffer sb = new StringBuffer("{");
-        if (length == 1) {
-            object = keys.next();
-            sb.append(quote(object.toString()));
-            sb.append(": ");
-            sb.append(valueToString(this.map.get(object), indentFactor,
-                    indent));
-        } else {
-            while (keys.hasNext()) {
-                object = keys.next();
-                if (sb.length() > 1) {
-                    sb.append(",\n");
-                } else {
-                    sb.append('\n');
-                }
-                for (i = 0; i < newindent; i += 1) {
-                    sb.append(' ');
-                }
-                sb.append(quote(object.toString()));
-                sb.append(": ");
-                sb.append(valueToString(this.map.get(object), indentFactor,
-                        newindent));
-            }
-            if (sb.length() > 1) {
-                sb.append('\n');
-                for (i = 0; i < indent; i += 1) {
-                    sb.append(' ');
-                }
-            }
+    String toString(int indentFactor, int indent) throws JSONException {
+        StringBuilder sb = new StringBuilder(estimateLength() * 2);
+        try {
+            write(sb, indentFactor, indent);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
         }
-        sb.append('}');
         return sb.toString();
     }
 
 
+    /**
+     * A first guess at the length of this JSONObject's JSON text, used to
+     * size the StringBuilder it is written to.
+     */
+    int estimateLength() {
+        return 16 + this.map.size() * 24;
+    }
+
+
     /**
      * Make a JSON text of an Object value. If the object has an
      * value.toJSONString() method, then that method will be used to produce
@@ -1463,40 +1718,27 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the value is or contains an invalid number.
      */
-    @SuppressWarnings("rawtypes")
-	public static String valueToString(Object value) throws JSONException {
+    public static String valueToString(Object value) throws JSONException {
         if (value == null || value.equals(null)) {
             return "null";
         }
-        if (value instanceof JSONString) {
-            Object object;
-            try {
-                object = ((JSONString)value).toJSONString();
-            } catch (Exception e) {
-                throw new JSONException(e);
-            }
-            if (object instanceof String) {
-                return (String)object;
-            }
-            throw new JSONException("Bad value from toJSONString: " + object);
-        }
-        if (value instanceof Number) {
-            return numberToString((Number) value);
-        }
         if (value instanceof Boolean || value instanceof JSONObject ||
                 value instanceof JSONArray) {
             return value.toString();
         }
-        if (value instanceof Map) {
-            return new JSONObject((Map)value).toString();
+        if (value instanceof Number) {
+            return numberToString((Number) value);
         }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection)value).toString();
+        if (value instanceof String) {
+            return quote((String) value);
         }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString();
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeValue(value, sb);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
         }
-        return quote(value.toString());
+        return sb.toString();
     }
 
 
@@ -1514,43 +1756,124 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the object contains an invalid number.
      */
-     @SuppressWarnings("rawtypes")
-	static String valueToString(Object value, int indentFactor, int indent)
+    static String valueToString(Object value, int indentFactor, int indent)
             throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeValue(value, sb, indentFactor, indent);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Append the JSON text of an Object value, as made by
+     * valueToString(Object). JSONObjects, JSONArrays, Maps, Collections
+     * and arrays are written straight to out, without making a String of
+     * each one first.
+     * @param value The value to be serialized.
+     * @param out   Where to append the text.
+     * @throws JSONException If the value is or contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    @SuppressWarnings("rawtypes")
+    static void writeValue(Object value, Appendable out)
+            throws JSONException, IOException {
         if (value == null || value.equals(null)) {
-            return "null";
+            out.append("null");
+        } else if (value instanceof String) {
+            quote((String) value, out);
+        } else if (value instanceof JSONObject) {
+            ((JSONObject) value).write(out);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).write(out);
+        } else if (value instanceof Number) {
+            out.append(numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            out.append(value.toString());
+        } else if (value instanceof JSONString) {
+            Object object;
+            try {
+                object = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            if (!(object instanceof String)) {
+                throw new JSONException("Bad value from toJSONString: " +
+                        object);
+            }
+            out.append((String) object);
+        } else if (value instanceof Map) {
+            new JSONObject((Map)value).write(out);
+        } else if (value instanceof Collection) {
+            new JSONArray((Collection)value).write(out);
+        } else if (value.getClass().isArray()) {
+            new JSONArray(value).write(out);
+        } else {
+            quote(value.toString(), out);
+        }
+    }
+
+
+    /**
+     * Append the prettyprinted JSON text of an Object value, as made by
+     * valueToString(Object, int, int).
+     * @param value The value to be serialized.
+     * @param out   Where to append the text.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param indent The indentation of the top level.
+     * @throws JSONException If the object contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    @SuppressWarnings("rawtypes")
+    static void writeValue(Object value, Appendable out, int indentFactor,
+            int indent) throws JSONException, IOException {
+        if (value == null || value.equals(null)) {
+            out.append("null");
+            return;
         }
         try {
             if (value instanceof JSONString) {
                 Object o = ((JSONString)value).toJSONString();
                 if (o instanceof String) {
-                    return (String)o;
+                    out.append((String)o);
+                    return;
                 }
             }
         } catch (Exception ignore) {
         }
-        if (value instanceof Number) {
-            return numberToString((Number) value);
-        }
-        if (value instanceof Boolean) {
-            return value.toString();
-        }
-        if (value instanceof JSONObject) {
-            return ((JSONObject)value).toString(indentFactor, indent);
-        }
-        if (value instanceof JSONArray) {
-            return ((JSONArray)value).toString(indentFactor, indent);
-        }
-        if (value instanceof Map) {
-            return new JSONObject((Map)value).toString(indentFactor, indent);
-        }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection)value).toString(indentFactor, indent);
+        if (value instanceof String) {
+            quote((String) value, out);
+        } else if (value instanceof JSONObject) {
+            ((JSONObject)value).write(out, indentFactor, indent);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray)value).write(out, indentFactor, indent);
+        } else if (value instanceof Number) {
+            out.append(numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            out.append(value.toString());
+        } else if (value instanceof Map) {
+            new JSONObject((Map)value).write(out, indentFactor, indent);
+        } else if (value instanceof Collection) {
+            new JSONArray((Collection)value).write(out, indentFactor, indent);
+        } else if (value.getClass().isArray()) {
+            new JSONArray(value).write(out, indentFactor, indent);
+        } else {
+            quote(value.toString(), out);
         }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString(indentFactor, indent);
+    }
+
+
+    /**
+     * Append spaces for one level of indentation.
+     */
+    static void indent(Appendable out, int indent) throws IOException {
+        for (int i = 0; i < indent; i += 1) {
+            out.append(' ');
         }
-        return quote(value.toString());
     }
 
 
@@ -1614,34 +1937,92 @@ public class JSONObject {
       * @return The writer.
       * @throws JSONException
       */
-     @SuppressWarnings("rawtypes")
-	public Writer write(Writer writer) throws JSONException {
+     public Writer write(Writer writer) throws JSONException {
         try {
-            boolean  commanate = false;
-            Iterator keys = keys();
-            writer.write('{');
+            write((Appendable) writer);
+            return writer;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+     }
+
+
+    /**
+     * Append the contents of the JSONObject as JSON text. For compactness,
+     * no whitespace is added. toString() and write(Writer) both come here.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param out Where to append the text.
+     * @throws JSONException If the object contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    @SuppressWarnings("rawtypes")
+    void write(Appendable out) throws JSONException, IOException {
+        boolean  commanate = false;
+        Iterator keys = keys();
+        out.append('{');
+
+        while (keys.hasNext()) {
+            if (commanate) {
+                out.append(',');
+            }
+            Object key = keys.next();
+            quote(key.toString(), out);
+            out.append(':');
+            writeValue(this.map.get(key), out);
+            commanate = true;
+        }
+        out.append('}');
+    }
+
 
+    /**
+     * Append the prettyprinted JSON text of this JSONObject.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param out Where to append the text.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param indent The indentation of the top level.
+     * @throws JSONException If the object contains an invalid number.
+     * @throws IOException If out throws IOException.
+     */
+    @SuppressWarnings("rawtypes")
+    void write(Appendable out, int indentFactor, int indent)
+            throws JSONException, IOException {
+        int length = this.length();
+        if (length == 0) {
+            out.append("{}");
+            return;
+        }
+        Iterator     keys = sortedKeys();
+        int          newindent = indent + indentFactor;
+        Object       object;
+        out.append('{');
+        if (length == 1) {
+            object = keys.next();
+            quote(object.toString(), out);
+            out.append(": ");
+            writeValue(this.map.get(object), out, indentFactor, indent);
+        } else {
+            boolean commanate = false;
             while (keys.hasNext()) {
+                object = keys.next();
                 if (commanate) {
-                    writer.write(',');
-                }
-                Object key = keys.next();
-                writer.write(quote(key.toString()));
-                writer.write(':');
-                Object value = this.map.get(key);
-                if (value instanceof JSONObject) {
-                    ((JSONObject)value).write(writer);
-                } else if (value instanceof JSONArray) {
-                    ((JSONArray)value).write(writer);
+                    out.append(",\n");
                 } else {
-                    writer.write(valueToString(value));
+                    out.append('\n');
                 }
+                indent(out, newindent);
+                quote(object.toString(), out);
+                out.append(": ");
+                writeValue(this.map.get(object), out, indentFactor,
+                        newindent);
                 commanate = true;
             }
-            writer.write('}');
-            return writer;
-        } catch (IOException exception) {
-            throw new JSONException(exception);
+            out.append('\n');
+            indent(out, indent);
         }
-     }
-}
\ No newline at end of file
+        out.append('}');
+    }
+}
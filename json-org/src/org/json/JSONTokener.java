@@ -1,11 +1,9 @@
 package org.json;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -35,6 +33,11 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * Characters are read from an internal char array rather than one at a
+ * time from the Reader: a String source is scanned in place, and a Reader
+ * source is read in large blocks. Quoted strings are copied out of the
+ * array a run at a time rather than char by char.
  * @author JSON.org
  * @version 2010-12-24
  */
@@ -48,6 +51,23 @@ public class JSONTokener {
     private Reader 	reader;
     private boolean usePrevious;
 
+    /** Size of the blocks read from a Reader source. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Characters not yet consumed are buffer[bufferPos..bufferLimit). */
+    private char[]  buffer;
+    private int     bufferPos;
+    private int     bufferLimit;
+
+    /** Start of the chars that must be kept for skipTo(), or -1. */
+    private int     markPos;
+
+    /** Whether JSONObjects parsed from this tokener use a JSONCompactMap. */
+    private boolean compactObjects;
+
+    /** Cache of canonical key Strings, or null. */
+    private JSONKeyCache keyCache;
+
 
     /**
      * Construct a JSONTokener from a Reader.
@@ -55,8 +75,13 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported() ? 
-        		reader : new BufferedReader(reader);
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.markPos = -1;
+        this.compactObjects = false;
+        this.keyCache = null;
         this.eof = false;
         this.usePrevious = false;
         this.previous = 0;
@@ -80,7 +105,147 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this.reader = null;
+        this.buffer = s.toCharArray();
+        this.bufferPos = 0;
+        this.bufferLimit = this.buffer.length;
+        this.markPos = -1;
+        this.compactObjects = false;
+        this.keyCache = null;
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.line = 1;
+    }
+
+
+    /**
+     * Read the next block of characters from the reader into the buffer.
+     * Characters from markPos on are kept (growing the buffer if needed).
+     *
+     * @return false if there are no more characters.
+     */
+    private boolean fill() throws JSONException {
+        if (this.reader == null) {
+            return false;
+        }
+        if (this.markPos < 0) {
+            this.bufferPos = 0;
+            this.bufferLimit = 0;
+        } else {
+            if (this.markPos > 0) {
+                System.arraycopy(this.buffer, this.markPos, this.buffer, 0,
+                        this.bufferLimit - this.markPos);
+                this.bufferLimit -= this.markPos;
+                this.bufferPos -= this.markPos;
+                this.markPos = 0;
+            }
+            if (this.bufferLimit == this.buffer.length) {
+                char[] grown = new char[this.buffer.length * 2];
+                System.arraycopy(this.buffer, 0, grown, 0, this.bufferLimit);
+                this.buffer = grown;
+            }
+        }
+        int n;
+        try {
+            n = this.reader.read(this.buffer, this.bufferLimit,
+                    this.buffer.length - this.bufferLimit);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+        if (n <= 0) {
+            return false;
+        }
+        this.bufferLimit += n;
+        return true;
+    }
+
+
+    /**
+     * Determine whether JSONObjects parsed from this tokener are backed by
+     * a compact, insertion-ordered map rather than a HashMap.
+     * @return true if compact objects are used.
+     */
+    public boolean isCompactObjects() {
+        return this.compactObjects;
+    }
+
+
+    /**
+     * Set whether JSONObjects parsed from this tokener are backed by a
+     * compact, insertion-ordered map rather than a HashMap. Compact objects
+     * use noticeably less memory per member, and their keys (and so their
+     * toString() output) follow the order of the source text. Looking up
+     * a key is as fast for small objects, but removing keys is slower.
+     * @param compactObjects true to use compact objects.
+     */
+    public void setCompactObjects(boolean compactObjects) {
+        this.compactObjects = compactObjects;
+    }
+
+
+    /**
+     * Get the cache used for the keys of JSONObjects parsed from this
+     * tokener.
+     * @return The key cache, or null if keys are not cached.
+     */
+    public JSONKeyCache getKeyCache() {
+        return this.keyCache;
+    }
+
+
+    /**
+     * Set a cache to use for the keys of JSONObjects parsed from this
+     * tokener, so that repeated keys share one String instance.
+     * @param keyCache A key cache, or null to not cache keys.
+     */
+    public void setKeyCache(JSONKeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+
+    /**
+     * Get the next key of a JSONObject. Without a key cache this is the same
+     * as nextValue().toString(). With one, quoted keys are looked up in the
+     * cache - straight from the buffer where possible, so a key that is
+     * already cached doesn't create a String.
+     * @return A key.
+     * @throws JSONException If syntax error.
+     */
+    String nextKey() throws JSONException {
+        if (this.keyCache == null) {
+            return nextValue().toString();
+        }
+        char c = nextClean();
+        if (c != '"' && c != '\'') {
+            back();
+            return nextValue().toString();
+        }
+        if (!this.usePrevious) {
+            char[] buf = this.buffer;
+            int start = this.bufferPos;
+            int p = start;
+            int limit = this.bufferLimit;
+            while (p < limit) {
+                char d = buf[p];
+                if (d == c) {
+                    String key = this.keyCache.intern(buf, start, p - start);
+                    int n = p - start + 1;
+                    this.bufferPos = p + 1;
+                    this.index += n;
+                    this.character += n;
+                    this.previous = c;
+                    return key;
+                }
+                if (d == '\\' || d == '\n' || d == '\r' || d == 0) {
+                    break;
+                }
+                p += 1;
+            }
+        }
+        return this.keyCache.intern(nextString(c));
     }
 
 
@@ -150,10 +315,10 @@ public class JSONTokener {
         	this.usePrevious = false;
             c = this.previous;
         } else {
-	        try {
-	            c = this.reader.read();
-	        } catch (IOException exception) {
-	            throw new JSONException(exception);
+	        if (this.bufferPos < this.bufferLimit || fill()) {
+	            c = this.buffer[this.bufferPos++];
+	        } else {
+	            c = -1;
 	        }
 	
 	        if (c <= 0) { // End of stream
@@ -249,8 +414,30 @@ public class JSONTokener {
      */
     public String nextString(char quote) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
+            if (!this.usePrevious && this.previous != '\r') {
+                // Copy the run of plain characters straight out of the buffer
+                char[] buf = this.buffer;
+                int start = this.bufferPos;
+                int pos = start;
+                int limit = this.bufferLimit;
+                while (pos < limit) {
+                    c = buf[pos];
+                    if (c == quote || c == '\\' || c == '\n' || c == '\r' || c == 0) {
+                        break;
+                    }
+                    pos += 1;
+                }
+                int n = pos - start;
+                if (n > 0) {
+                    sb.append(buf, start, n);
+                    this.bufferPos = pos;
+                    this.index += n;
+                    this.character += n;
+                    this.previous = buf[pos - 1];
+                }
+            }
             c = next();
             switch (c) {
             case 0:
@@ -365,6 +552,18 @@ public class JSONTokener {
                 return new JSONArray(this);
         }
 
+        /*
+         * Numbers (the bulk of the unquoted values in most documents) are
+         * converted straight out of the buffer when possible.
+         */
+
+        if ((c >= '0' && c <= '9') || c == '-') {
+            Object number = nextNumber(c);
+            if (number != null) {
+                return number;
+            }
+        }
+
         /*
          * Handle unquoted text. This could be the values true, false, or
          * null, or it can be a number. An implementation (such as this one)
@@ -374,7 +573,7 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
             c = next();
@@ -389,6 +588,56 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Convert the number starting with the character c (which has just been
+     * read) directly from the buffer, without collecting it into a String.
+     * This only handles numbers that end within the buffer, followed by
+     * a character that can't be part of an unquoted value. Otherwise
+     * nothing is consumed, and the general unquoted value code is used.
+     *
+     * @param c The first character of the number.
+     * @return An Integer, Long or Double, or null.
+     */
+    private Object nextNumber(char c) {
+        int start = this.bufferPos - 1;
+        if (start < 0 || this.buffer[start] != c) {
+            return null;
+        }
+        char[] buf = this.buffer;
+        int p = this.bufferPos;
+        int limit = this.bufferLimit;
+        while (p < limit) {
+            char d = buf[p];
+            if ((d >= '0' && d <= '9') || d == '.' || d == 'e' ||
+                    d == 'E' || d == '-' || d == '+') {
+                p += 1;
+            } else {
+                break;
+            }
+        }
+        if (p >= limit) {
+            return null;
+        }
+        char d = buf[p];
+        if (d == '\r' || d == '\n' || (d >= ' ' && ",:]}/\\\"[{;=#".indexOf(d) < 0)) {
+            // Let the general code deal with text like "12 34" or "12abc",
+            // and with line ends (so the line count matches)
+            return null;
+        }
+        Object number = JSONObject.parseNumber(buf, start, p);
+        if (number != null) {
+            int n = p - this.bufferPos;
+            this.bufferPos = p;
+            this.index += n;
+            this.character += n;
+            if (n > 0) {
+                this.previous = buf[p - 1];
+            }
+        }
+        return number;
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -398,23 +647,23 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
+        int startIndex = this.index;
+        int startCharacter = this.character;
+        int startLine = this.line;
+        this.markPos = this.bufferPos;
         try {
-            int startIndex = this.index;
-            int startCharacter = this.character;
-            int startLine = this.line;
-            reader.mark(Integer.MAX_VALUE);
             do {
                 c = next();
                 if (c == 0) {
-                    reader.reset();
+                    this.bufferPos = this.markPos;
                     this.index = startIndex;
                     this.character = startCharacter;
                     this.line = startLine;
                     return c;
                 }
             } while (c != to);
-        } catch (IOException exc) {
-            throw new JSONException(exc);
+        } finally {
+            this.markPos = -1;
         }
 
         back();
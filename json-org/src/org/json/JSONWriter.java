@@ -2,6 +2,9 @@ package org.json;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 /*
 Copyright (c) 2006 JSON.org
@@ -50,14 +53,24 @@ SOFTWARE.
  * <p>
  * The first method called must be <code>array</code> or <code>object</code>.
  * There are no methods for adding commas or colons. JSONWriter adds them for
- * you. Objects and arrays can be nested up to 20 levels deep.
+ * you. Objects and arrays can be nested to any depth.
+ * <p>
+ * Output is collected in a buffer and passed to the writer in large pieces:
+ * whenever the buffer fills, when the outermost array or object is ended,
+ * and when <code>flush</code> is called. To stream a very large text (such
+ * as an export of millions of records), wrap a stream in a Writer, make the
+ * JSONWriter with <code>checkKeys</code> false so that the keys of each
+ * object are not remembered, and call <code>flush</code> whenever the
+ * output so far should be sent on.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
  * @author JSON.org
  * @version 2010-12-24
  */
 public class JSONWriter {
-    private static final int maxdepth = 20;
+    private static final int INITIAL_DEPTH = 20;
+
+    private static final int BUFFER_SIZE = 8192;
 
     /**
      * The comma flag determines if a comma should be output before the next
@@ -76,15 +89,36 @@ public class JSONWriter {
     protected char mode;
 
     /**
-     * The object/array stack.
+     * The object/array stack: 'a' for an array, 'k' for an object.
      */
-    private JSONObject stack[];
+    private char stack[];
 
     /**
      * The stack top index. A value of 0 indicates that the stack is empty.
      */
     private int top;
 
+    /**
+     * The keys written so far in each open object, by depth, if duplicate
+     * keys are being checked, or null. Sets are reused as the depth changes.
+     */
+    private ArrayList<Set<String>> keys;
+
+    /**
+     * Output not yet passed on to the writer.
+     */
+    private char buffer[];
+
+    /**
+     * The number of chars in the buffer.
+     */
+    private int length;
+
+    /**
+     * The buffer, for JSONObject.quote.
+     */
+    private Appendable out;
+
     /**
      * The writer that will receive the output.
      */
@@ -92,12 +126,29 @@ public class JSONWriter {
 
     /**
      * Make a fresh JSONWriter. It can be used to build one JSON text.
+     * Duplicate keys in an object are rejected.
      */
     public JSONWriter(Writer w) {
+        this(w, true);
+    }
+
+    /**
+     * Make a fresh JSONWriter. It can be used to build one JSON text.
+     * @param w The writer that will receive the output.
+     * @param checkKeys If true, a key that is used twice in the same
+     *  object is rejected. If false, keys are not remembered, which is
+     *  faster and uses less memory; the caller is then responsible for
+     *  keeping keys unique.
+     */
+    public JSONWriter(Writer w, boolean checkKeys) {
         this.comma = false;
         this.mode = 'i';
-        this.stack = new JSONObject[maxdepth];
+        this.stack = new char[INITIAL_DEPTH];
         this.top = 0;
+        this.keys = checkKeys ? new ArrayList<Set<String>>() : null;
+        this.buffer = new char[BUFFER_SIZE];
+        this.length = 0;
+        this.out = new BufferAppendable();
         this.writer = w;
     }
 
@@ -111,36 +162,58 @@ public class JSONWriter {
         if (string == null) {
             throw new JSONException("Null pointer");
         }
+        this.beginValue();
+        try {
+            this.write(string);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.endValue();
+    }
+
+    /**
+     * Check that a value may be written here, and write the comma before it
+     * if one is needed.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private void beginValue() throws JSONException {
         if (this.mode == 'o' || this.mode == 'a') {
-            try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
+            if (this.comma && this.mode == 'a') {
+                try {
+                    this.write(',');
+                } catch (IOException e) {
+                    throw new JSONException(e);
                 }
-                this.writer.write(string);
-            } catch (IOException e) {
-                throw new JSONException(e);
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
+            return;
         }
         throw new JSONException("Value out of sequence.");
     }
 
+    /**
+     * Note that a value has been written.
+     * @return this
+     */
+    private JSONWriter endValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+        return this;
+    }
+
     /**
      * Begin appending a new array. All values until the balancing
      * <code>endArray</code> will be appended to this array. The
      * <code>endArray</code> method must be called to mark the array's end.
      * @return this
-     * @throws JSONException If the nesting is too deep, or if the object is
-     * started in the wrong place (for example as a key or after the end of the
-     * outermost array or object).
+     * @throws JSONException If the array is started in the wrong place
+     * (for example as a key or after the end of the outermost array or
+     * object).
      */
     public JSONWriter array() throws JSONException {
         if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
-            this.push(null);
+            this.push('a');
             this.append("[");
             this.comma = false;
             return this;
@@ -162,7 +235,10 @@ public class JSONWriter {
         }
         this.pop(mode);
         try {
-            this.writer.write(c);
+            this.write(c);
+            if (this.mode == 'd') {
+                this.flushBuffer();
+            }
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -190,6 +266,23 @@ public class JSONWriter {
         return this.end('k', '}');
     }
 
+    /**
+     * Pass everything written so far on to the writer, and flush the writer.
+     * This happens by itself when the outermost array or object is ended,
+     * but not before then.
+     * @return this
+     * @throws JSONException If the writer throws an IOException.
+     */
+    public JSONWriter flush() throws JSONException {
+        try {
+            this.flushBuffer();
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
     /**
      * Append a key. The key will be associated with the next value. In an
      * object, every value must be preceded by a key.
@@ -203,19 +296,22 @@ public class JSONWriter {
             throw new JSONException("Null key.");
         }
         if (this.mode == 'k') {
+            if (this.keys != null &&
+                    !this.keys.get(this.top - 1).add(string)) {
+                throw new JSONException("Duplicate key \"" + string + "\"");
+            }
             try {
-                stack[top - 1].putOnce(string, Boolean.TRUE);
                 if (this.comma) {
-                    this.writer.write(',');
+                    this.write(',');
                 }
-                this.writer.write(JSONObject.quote(string));
-                this.writer.write(':');
-                this.comma = false;
-                this.mode = 'o';
-                return this;
+                JSONObject.quote(string, this.out);
+                this.write(':');
             } catch (IOException e) {
                 throw new JSONException(e);
             }
+            this.comma = false;
+            this.mode = 'o';
+            return this;
         }
         throw new JSONException("Misplaced key.");
     }
@@ -226,9 +322,9 @@ public class JSONWriter {
      * <code>endObject</code> will be appended to this object. The
      * <code>endObject</code> method must be called to mark the object's end.
      * @return this
-     * @throws JSONException If the nesting is too deep, or if the object is
-     * started in the wrong place (for example as a key or after the end of the
-     * outermost array or object).
+     * @throws JSONException If the object is started in the wrong place
+     * (for example as a key or after the end of the outermost array or
+     * object).
      */
     public JSONWriter object() throws JSONException {
         if (this.mode == 'i') {
@@ -236,7 +332,7 @@ public class JSONWriter {
         }
         if (this.mode == 'o' || this.mode == 'a') {
             this.append("{");
-            this.push(new JSONObject());
+            this.push('k');
             this.comma = false;
             return this;
         }
@@ -254,26 +350,37 @@ public class JSONWriter {
         if (this.top <= 0) {
             throw new JSONException("Nesting error.");
         }
-        char m = this.stack[this.top - 1] == null ? 'a' : 'k';
-        if (m != c) {
+        if (this.stack[this.top - 1] != c) {
             throw new JSONException("Nesting error.");
         }
         this.top -= 1;
-        this.mode = this.top == 0 ? 
-        		'd' : this.stack[this.top - 1] == null ? 'a' : 'k';
+        this.mode = this.top == 0 ? 'd' : this.stack[this.top - 1];
     }
 
     /**
-     * Push an array or object scope.
-     * @param c The scope to open.
-     * @throws JSONException If nesting is too deep.
+     * Push an array or object scope. The stack grows as needed.
+     * @param c The scope to open: 'a' for an array, 'k' for an object.
      */
-    private void push(JSONObject jo) throws JSONException {
-        if (this.top >= maxdepth) {
-            throw new JSONException("Nesting too deep.");
+    private void push(char c) {
+        if (this.top == this.stack.length) {
+            char newStack[] = new char[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.top);
+            this.stack = newStack;
+        }
+        if (c == 'k' && this.keys != null) {
+            if (this.keys.size() <= this.top) {
+                while (this.keys.size() < this.top) {
+                    this.keys.add(null);
+                }
+                this.keys.add(new HashSet<String>());
+            } else if (this.keys.get(this.top) == null) {
+                this.keys.set(this.top, new HashSet<String>());
+            } else {
+                this.keys.get(this.top).clear();
+            }
         }
-        this.stack[this.top] = jo;
-        this.mode = jo == null ? 'a' : 'k';
+        this.stack[this.top] = c;
+        this.mode = c;
         this.top += 1;
     }
 
@@ -296,7 +403,16 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(new Double(d));
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException(
+                    "JSON does not allow non-finite numbers.");
+        }
+        long l = (long) d;
+        if (l == d && l > -10000000L && l < 10000000L &&
+                (l != 0 || 1 / d > 0)) {
+            return this.value(l);
+        }
+        return this.append(JSONObject.doubleToString(d));
     }
 
     /**
@@ -306,7 +422,13 @@ public class JSONWriter {
      * @throws JSONException
      */
     public JSONWriter value(long l) throws JSONException {
-        return this.append(Long.toString(l));
+        this.beginValue();
+        try {
+            this.writeLong(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.endValue();
     }
 
 
@@ -318,6 +440,108 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object object) throws JSONException {
+        if (object instanceof String) {
+            this.beginValue();
+            try {
+                JSONObject.quote((String) object, this.out);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.endValue();
+        }
+        if (object instanceof Integer || object instanceof Long) {
+            return this.value(((Number) object).longValue());
+        }
         return this.append(JSONObject.valueToString(object));
     }
+
+
+    /**
+     * Write a char to the buffer.
+     */
+    private void write(char c) throws IOException {
+        if (this.length == this.buffer.length) {
+            this.flushBuffer();
+        }
+        this.buffer[this.length] = c;
+        this.length += 1;
+    }
+
+    /**
+     * Write a string to the buffer, or straight to the writer if it is
+     * longer than the buffer.
+     */
+    private void write(String string) throws IOException {
+        int len = string.length();
+        if (len > this.buffer.length - this.length) {
+            this.flushBuffer();
+            if (len > this.buffer.length) {
+                this.writer.write(string);
+                return;
+            }
+        }
+        string.getChars(0, len, this.buffer, this.length);
+        this.length += len;
+    }
+
+    /**
+     * Write the digits of a long to the buffer, without making a String.
+     */
+    private void writeLong(long l) throws IOException {
+        if (l == Long.MIN_VALUE) {
+            this.write(Long.toString(l));
+            return;
+        }
+        if (this.buffer.length - this.length < 20) {
+            this.flushBuffer();
+        }
+        if (l < 0) {
+            this.buffer[this.length] = '-';
+            this.length += 1;
+            l = -l;
+        }
+        int digits = 1;
+        for (long n = l / 10; n > 0; n /= 10) {
+            digits += 1;
+        }
+        int i = this.length + digits;
+        this.length = i;
+        do {
+            i -= 1;
+            this.buffer[i] = (char) ('0' + (int) (l % 10));
+            l /= 10;
+        } while (l > 0);
+    }
+
+    /**
+     * Pass the contents of the buffer on to the writer.
+     */
+    private void flushBuffer() throws IOException {
+        if (this.length > 0) {
+            this.writer.write(this.buffer, 0, this.length);
+            this.length = 0;
+        }
+    }
+
+
+    /**
+     * Lets JSONObject.quote append to the buffer.
+     */
+    private class BufferAppendable implements Appendable {
+        public Appendable append(char c) throws IOException {
+            write(c);
+            return this;
+        }
+
+        public Appendable append(CharSequence csq) throws IOException {
+            write(csq.toString());
+            return this;
+        }
+
+        public Appendable append(CharSequence csq, int start, int end)
+                throws IOException {
+            write(csq.subSequence(start, end).toString());
+            return this;
+        }
+    }
 }